@@ -0,0 +1,254 @@
+package de.gfn.coffee;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Abgleich der Verkaufsdaten mit der Zentrale (Change Data Capture über die IDs).
+// Der Agent merkt sich pro Ziel, bis zu welcher Bestellungs- und Zahlungs-ID alles bestätigt
+// ist, und schickt nur neuere Zeilen sowie den Münzbestand, wenn er sich geändert hat.
+// Er liest nur und läuft auf eigenen Threads, der Verkauf merkt davon nichts.
+// Höchstens MAX_UNTERWEGS Pakete sind unbestätigt; bei Fehlern wird mit wachsender Pause ab dem
+// bestätigten Stand erneut gesendet. Sequenzen wiederholen sich dabei, der Inhalt nicht unbedingt:
+// das Ziel erkennt Doppeltes an den Bestellungs- und Zahlungs-IDs.
+public class Abgleichsagent implements AutoCloseable {
+    private static final int MAX_ZEILEN = 5000;        // Bestellungen bzw. Zahlungen pro Paket
+    private static final int MAX_UNTERWEGS = 4;
+    private static final long INTERVALL_MS = 5000;
+    private static final long PAUSE_START_MS = 1000;
+    private static final long PAUSE_MAX_MS = 300_000;
+    private static final long ANTWORT_TIMEOUT_MS = 30_000;
+
+    // Gemeinsam für alle Automaten im Prozess; Warten auf die Zentrale blockiert nur diese Threads
+    private static final AtomicInteger THREAD_NR = new AtomicInteger();
+    private static final ScheduledExecutorService ABGLEICHER = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "abgleich-" + THREAD_NR.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Latenzhistogramm SENDEDAUER = Metriken.histogramm("abgleich_senden");
+
+    private final String maschinenId;
+    private final DatabaseManager dbManager;
+    private final Abgleichsziel ziel;
+    // Von der Zentrale bestätigt und in der DB gespeichert
+    private Stand bestaetigt;
+    // Gehalten, solange ein Durchgang läuft; close() wartet darauf, bevor die DB schließt
+    private final Object lauf = new Object();
+    // Nur im Durchgang benutzt
+    private final ArrayDeque<Unterwegs> unterwegs = new ArrayDeque<>();
+    private int fehlversuche = 0;
+    private ScheduledFuture<?> naechsterLauf;
+    private volatile boolean geschlossen = false;
+
+    public Abgleichsagent(String maschinenId, DatabaseManager db, Abgleichsziel ziel) {
+        this.maschinenId = maschinenId;
+        this.dbManager = db;
+        this.ziel = ziel;
+        this.bestaetigt = db.ladeAbgleichsstand(ziel.getName());
+        planen(0);
+    }
+
+    // -Dsmartcoffee.abgleich=datei:<verzeichnis> oder socket:<host>:<port> (sonst null)
+    public static Abgleichsagent ausSystemProperty(String maschinenId, DatabaseManager db) {
+        String wert = System.getProperty("smartcoffee.abgleich");
+        if (wert == null || wert.isBlank()) return null;
+        try {
+            String[] teile = wert.trim().split(":", 2);
+            Abgleichsziel ziel;
+            if (teile[0].equals("datei")) {
+                ziel = new Dateiabgleich(Paths.get(teile[1]));
+            } else if (teile[0].equals("socket")) {
+                int trenner = teile[1].lastIndexOf(':');
+                ziel = new Socketabgleich(teile[1].substring(0, trenner), Integer.parseInt(teile[1].substring(trenner + 1)));
+            } else {
+                throw new IllegalArgumentException("Unbekanntes Abgleichsziel: " + wert);
+            }
+            return new Abgleichsagent(maschinenId, db, ziel);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Abgleich konnte nicht gestartet werden: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void planen(long pauseMs) {
+        if (!geschlossen) naechsterLauf = ABGLEICHER.schedule(this::durchlauf, pauseMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Sendet, bis nichts Neues mehr da ist: Pakete vorauslesen, solange weniger als MAX_UNTERWEGS
+    // offen sind, dann auf die Bestätigung des ältesten warten und den Stand fortschreiben.
+    // Läuft nie parallel zu sich selbst (geplant wird erst am Ende); close() bricht zwischen den Paketen ab.
+    private void durchlauf() {
+        long pause = INTERVALL_MS;
+        synchronized (lauf) {
+            if (geschlossen) return;
+            Stand gelesen = getBestaetigt();
+            boolean mehr = true;
+            try {
+                while (!geschlossen) {
+                    while (!geschlossen && mehr && unterwegs.size() < MAX_UNTERWEGS) {
+                        Abgleichsbatch batch = naechstesPaket(gelesen);
+                        if (batch == null) break;
+                        gelesen = gelesen.nach(batch);
+                        unterwegs.add(new Unterwegs(batch, gelesen, ziel.senden(batch)));
+                        // Ein nicht volles Paket heißt: im Moment gibt es nichts weiter
+                        mehr = batch.getAnzahlBestellungen() == MAX_ZEILEN || batch.getAnzahlZahlungen() == MAX_ZEILEN;
+                    }
+                    Unterwegs aeltestes = unterwegs.poll();
+                    if (aeltestes == null) break;
+                    aeltestes.antwort.get(ANTWORT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    SENDEDAUER.erfassenSeit(aeltestes.gesendet);
+                    bestaetigen(aeltestes);
+                }
+                fehlversuche = 0;
+            } catch (ExecutionException | TimeoutException e) {
+                // Ab dem bestätigten Stand neu senden; Zeilen, die doch ankamen, erkennt das Ziel an der ID.
+                // Vorher das Ziel zurücksetzen, sonst bestätigt eine späte Antwort das neue Paket mit.
+                ziel.zuruecksetzen();
+                unterwegs.clear();
+                if (geschlossen) return;
+                fehlversuche++;
+                Metriken.zaehler("abgleich_fehler").increment();
+                pause = pauseNachFehler();
+                Throwable grund = e instanceof ExecutionException ? e.getCause() : e;
+                System.err.println("Abgleich " + maschinenId + " fehlgeschlagen (Versuch " + fehlversuche
+                        + ", nächster in " + pause / 1000 + " s): " + grund);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                ziel.zuruecksetzen();
+                unterwegs.clear();
+                System.err.println("Abgleich " + maschinenId + " abgebrochen: " + e);
+            }
+        }
+        planen(pause);
+    }
+
+    // null, wenn es nichts Neues gibt
+    private Abgleichsbatch naechstesPaket(Stand stand) {
+        Abgleichsbatch.Builder builder = new Abgleichsbatch.Builder(maschinenId, stand.sequenz + 1, stand.bestellung, stand.zahlung)
+                .platz(MAX_ZEILEN, MAX_ZEILEN);
+        if (!dbManager.abgleichLesen(builder, stand.bestellung, stand.zahlung, MAX_ZEILEN)) {
+            throw new IllegalStateException("Abgleich " + maschinenId + ": DB nicht lesbar");
+        }
+        MuenzVektor bestand = new MuenzVektor();
+        dbManager.ladeMuenzBestand(bestand);
+        if (!bestand.equals(stand.bestand)) builder.muenzbestand(bestand);
+        Abgleichsbatch batch = builder.build();
+        return batch.istLeer() ? null : batch;
+    }
+
+    private void bestaetigen(Unterwegs paket) {
+        synchronized (this) {
+            bestaetigt = paket.stand;
+        }
+        dbManager.abgleichsstandSpeichern(ziel.getName(), paket.stand);
+        Metriken.zaehler("abgleich_pakete").increment();
+        Metriken.zaehler("abgleich_bestellungen").add(paket.batch.getAnzahlBestellungen());
+        Metriken.zaehler("abgleich_zahlungen").add(paket.batch.getAnzahlZahlungen());
+    }
+
+    // Exponentiell bis PAUSE_MAX_MS, mit Zufallsanteil, damit eine Flotte nicht im Gleichtakt anklopft
+    private long pauseNachFehler() {
+        long pause = Math.min(PAUSE_MAX_MS, PAUSE_START_MS << Math.min(fehlversuche - 1, 20));
+        return pause / 2 + ThreadLocalRandom.current().nextLong(pause / 2 + 1);
+    }
+
+    public synchronized Stand getBestaetigt() {
+        return bestaetigt;
+    }
+
+    // Schließt das Ziel (bricht das Warten auf eine Antwort ab) und wartet dann nur noch das Ende
+    // des laufenden Pakets ab; offene Pakete werden beim nächsten Start erneut gesendet
+    @Override
+    public void close() {
+        geschlossen = true;
+        synchronized (this) {
+            if (naechsterLauf != null) naechsterLauf.cancel(false);
+        }
+        ziel.close();
+        synchronized (lauf) {
+            // nur warten
+        }
+    }
+
+    // Bestätigter bzw. gelesener Stand: letzte Sequenz, letzte IDs, zuletzt gesendeter Münzbestand
+    public static final class Stand {
+        private final long sequenz;
+        private final long bestellung;
+        private final long zahlung;
+        private final MuenzVektor bestand; // null: noch nie gesendet
+
+        Stand(long sequenz, long bestellung, long zahlung, MuenzVektor bestand) {
+            this.sequenz = sequenz;
+            this.bestellung = bestellung;
+            this.zahlung = zahlung;
+            this.bestand = bestand;
+        }
+
+        Stand nach(Abgleichsbatch batch) {
+            return new Stand(batch.getSequenz(), batch.getBisBestellung(), batch.getBisZahlung(),
+                    batch.getMuenzbestand() != null ? batch.getMuenzbestand() : bestand);
+        }
+
+        public long getSequenz() {
+            return sequenz;
+        }
+
+        public long getBestellung() {
+            return bestellung;
+        }
+
+        public long getZahlung() {
+            return zahlung;
+        }
+
+        byte[] bestandAlsBytes() {
+            if (bestand == null) return null;
+            ByteBuffer b = ByteBuffer.allocate(4 * MuenzVektor.SCHAECHTE);
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                b.putInt(bestand.get(i));
+            }
+            return b.array();
+        }
+
+        static MuenzVektor bestandAusBytes(byte[] daten) {
+            if (daten == null || daten.length != 4 * MuenzVektor.SCHAECHTE) return null;
+            ByteBuffer b = ByteBuffer.wrap(daten);
+            MuenzVektor bestand = new MuenzVektor();
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                bestand.set(i, b.getInt());
+            }
+            return bestand;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequenz + " Bestellung " + bestellung + " Zahlung " + zahlung;
+        }
+    }
+
+    private static final class Unterwegs {
+        final Abgleichsbatch batch;
+        final Stand stand;
+        final CompletableFuture<Void> antwort;
+        final long gesendet = System.nanoTime();
+
+        Unterwegs(Abgleichsbatch batch, Stand stand, CompletableFuture<Void> antwort) {
+            this.batch = batch;
+            this.stand = stand;
+            this.antwort = antwort;
+        }
+    }
+}
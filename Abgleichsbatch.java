@@ -0,0 +1,307 @@
+package de.gfn.coffee;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Ein Paket neuer Zeilen für den zentralen Abgleich (unveränderlich).
+// Enthält Bestellungen mit ID in (vonBestellung, bisBestellung], Zahlungen mit ID in
+// (vonZahlung, bisZahlung] und den Münzbestand, falls er sich seit dem letzten Paket geändert hat.
+// Idempotent: die Zentrale übernimmt Zeilen über ihre IDs, ein doppelt zugestelltes Paket
+// (gleiche Maschine, gleiche Sequenz) ändert nichts.
+//
+// Format: Kopf unkomprimiert (Empfänger können ohne Entpacken deduplizieren), dann die
+// Zeilen spaltenweise, deflate-komprimiert.
+public final class Abgleichsbatch {
+    private static final int KENNUNG = 0x53434443; // "SCDC"
+    private static final byte FORMAT = 1;
+
+    private final String maschinenId;
+    private final long sequenz;
+    private final long vonBestellung;
+    private final long bisBestellung;
+    private final long vonZahlung;
+    private final long bisZahlung;
+
+    // Bestellungen
+    private final long[] bestellungId;
+    private final long[] zeitstempel;
+    private final String[] kaffeeArt;
+    private final boolean[] mitMilch;
+    private final int[] preis;
+    // Zahlungen
+    private final long[] zahlungId;
+    private final long[] zahlungBestellung;
+    private final int[] muenztyp;
+    private final int[] anzahl;
+    // null: unverändert
+    private final MuenzVektor muenzbestand;
+
+    private Abgleichsbatch(Builder b) {
+        this.maschinenId = b.maschinenId;
+        this.sequenz = b.sequenz;
+        this.vonBestellung = b.vonBestellung;
+        this.bisBestellung = b.bestellungen == 0 ? b.vonBestellung : b.bestellungId[b.bestellungen - 1];
+        this.vonZahlung = b.vonZahlung;
+        this.bisZahlung = b.zahlungen == 0 ? b.vonZahlung : b.zahlungId[b.zahlungen - 1];
+        this.bestellungId = Arrays.copyOf(b.bestellungId, b.bestellungen);
+        this.zeitstempel = Arrays.copyOf(b.zeitstempel, b.bestellungen);
+        this.kaffeeArt = Arrays.copyOf(b.kaffeeArt, b.bestellungen);
+        this.mitMilch = Arrays.copyOf(b.mitMilch, b.bestellungen);
+        this.preis = Arrays.copyOf(b.preis, b.bestellungen);
+        this.zahlungId = Arrays.copyOf(b.zahlungId, b.zahlungen);
+        this.zahlungBestellung = Arrays.copyOf(b.zahlungBestellung, b.zahlungen);
+        this.muenztyp = Arrays.copyOf(b.muenztyp, b.zahlungen);
+        this.anzahl = Arrays.copyOf(b.anzahl, b.zahlungen);
+        this.muenzbestand = b.muenzbestand == null ? null : new MuenzVektor(b.muenzbestand);
+    }
+
+    public String getMaschinenId() {
+        return maschinenId;
+    }
+
+    public long getSequenz() {
+        return sequenz;
+    }
+
+    public long getVonBestellung() {
+        return vonBestellung;
+    }
+
+    public long getBisBestellung() {
+        return bisBestellung;
+    }
+
+    public long getVonZahlung() {
+        return vonZahlung;
+    }
+
+    public long getBisZahlung() {
+        return bisZahlung;
+    }
+
+    public int getAnzahlBestellungen() {
+        return bestellungId.length;
+    }
+
+    public int getAnzahlZahlungen() {
+        return zahlungId.length;
+    }
+
+    public boolean istLeer() {
+        return bestellungId.length == 0 && zahlungId.length == 0 && muenzbestand == null;
+    }
+
+    // Bestellung i als Satz (ohne Zahlungen, die kommen getrennt mit eigener ID)
+    public Bestellsatz getBestellung(int i) {
+        return new Bestellsatz(bestellungId[i], zeitstempel[i], kaffeeArt[i], mitMilch[i], preis[i], new MuenzVektor());
+    }
+
+    public long getZahlungId(int i) {
+        return zahlungId[i];
+    }
+
+    public long getZahlungBestellung(int i) {
+        return zahlungBestellung[i];
+    }
+
+    public int getMuenztyp(int i) {
+        return muenztyp[i];
+    }
+
+    public int getAnzahl(int i) {
+        return anzahl[i];
+    }
+
+    // null, wenn sich der Münzbestand seit dem vorigen Paket nicht geändert hat
+    public MuenzVektor getMuenzbestand() {
+        return muenzbestand;
+    }
+
+    // --- FORMAT ---
+
+    public byte[] alsBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + bestellungId.length * 8 + zahlungId.length * 6);
+        try {
+            DataOutputStream kopf = new DataOutputStream(bytes);
+            kopf.writeInt(KENNUNG);
+            kopf.writeByte(FORMAT);
+            kopf.writeUTF(maschinenId);
+            kopf.writeLong(sequenz);
+            kopf.writeLong(vonBestellung);
+            kopf.writeLong(bisBestellung);
+            kopf.writeLong(vonZahlung);
+            kopf.writeLong(bisZahlung);
+            kopf.writeInt(bestellungId.length);
+            kopf.writeInt(zahlungId.length);
+            kopf.writeBoolean(muenzbestand != null);
+            kopf.flush();
+
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater, 1 << 13))) {
+                // Spaltenweise und IDs/Zeiten als Differenz: gleichförmige Werte komprimieren besser
+                long vorher = vonBestellung;
+                for (long id : bestellungId) {
+                    out.writeLong(id - vorher);
+                    vorher = id;
+                }
+                vorher = 0;
+                for (long t : zeitstempel) {
+                    out.writeLong(t - vorher);
+                    vorher = t;
+                }
+                for (String art : kaffeeArt) {
+                    out.writeBoolean(art != null);
+                    if (art != null) out.writeUTF(art);
+                }
+                for (boolean m : mitMilch) out.writeBoolean(m);
+                for (int p : preis) out.writeInt(p);
+                vorher = vonZahlung;
+                for (long id : zahlungId) {
+                    out.writeLong(id - vorher);
+                    vorher = id;
+                }
+                for (long id : zahlungBestellung) out.writeLong(id);
+                for (int m : muenztyp) out.writeShort(m);
+                for (int a : anzahl) out.writeInt(a);
+                if (muenzbestand != null) {
+                    for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) out.writeInt(muenzbestand.get(i));
+                }
+            } finally {
+                deflater.end();
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream wirft nicht
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Abgleichsbatch ausBytes(byte[] daten) throws IOException {
+        DataInputStream kopf = new DataInputStream(new ByteArrayInputStream(daten));
+        if (kopf.readInt() != KENNUNG || kopf.readByte() != FORMAT) throw new IOException("Unbekanntes Abgleichsformat");
+        Builder b = new Builder(kopf.readUTF(), kopf.readLong(), kopf.readLong(), 0);
+        long bisBestellung = kopf.readLong();
+        b.vonZahlung = kopf.readLong();
+        long bisZahlung = kopf.readLong();
+        int bestellungen = kopf.readInt();
+        int zahlungen = kopf.readInt();
+        boolean mitBestand = kopf.readBoolean();
+
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(kopf))) {
+            b.platz(bestellungen, zahlungen);
+            b.bestellungen = bestellungen;
+            b.zahlungen = zahlungen;
+            long vorher = b.vonBestellung;
+            for (int i = 0; i < bestellungen; i++) vorher = b.bestellungId[i] = vorher + in.readLong();
+            vorher = 0;
+            for (int i = 0; i < bestellungen; i++) vorher = b.zeitstempel[i] = vorher + in.readLong();
+            for (int i = 0; i < bestellungen; i++) b.kaffeeArt[i] = in.readBoolean() ? in.readUTF() : null;
+            for (int i = 0; i < bestellungen; i++) b.mitMilch[i] = in.readBoolean();
+            for (int i = 0; i < bestellungen; i++) b.preis[i] = in.readInt();
+            vorher = b.vonZahlung;
+            for (int i = 0; i < zahlungen; i++) vorher = b.zahlungId[i] = vorher + in.readLong();
+            for (int i = 0; i < zahlungen; i++) b.zahlungBestellung[i] = in.readLong();
+            for (int i = 0; i < zahlungen; i++) b.muenztyp[i] = in.readShort();
+            for (int i = 0; i < zahlungen; i++) b.anzahl[i] = in.readInt();
+            if (mitBestand) {
+                b.muenzbestand = new MuenzVektor();
+                for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) b.muenzbestand.set(i, in.readInt());
+            }
+        }
+        Abgleichsbatch batch = b.build();
+        if (batch.bisBestellung != bisBestellung || batch.bisZahlung != bisZahlung) {
+            throw new IOException("Abgleichspaket " + batch.sequenz + " ist beschädigt");
+        }
+        return batch;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s #%d: %d Bestellungen (%d..%d], %d Zahlungen (%d..%d]%s", maschinenId, sequenz,
+                bestellungId.length, vonBestellung, bisBestellung, zahlungId.length, vonZahlung, bisZahlung,
+                muenzbestand != null ? ", Münzbestand" : "");
+    }
+
+    // Wird vom DatabaseManager zeilenweise gefüllt
+    static final class Builder {
+        private final String maschinenId;
+        private final long sequenz;
+        private final long vonBestellung;
+        private long vonZahlung;
+        private long[] bestellungId = new long[0];
+        private long[] zeitstempel = new long[0];
+        private String[] kaffeeArt = new String[0];
+        private boolean[] mitMilch = new boolean[0];
+        private int[] preis = new int[0];
+        private int bestellungen;
+        private long[] zahlungId = new long[0];
+        private long[] zahlungBestellung = new long[0];
+        private int[] muenztyp = new int[0];
+        private int[] anzahl = new int[0];
+        private int zahlungen;
+        private MuenzVektor muenzbestand;
+
+        Builder(String maschinenId, long sequenz, long vonBestellung, long vonZahlung) {
+            this.maschinenId = maschinenId;
+            this.sequenz = sequenz;
+            this.vonBestellung = vonBestellung;
+            this.vonZahlung = vonZahlung;
+        }
+
+        // Arrays einmal in passender Größe anlegen (höchstens so viele Zeilen wie ein Paket fasst)
+        Builder platz(int bestellungen, int zahlungen) {
+            bestellungId = Arrays.copyOf(bestellungId, bestellungen);
+            zeitstempel = Arrays.copyOf(zeitstempel, bestellungen);
+            kaffeeArt = Arrays.copyOf(kaffeeArt, bestellungen);
+            mitMilch = Arrays.copyOf(mitMilch, bestellungen);
+            preis = Arrays.copyOf(preis, bestellungen);
+            zahlungId = Arrays.copyOf(zahlungId, zahlungen);
+            zahlungBestellung = Arrays.copyOf(zahlungBestellung, zahlungen);
+            muenztyp = Arrays.copyOf(muenztyp, zahlungen);
+            anzahl = Arrays.copyOf(anzahl, zahlungen);
+            return this;
+        }
+
+        void bestellung(long id, long zeit, String art, boolean milch, int cent) {
+            bestellungId[bestellungen] = id;
+            zeitstempel[bestellungen] = zeit;
+            kaffeeArt[bestellungen] = art;
+            mitMilch[bestellungen] = milch;
+            preis[bestellungen] = cent;
+            bestellungen++;
+        }
+
+        void zahlung(long id, long bestellungId, int typ, int stueck) {
+            zahlungId[zahlungen] = id;
+            zahlungBestellung[zahlungen] = bestellungId;
+            muenztyp[zahlungen] = typ;
+            anzahl[zahlungen] = stueck;
+            zahlungen++;
+        }
+
+        Builder muenzbestand(MuenzVektor bestand) {
+            this.muenzbestand = bestand;
+            return this;
+        }
+
+        int getAnzahlBestellungen() {
+            return bestellungen;
+        }
+
+        // Höchste Bestellungs-ID im Paket (bzw. die Startmarke, wenn keine dabei ist)
+        long getBisBestellung() {
+            return bestellungen == 0 ? vonBestellung : bestellungId[bestellungen - 1];
+        }
+
+        Abgleichsbatch build() {
+            return new Abgleichsbatch(this);
+        }
+    }
+}
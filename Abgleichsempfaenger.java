@@ -0,0 +1,114 @@
+package de.gfn.coffee;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Lokaler Ersatz für die Zentrale: nimmt Pakete von Socketabgleich an, legt sie im
+// übergebenen Ziel ab (z.B. Dateiabgleich) und bestätigt sie. Entscheidend sind die IDs, nicht
+// die Sequenz: eine Wiederholung ab dem bestätigten Stand kann mehr Zeilen tragen als das erste
+// Paket mit derselben Sequenz. Nur Pakete ohne neue Zeilen und ohne Münzbestand werden bloß bestätigt.
+//
+// Aufruf: java de.gfn.coffee.Abgleichsempfaenger <port> <verzeichnis>
+public class Abgleichsempfaenger implements AutoCloseable {
+    private static final int MAX_PAKET = 64 << 20;
+
+    private final ServerSocket server;
+    private final Abgleichsziel ablage;
+    // Höchste abgelegte Bestellungs- und Zahlungs-ID pro Maschine
+    private final Map<String, Abgleichsagent.Stand> abgelegt = new ConcurrentHashMap<>();
+    private final Set<Socket> verbindungen = ConcurrentHashMap.newKeySet();
+    private volatile boolean geschlossen = false;
+
+    public Abgleichsempfaenger(int port, Abgleichsziel ablage) throws IOException {
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.ablage = ablage;
+        Thread annahme = new Thread(this::annehmen, "abgleich-empfaenger");
+        annahme.setDaemon(true);
+        annahme.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    private void annehmen() {
+        while (!geschlossen) {
+            try {
+                Socket s = server.accept();
+                verbindungen.add(s);
+                Thread t = new Thread(() -> verbindung(s), "abgleich-verbindung");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!geschlossen) System.err.println("Abgleichsempfänger Fehler: " + e.getMessage());
+            }
+        }
+    }
+
+    private void verbindung(Socket s) {
+        try (Socket socket = s;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+             DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+            while (true) {
+                int laenge = in.readInt();
+                if (laenge <= 0 || laenge > MAX_PAKET) throw new IOException("Ungültige Paketlänge " + laenge);
+                byte[] daten = new byte[laenge];
+                in.readFully(daten);
+                Abgleichsbatch batch = Abgleichsbatch.ausBytes(daten);
+                Abgleichsagent.Stand stand = abgelegt.get(batch.getMaschinenId());
+                if (stand == null || batch.getBisBestellung() > stand.getBestellung()
+                        || batch.getBisZahlung() > stand.getZahlung() || batch.getMuenzbestand() != null) {
+                    ablage.senden(batch).join();
+                    abgelegt.merge(batch.getMaschinenId(), new Abgleichsagent.Stand(batch.getSequenz(),
+                            batch.getBisBestellung(), batch.getBisZahlung(), null), Abgleichsempfaenger::hoeher);
+                }
+                out.writeLong(batch.getSequenz());
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // Gegenseite hat die Verbindung beendet
+        } catch (IOException | RuntimeException e) {
+            if (!geschlossen) System.err.println("Abgleichsempfänger Fehler: " + e.getMessage());
+        } finally {
+            verbindungen.remove(s);
+        }
+    }
+
+    private static Abgleichsagent.Stand hoeher(Abgleichsagent.Stand a, Abgleichsagent.Stand b) {
+        return new Abgleichsagent.Stand(Math.max(a.getSequenz(), b.getSequenz()), Math.max(a.getBestellung(), b.getBestellung()),
+                Math.max(a.getZahlung(), b.getZahlung()), null);
+    }
+
+    @Override
+    public void close() {
+        geschlossen = true;
+        try {
+            server.close();
+            for (Socket s : verbindungen) {
+                s.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Abgleichsempfänger Fehler: " + e.getMessage());
+        }
+        ablage.close();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Abgleichsempfaenger empfaenger = new Abgleichsempfaenger(Integer.parseInt(args[0]),
+                new Dateiabgleich(Paths.get(args[1])));
+        System.out.println("Abgleichsempfänger auf Port " + empfaenger.getPort());
+        Thread.currentThread().join();
+    }
+}
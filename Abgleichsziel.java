@@ -0,0 +1,24 @@
+package de.gfn.coffee;
+
+import java.util.concurrent.CompletableFuture;
+
+// Ziel des Abgleichs (Zentrale oder ein lokaler Ersatz zum Testen).
+// senden() darf asynchron sein; die Zukunft wird erst erfüllt, wenn das Paket beim Ziel
+// dauerhaft angekommen ist. Doppelte erkennt das Ziel an den IDs, nicht an der Sequenz: eine
+// Wiederholung ab dem bestätigten Stand trägt dieselbe Sequenz, kann aber mehr Zeilen enthalten.
+// Zeilen mit bekannter ID überspringen, neue Zeilen ablegen (siehe Abgleichsempfaenger).
+public interface Abgleichsziel extends AutoCloseable {
+
+    // Eindeutiger Name; unter diesem Namen steht der bestätigte Stand in der DB
+    String getName();
+
+    CompletableFuture<Void> senden(Abgleichsbatch batch);
+
+    // Vergisst alle unbestätigten Pakete, ihre Zukünfte schlagen fehl. Danach darf keine späte
+    // Bestätigung mehr ein neu gesendetes Paket erfüllen (Aufruf nach einem Timeout).
+    default void zuruecksetzen() {
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,42 @@
+package de.gfn.coffee;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Fasst Ereignisse der Engine zu höchstens einer Darstellung pro Bild (ca. 60 Hz) zusammen.
+// Die Engine meldet von ihrem Thread; gezeichnet wird gesammelt auf dem EDT, egal wie viele
+// Ereignisse in der Zwischenzeit ankamen.
+final class Anzeigetakt {
+    private static final int BILD_MS = 16;
+
+    private final ConcurrentLinkedQueue<VendingEreignis> offen = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean geplant = new AtomicBoolean(false);
+    private final Timer timer;
+
+    Anzeigetakt(Consumer<List<VendingEreignis>> darstellen) {
+        this.timer = new Timer(BILD_MS, e -> {
+            // Zuerst freigeben: was ab jetzt ankommt, plant das nächste Bild
+            geplant.set(false);
+            List<VendingEreignis> ereignisse = new ArrayList<>();
+            VendingEreignis ereignis;
+            while ((ereignis = offen.poll()) != null) {
+                ereignisse.add(ereignis);
+            }
+            if (!ereignisse.isEmpty()) darstellen.accept(ereignisse);
+        });
+        timer.setRepeats(false);
+    }
+
+    // Von jedem Thread; nur das erste Ereignis eines Bildes stößt den Timer an
+    void melden(VendingEreignis ereignis) {
+        offen.add(ereignis);
+        if (geplant.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(timer::start);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package de.gfn.coffee;
+
+// Eintrag im Archiv-Index: eine unveränderliche, gzip-komprimierte Datei mit den
+// Bestellungen eines Monats (bzw. einem Teil davon, falls später Nachzügler archiviert werden)
+public final class Archivdatei {
+    private final String monat;   // yyyy-MM (UTC)
+    private final int teil;
+    private final String datei;   // relativ zum Archivverzeichnis
+    private final long vonId;
+    private final long bisId;
+    private final long anzahl;
+    private final long umsatzInCent;
+
+    Archivdatei(String monat, int teil, String datei, long vonId, long bisId, long anzahl, long umsatzInCent) {
+        this.monat = monat;
+        this.teil = teil;
+        this.datei = datei;
+        this.vonId = vonId;
+        this.bisId = bisId;
+        this.anzahl = anzahl;
+        this.umsatzInCent = umsatzInCent;
+    }
+
+    public String getMonat() {
+        return monat;
+    }
+
+    public int getTeil() {
+        return teil;
+    }
+
+    public String getDatei() {
+        return datei;
+    }
+
+    public long getVonId() {
+        return vonId;
+    }
+
+    public long getBisId() {
+        return bisId;
+    }
+
+    public long getAnzahl() {
+        return anzahl;
+    }
+
+    public long getUmsatzInCent() {
+        return umsatzInCent;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s/%d: %d Bestellungen, %.2f EUR (%s)", monat, teil, anzahl, umsatzInCent / 100.0, datei);
+    }
+}
@@ -0,0 +1,339 @@
+package de.gfn.coffee;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Aufbewahrung der Rohdaten: Bestellungen und Zahlungen, die älter als die Aufbewahrungsdauer
+// sind, wandern monatsweise in gzip-Dateien (Verzeichnis "archiv" des Automaten). Zähler und
+// Rollups bleiben in der DB, Gesamtsummen und Zeitraum-Auswertungen ändern sich also nicht.
+// Archivdateien werden nie verändert; kommen später noch alte Bestellungen dazu, entsteht ein
+// weiterer Teil für denselben Monat. Archivierte Bestellungen liest lesen() bei Bedarf zurück.
+public class Archivierung implements AutoCloseable {
+    private static final long START_VERZOEGERUNG_MIN = 5;
+    private static final long INTERVALL_STUNDEN = 24;
+    // Seiten pro Vakuum-Schritt; dazwischen wird die Verbindung für Verkäufe freigegeben
+    private static final int VAKUUM_SEITEN = 256;
+    private static final String KOPFZEILE = "# SmartCoffee Bestellungen v1: ID, Zeitstempel (UTC), Kaffeeart, Mit_Milch, Preis, Zahlungen";
+    private static final DateTimeFormatter ZEITSTEMPEL_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Ein gemeinsamer Thread für alle Automaten im Prozess; Archivieren ist reine Hintergrundarbeit
+    private static final ScheduledExecutorService ARCHIVIERER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "archivierung");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final DatabaseManager dbManager;
+    private final Path verzeichnis;
+    private final Duration aufbewahrung;
+    private ScheduledFuture<?> periodisch;
+    private volatile boolean geschlossen = false;
+
+    public Archivierung(DatabaseManager db, Duration aufbewahrung) {
+        this.dbManager = db;
+        this.verzeichnis = db.getVerzeichnis().resolve("archiv");
+        this.aufbewahrung = aufbewahrung;
+    }
+
+    // Tägliche Archivierung nur mit -Dsmartcoffee.aufbewahrung.tage=<n> (n > 0); ohne Angabe bleibt alles in der DB
+    public static Archivierung ausSystemProperty(DatabaseManager db) {
+        String tage = System.getProperty("smartcoffee.aufbewahrung.tage");
+        if (tage == null) return null;
+        long n;
+        try {
+            n = Long.parseLong(tage.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Archivierung aus, ungültige Aufbewahrung: " + tage);
+            return null;
+        }
+        if (n <= 0) return null;
+        // Einmalige Umstellung einer älteren DB jetzt, solange noch kein Verkauf auf die DB wartet
+        long t0 = System.nanoTime();
+        if (!db.hatInkrementellesVakuum() && db.inkrementellesVakuumEinrichten()) {
+            System.out.println("Datenbank auf inkrementelles Vakuum umgestellt ("
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) + " ms)");
+        }
+        Archivierung archivierung = new Archivierung(db, Duration.ofDays(n));
+        archivierung.periodisch = ARCHIVIERER.scheduleWithFixedDelay(() -> archivierung.ausfuehren(Instant.now()),
+                START_VERZOEGERUNG_MIN, TimeUnit.HOURS.toMinutes(INTERVALL_STUNDEN), TimeUnit.MINUTES);
+        return archivierung;
+    }
+
+    // --- ARCHIVIEREN ---
+
+    // Archiviert alle ganzen Monate vor (jetzt - Aufbewahrung) und gibt danach freie Seiten ab.
+    // Liefert die Anzahl archivierter Bestellungen.
+    public synchronized long ausfuehren(Instant jetzt) {
+        // Nur ganze Monate: die Grenze ist der Monatsanfang, in dem die Aufbewahrung endet
+        YearMonth grenzMonat = YearMonth.from(jetzt.minus(aufbewahrung).atZone(ZoneOffset.UTC));
+        Instant grenze = monatsanfang(grenzMonat);
+        // Nachzügler mit altem Zeitstempel (z.B. aus dem Ereignislog) kommen erst beim nächsten Lauf dran.
+        // Was die Zentrale noch nicht hat, bleibt in der DB.
+        long bisId = Math.min(dbManager.ladeHoechsteBestellungId(), dbManager.ladeAbgleichsgrenze());
+        long archiviert = 0;
+        try {
+            Files.createDirectories(verzeichnis);
+            Map<String, Integer> teile = verwaisteDateienLoeschen();
+            for (String monat : dbManager.ladeArchivierbareMonate(grenze, bisId)) {
+                if (geschlossen) break;
+                int teil = teile.getOrDefault(monat, 0) + 1;
+                archiviert += monatArchivieren(YearMonth.parse(monat), teil, bisId);
+            }
+        } catch (IOException e) {
+            System.err.println("Archivierung Fehler: " + e.getMessage());
+        }
+        if (archiviert > 0) {
+            Metriken.zaehler("archiv_bestellungen").add(archiviert);
+        }
+        vakuumieren();
+        return archiviert;
+    }
+
+    private long monatArchivieren(YearMonth monat, int teil, long bisId) throws IOException {
+        Instant von = monatsanfang(monat);
+        Instant bis = monatsanfang(monat.plusMonths(1));
+        String name = "bestellungen-" + monat + "-" + teil + ".tsv.gz";
+        Path ziel = verzeichnis.resolve(name);
+        Path temp = verzeichnis.resolve(name + ".tmp");
+
+        Archivschreiber schreiber = new Archivschreiber();
+        try (FileOutputStream datei = new FileOutputStream(temp.toFile());
+             Writer out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(datei, 1 << 16), StandardCharsets.UTF_8))) {
+            schreiber.out = out;
+            out.write(KOPFZEILE);
+            out.write('\n');
+            dbManager.bestellungenLesen(von, bis, 0, bisId, schreiber);
+            if (schreiber.fehler != null) throw schreiber.fehler;
+            out.flush();
+            // Erst dauerhaft auf dem Datenträger, dann dürfen die Zeilen aus der DB verschwinden
+            datei.getFD().sync();
+        }
+        if (schreiber.anzahl == 0) {
+            Files.deleteIfExists(temp);
+            return 0;
+        }
+        Files.move(temp, ziel, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        Archivdatei eintrag = new Archivdatei(monat.toString(), teil, name, schreiber.vonId, schreiber.bisId,
+                schreiber.anzahl, schreiber.umsatz);
+        if (!dbManager.archivBuchen(eintrag, von, bis, bisId)) {
+            // Zeilen bleiben in der DB, nächster Lauf versucht es erneut
+            Files.deleteIfExists(ziel);
+            return 0;
+        }
+        return schreiber.anzahl;
+    }
+
+    // Dateien ohne Index-Eintrag stammen von einem abgebrochenen Lauf: ihre Zeilen stehen noch in
+    // der DB und werden neu archiviert. Liefert den höchsten Teil pro Monat aus dem Index.
+    private Map<String, Integer> verwaisteDateienLoeschen() throws IOException {
+        Map<String, Integer> teile = new HashMap<>();
+        Set<String> bekannt = new HashSet<>();
+        List<Archivdatei> index = dbManager.ladeArchivIndex();
+        // Ohne Index wäre jede Datei "verwaist": dann lieber gar nicht archivieren
+        if (index == null) throw new IOException("Archivindex nicht lesbar");
+        for (Archivdatei a : index) {
+            teile.merge(a.getMonat(), a.getTeil(), Math::max);
+            bekannt.add(a.getDatei());
+        }
+        try (DirectoryStream<Path> dateien = Files.newDirectoryStream(verzeichnis, "bestellungen-*")) {
+            for (Path p : dateien) {
+                if (!bekannt.contains(p.getFileName().toString())) Files.deleteIfExists(p);
+            }
+        }
+        return teile;
+    }
+
+    private void vakuumieren() {
+        // Ohne Umstellung (Start ohne Archivierung, Umstellung fehlgeschlagen) bleibt die Datei so groß
+        if (geschlossen || !dbManager.hatInkrementellesVakuum()) return;
+        while (!geschlossen && dbManager.vakuumSchritt(VAKUUM_SEITEN) > 0) {
+            Thread.yield();
+        }
+    }
+
+    // --- LESEN ---
+
+    public List<Archivdatei> getIndex() {
+        List<Archivdatei> index = dbManager.ladeArchivIndex();
+        return index != null ? index : List.of();
+    }
+
+    // Archivierte Bestellungen im Zeitraum [von, bis); gelesen werden nur die betroffenen Monate
+    public void lesen(Instant von, Instant bis, Consumer<Bestellsatz> ziel) {
+        List<Archivdatei> treffer;
+        try {
+            treffer = dateien(von, bis, 0);
+        } catch (IOException e) {
+            System.err.println("Archiv nicht lesbar: " + e.getMessage());
+            return;
+        }
+        for (Archivdatei a : treffer) {
+            try (Archivleser leser = oeffnen(a, von, bis, 0)) {
+                Bestellsatz satz;
+                while ((satz = leser.naechster()) != null) {
+                    ziel.accept(satz);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Archiv " + a.getDatei() + " nicht lesbar: " + e.getMessage());
+            }
+        }
+    }
+
+    // Archivdateien, die Bestellungen aus [von, bis) mit ID > nachId enthalten können
+    // Ohne Index fehlten die archivierten Monate stillschweigend, deshalb IOException
+    List<Archivdatei> dateien(Instant von, Instant bis, long nachId) throws IOException {
+        String ersterMonat = YearMonth.from(von.atZone(ZoneOffset.UTC)).toString();
+        String letzterMonat = YearMonth.from(bis.minusSeconds(1).atZone(ZoneOffset.UTC)).toString();
+        List<Archivdatei> index = dbManager.ladeArchivIndex();
+        if (index == null) throw new IOException("Archivindex nicht lesbar");
+        List<Archivdatei> treffer = new ArrayList<>();
+        for (Archivdatei a : index) {
+            if (a.getMonat().compareTo(ersterMonat) < 0 || a.getMonat().compareTo(letzterMonat) > 0) continue;
+            if (a.getBisId() <= nachId) continue;
+            treffer.add(a);
+        }
+        return treffer;
+    }
+
+    Archivleser oeffnen(Archivdatei datei, Instant von, Instant bis, long nachId) throws IOException {
+        return new Archivleser(verzeichnis.resolve(datei.getDatei()), von.getEpochSecond(), bis.getEpochSecond(), nachId);
+    }
+
+    // Liest eine Archivdatei satzweise (aufsteigend nach ID) und filtert Zeitraum und ID
+    static final class Archivleser implements Closeable {
+        private final BufferedReader in;
+        private final long vonSekunde;
+        private final long bisSekunde;
+        private final long nachId;
+
+        private Archivleser(Path datei, long vonSekunde, long bisSekunde, long nachId) throws IOException {
+            this.in = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(datei), 1 << 13), StandardCharsets.UTF_8));
+            this.vonSekunde = vonSekunde;
+            this.bisSekunde = bisSekunde;
+            this.nachId = nachId;
+        }
+
+        // null am Dateiende
+        Bestellsatz naechster() throws IOException {
+            String zeile;
+            while ((zeile = in.readLine()) != null) {
+                if (zeile.isEmpty() || zeile.charAt(0) == '#') continue;
+                Bestellsatz satz = parsen(zeile);
+                if (satz.getId() > nachId && satz.getZeitstempel() >= vonSekunde && satz.getZeitstempel() < bisSekunde) {
+                    return satz;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // --- FORMAT ---
+
+    // Eine Zeile pro Bestellung, Tab-getrennt; Zahlungen als "Münzwert:Anzahl,..."
+    private static void schreiben(Writer out, Bestellsatz b) throws IOException {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(b.getId()).append('\t')
+                .append(ZEITSTEMPEL_FORMAT.format(LocalDateTime.ofEpochSecond(b.getZeitstempel(), 0, ZoneOffset.UTC))).append('\t')
+                .append(b.getKaffeeArt() == null ? "" : b.getKaffeeArt().replaceAll("[\\t\\n\\r]", " ")).append('\t')
+                .append(b.isMitMilch() ? 1 : 0).append('\t')
+                .append(b.getPreis()).append('\t');
+        boolean erste = true;
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            if (b.getZahlungen().get(i) == 0) continue;
+            if (!erste) sb.append(',');
+            erste = false;
+            sb.append(MuenzVektor.wert(i)).append(':').append(b.getZahlungen().get(i));
+        }
+        out.write(sb.append('\n').toString());
+    }
+
+    private static Bestellsatz parsen(String zeile) {
+        String[] f = zeile.split("\t", -1);
+        MuenzVektor zahlungen = new MuenzVektor();
+        if (!f[5].isEmpty()) {
+            for (String z : f[5].split(",")) {
+                String[] kv = z.split(":");
+                int schacht = MuenzVektor.schacht(Integer.parseInt(kv[0]));
+                if (schacht >= 0) zahlungen.add(schacht, Integer.parseInt(kv[1]));
+            }
+        }
+        return new Bestellsatz(Long.parseLong(f[0]),
+                LocalDateTime.parse(f[1], ZEITSTEMPEL_FORMAT).toEpochSecond(ZoneOffset.UTC),
+                f[2].isEmpty() ? null : f[2], f[3].equals("1"), Integer.parseInt(f[4]), zahlungen);
+    }
+
+    private static Instant monatsanfang(YearMonth monat) {
+        return monat.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    // Laufende Archivierung wird nach dem aktuellen Monat bzw. Vakuum-Schritt beendet
+    @Override
+    public void close() {
+        geschlossen = true;
+        if (periodisch != null) periodisch.cancel(false);
+        synchronized (this) {
+            // Wartet, bis ein laufender Durchgang fertig ist
+        }
+    }
+
+    // Schreibt die Sätze aus der DB und zählt mit; IOExceptions werden nach dem Lesen geworfen
+    private static final class Archivschreiber implements Consumer<Bestellsatz> {
+        Writer out;
+        IOException fehler;
+        long anzahl;
+        long umsatz;
+        long vonId = Long.MAX_VALUE;
+        long bisId;
+
+        @Override
+        public void accept(Bestellsatz b) {
+            if (fehler != null) return;
+            try {
+                schreiben(out, b);
+                anzahl++;
+                umsatz += b.getPreis();
+                vonId = Math.min(vonId, b.getId());
+                bisId = Math.max(bisId, b.getId());
+            } catch (IOException e) {
+                fehler = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.gfn.coffee;
+
+// Ein angenommenes (bezahltes, Zutaten reserviert) oder abgelehntes Getränk in der Warteschlange
+public final class Auftrag {
+    private final int nummer;
+    private final String typ;
+    private final boolean mitMilch;
+    private final int preis;
+    private final boolean angenommen;
+    private final MuenzVektor bezahlteMuenzen;
+    // Ausgegebenes Wechselgeld (Anzahl pro Schacht)
+    private final MuenzVektor wechselgeld;
+    // Bei Ablehnung die fehlende Zutat (ZUTATEN_FEHLEN), sonst null
+    private final Zutat fehlendeZutat;
+    private final long angenommenNanos = System.nanoTime();
+
+    // Grund der Ablehnung bzw. nach der Zubereitung ERFOLG oder DEFEKT; wird vom Engine-Thread gesetzt
+    private volatile Verkaufsergebnis ergebnis;
+    // Laufende Tassennummer des Automaten nach der Ausgabe (0 vorher)
+    private volatile int tassenNummer;
+
+    // Wird nur vom Zubereitungsplaner gesetzt, die GUI liest mit
+    private volatile Zubereitungsstufe stufe;
+    private volatile int einheit = -1;
+
+    Auftrag(int nummer, String typ, boolean mitMilch, int preis, MuenzVektor bezahlteMuenzen, MuenzVektor wechselgeld) {
+        this.nummer = nummer;
+        this.typ = typ;
+        this.mitMilch = mitMilch;
+        this.preis = preis;
+        this.angenommen = true;
+        this.ergebnis = Verkaufsergebnis.ERFOLG;
+        this.bezahlteMuenzen = new MuenzVektor(bezahlteMuenzen);
+        this.wechselgeld = new MuenzVektor(wechselgeld);
+        this.fehlendeZutat = null;
+    }
+
+    private Auftrag(String typ, boolean mitMilch, int preis, Verkaufsergebnis grund, Zutat fehlendeZutat) {
+        this.nummer = 0;
+        this.typ = typ;
+        this.mitMilch = mitMilch;
+        this.preis = preis;
+        this.angenommen = false;
+        this.ergebnis = grund;
+        this.bezahlteMuenzen = new MuenzVektor();
+        this.wechselgeld = new MuenzVektor();
+        this.fehlendeZutat = fehlendeZutat;
+    }
+
+    static Auftrag abgelehnt(String typ, boolean mitMilch, int preis, Verkaufsergebnis grund) {
+        return new Auftrag(typ, mitMilch, preis, grund, null);
+    }
+
+    static Auftrag zutatFehlt(String typ, boolean mitMilch, int preis, Zutat zutat) {
+        return new Auftrag(typ, mitMilch, preis, Verkaufsergebnis.ZUTATEN_FEHLEN, zutat);
+    }
+
+    void abschliessen(Verkaufsergebnis ergebnis, int tassenNummer) {
+        this.tassenNummer = tassenNummer;
+        this.ergebnis = ergebnis;
+    }
+
+    void setStufe(Zubereitungsstufe stufe, int einheit) {
+        this.stufe = stufe;
+        this.einheit = einheit;
+    }
+
+    public int getNummer() {
+        return nummer;
+    }
+
+    public String getTyp() {
+        return typ;
+    }
+
+    public boolean isMitMilch() {
+        return mitMilch;
+    }
+
+    public int getPreis() {
+        return preis;
+    }
+
+    public boolean isAngenommen() {
+        return angenommen;
+    }
+
+    public Verkaufsergebnis getErgebnis() {
+        return ergebnis;
+    }
+
+    // Nur lesen
+    public MuenzVektor getWechselgeld() {
+        return wechselgeld;
+    }
+
+    public Zutat getFehlendeZutat() {
+        return fehlendeZutat;
+    }
+
+    public int getTassenNummer() {
+        return tassenNummer;
+    }
+
+    long getAngenommenNanos() {
+        return angenommenNanos;
+    }
+
+    MuenzVektor getBezahlteMuenzen() {
+        return bezahlteMuenzen;
+    }
+
+    // null, solange der Auftrag noch wartet
+    public Zubereitungsstufe getStufe() {
+        return stufe;
+    }
+
+    // Brüheinheit (ab 1), -1 außerhalb der Brühstufen
+    public int getEinheit() {
+        return einheit;
+    }
+}
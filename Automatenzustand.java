@@ -0,0 +1,90 @@
+package de.gfn.coffee;
+
+import java.nio.ByteBuffer;
+
+// Kompletter Zustand eines Automaten als ein kleiner Datensatz (Snapshot).
+// Zutaten und Defekt gibt es nur hier; Münzbestand und Tassenzahl sind zusätzlich
+// in den eigentlichen Tabellen und werden aus dem Snapshot nur übernommen, solange
+// seit dem Schreiben keine andere Buchung stattgefunden hat.
+public final class Automatenzustand {
+    private static final byte FORMAT = 1;
+    private static final int LAENGE = 1 + 4 + 4 + 1 + 4 + 4 * MuenzVektor.SCHAECHTE;
+
+    private final int kaffeeBestand;
+    private final int milchBestand;
+    private final boolean defekt;
+    private final int tassenGesamt;
+    private final MuenzVektor muenzBestand;
+
+    public Automatenzustand(int kaffeeBestand, int milchBestand, boolean defekt, int tassenGesamt, MuenzVektor muenzBestand) {
+        this.kaffeeBestand = kaffeeBestand;
+        this.milchBestand = milchBestand;
+        this.defekt = defekt;
+        this.tassenGesamt = tassenGesamt;
+        this.muenzBestand = new MuenzVektor(muenzBestand);
+    }
+
+    byte[] alsBytes() {
+        ByteBuffer b = ByteBuffer.allocate(LAENGE);
+        b.put(FORMAT).putInt(kaffeeBestand).putInt(milchBestand).put((byte) (defekt ? 1 : 0)).putInt(tassenGesamt);
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            b.putInt(muenzBestand.get(i));
+        }
+        return b.array();
+    }
+
+    // null bei unbekanntem Format (z.B. Snapshot einer neueren Version)
+    static Automatenzustand ausBytes(byte[] daten) {
+        if (daten == null || daten.length != LAENGE || daten[0] != FORMAT) return null;
+        ByteBuffer b = ByteBuffer.wrap(daten, 1, LAENGE - 1);
+        int kaffee = b.getInt();
+        int milch = b.getInt();
+        boolean defekt = b.get() == 1;
+        int tassen = b.getInt();
+        MuenzVektor muenzen = new MuenzVektor();
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            muenzen.set(i, b.getInt());
+        }
+        return new Automatenzustand(kaffee, milch, defekt, tassen, muenzen);
+    }
+
+    public int getKaffeeBestand() {
+        return kaffeeBestand;
+    }
+
+    public int getMilchBestand() {
+        return milchBestand;
+    }
+
+    public boolean isDefekt() {
+        return defekt;
+    }
+
+    public int getTassenGesamt() {
+        return tassenGesamt;
+    }
+
+    // Kopie, der Snapshot bleibt unveränderlich
+    public MuenzVektor getMuenzBestand() {
+        return new MuenzVektor(muenzBestand);
+    }
+
+    // Gleicher Münzbestand ohne Kopie (für die Anzeige)
+    public boolean gleicherMuenzBestand(Automatenzustand andere) {
+        return andere != null && muenzBestand.equals(andere.muenzBestand);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Automatenzustand)) return false;
+        Automatenzustand z = (Automatenzustand) o;
+        return kaffeeBestand == z.kaffeeBestand && milchBestand == z.milchBestand && defekt == z.defekt
+                && tassenGesamt == z.tassenGesamt && muenzBestand.equals(z.muenzBestand);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * kaffeeBestand + milchBestand) + tassenGesamt) + muenzBestand.hashCode() + (defekt ? 1 : 0);
+    }
+}
@@ -0,0 +1,45 @@
+package de.gfn.coffee;
+
+// Eine Bestellung mit ihren Zahlungen, wie sie in der DB bzw. im Archiv steht (unveränderlich)
+public final class Bestellsatz {
+    private final long id;
+    private final long zeitstempel; // Unix-Sekunden (UTC)
+    private final String kaffeeArt;
+    private final boolean mitMilch;
+    private final int preis;
+    private final MuenzVektor zahlungen;
+
+    Bestellsatz(long id, long zeitstempel, String kaffeeArt, boolean mitMilch, int preis, MuenzVektor zahlungen) {
+        this.id = id;
+        this.zeitstempel = zeitstempel;
+        this.kaffeeArt = kaffeeArt;
+        this.mitMilch = mitMilch;
+        this.preis = preis;
+        this.zahlungen = zahlungen;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getZeitstempel() {
+        return zeitstempel;
+    }
+
+    public String getKaffeeArt() {
+        return kaffeeArt;
+    }
+
+    public boolean isMitMilch() {
+        return mitMilch;
+    }
+
+    public int getPreis() {
+        return preis;
+    }
+
+    // Eingeworfene Münzen pro Schacht; nicht verändern
+    public MuenzVektor getZahlungen() {
+        return zahlungen;
+    }
+}
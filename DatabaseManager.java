@@ -1,19 +1,145 @@
 package de.gfn.coffee;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
-import java.util.HashMap;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
-public class DatabaseManager {
-    private static final String URL = "jdbc:sqlite:smartcoffee.db";
+public class DatabaseManager implements AutoCloseable {
+    private static final String DATEINAME = "smartcoffee.db";
+    // SQLite erlaubt nur einen Schreiber, zwei Verbindungen reichen (Schreiben + Lesen)
+    private static final int POOL_GROESSE = 2;
+    // Bei jeder Schemaänderung erhöhen, sonst wird die Initialisierung beim Start übersprungen
+    private static final int SCHEMA_VERSION = 3;
+
+    private static final String SQL_BESTELLUNG = "INSERT INTO Bestellungen(Kaffeeart, Mit_Milch, Preis, Zeitstempel) " +
+            "VALUES(?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP))";
+    private static final String SQL_ZAHLUNG = "INSERT INTO Zahlungen(Bestellung_ID, Muenztyp, Anzahl) VALUES(?, ?, ?)";
+    private static final String SQL_ZAEHLER_ERHOEHEN = "INSERT INTO Verkaufszaehler(Schluessel, Wert) VALUES(?, ?) " +
+            "ON CONFLICT(Schluessel) DO UPDATE SET Wert = Wert + excluded.Wert";
+    private static final String SQL_ZAEHLER_LESEN = "SELECT Wert FROM Verkaufszaehler WHERE Schluessel = ?";
+    private static final String SQL_ZAEHLER_ALLE = "SELECT Schluessel, Wert FROM Verkaufszaehler";
+    // Bucket-Beginn in Unix-Sekunden (UTC), abgerundet auf die Auflösung ?1
+    private static final String SQL_ROLLUP_ERHOEHEN = "INSERT INTO Verkaufsrollup(Aufloesung, Bucket, Kaffeeart, Tassen, Mit_Milch, Umsatz) " +
+            "SELECT ?1, CAST(strftime('%s', Zeitstempel) AS INTEGER) / ?1 * ?1, COALESCE(Kaffeeart, ''), 1, Mit_Milch, Preis " +
+            "FROM Bestellungen WHERE ID = ?2 " +
+            "ON CONFLICT(Aufloesung, Bucket, Kaffeeart) DO UPDATE SET Tassen = Tassen + excluded.Tassen, " +
+            "Mit_Milch = Mit_Milch + excluded.Mit_Milch, Umsatz = Umsatz + excluded.Umsatz";
+    private static final String SQL_ROLLUP_VERLAUF = "SELECT Bucket, Kaffeeart, Tassen, Mit_Milch, Umsatz FROM Verkaufsrollup " +
+            "WHERE Aufloesung = ? AND Bucket >= ? AND Bucket < ? ORDER BY Bucket, Kaffeeart";
+    private static final String SQL_ROLLUP_BEREICH = "SELECT Kaffeeart, Tassen, Mit_Milch, Umsatz FROM Verkaufsrollup " +
+            "WHERE Aufloesung = ? AND Bucket >= ? AND Bucket < ?";
+    // Ein Zeitraum besteht aus höchstens fünf Abschnitten (Minuten, Stunden, Tage, Stunden, Minuten)
+    private static final String SQL_ROLLUP_ZEITRAUM = "SELECT Kaffeeart, SUM(Tassen), SUM(Mit_Milch), SUM(Umsatz) FROM (" +
+            String.join(" UNION ALL ", java.util.Collections.nCopies(5, SQL_ROLLUP_BEREICH)) +
+            ") GROUP BY Kaffeeart";
+    private static final String SQL_MUENZBESTAND = "SELECT Muenztyp, Anzahl FROM Muenzbestand";
+    private static final String SQL_MUENZBESTAND_UPDATE = "UPDATE Muenzbestand SET Anzahl = ? WHERE Muenztyp = ?";
+    private static final String SQL_MUENZBESTAND_DELTA = "UPDATE Muenzbestand SET Anzahl = Anzahl + ? WHERE Muenztyp = ?";
+    private static final String SQL_JOURNAL_LESEN = "SELECT Sequenz FROM Muenzjournal WHERE ID = 1";
+    private static final String SQL_JOURNAL_SETZEN = "UPDATE Muenzjournal SET Sequenz = ? WHERE ID = 1";
+    private static final String SQL_ZUSTAND_LESEN = "SELECT Daten, Aktuell FROM Automatenzustand WHERE ID = 1";
+    private static final String SQL_ZUSTAND_SCHREIBEN = "INSERT OR REPLACE INTO Automatenzustand(ID, Daten, Aktuell, Geschrieben) " +
+            "VALUES(1, ?, ?, CURRENT_TIMESTAMP)";
+    private static final String SQL_ZUSTAND_VERALTET = "UPDATE Automatenzustand SET Aktuell = 0 WHERE ID = 1 AND Aktuell = 1";
+    private static final String SQL_EREIGNISLOG_LESEN = "SELECT Position FROM Ereignislog WHERE ID = 1";
+    private static final String SQL_EREIGNISLOG_SETZEN = "UPDATE Ereignislog SET Position = ? WHERE ID = 1";
+    // Bestellungen mit Zahlungen (eine Zeile pro Münzart) in ID-Reihenfolge; das LIMIT zählt
+    // Bestellungen, nicht Zeilen (-1 = alle)
+    private static final String SQL_BESTELLUNGEN_LESEN = "SELECT b.ID, CAST(strftime('%s', b.Zeitstempel) AS INTEGER), " +
+            "b.Kaffeeart, b.Mit_Milch, b.Preis, z.Muenztyp, z.Anzahl FROM (" +
+            "SELECT ID, Zeitstempel, Kaffeeart, Mit_Milch, Preis FROM Bestellungen " +
+            "WHERE ID > ? AND ID <= ? AND Zeitstempel >= ? AND Zeitstempel < ? ORDER BY ID LIMIT ?) b " +
+            "LEFT JOIN Zahlungen z ON z.Bestellung_ID = b.ID ORDER BY b.ID";
+    // Zeilen pro Abruf aus SQLite; der Cursor läuft vorwärts, nichts wird gesammelt
+    private static final int LESE_BLOCK = 512;
+    private static final String SQL_HOECHSTE_BESTELLUNG = "SELECT COALESCE(MAX(ID), 0) FROM Bestellungen";
+    private static final String SQL_ARCHIV_MONATE = "SELECT DISTINCT strftime('%Y-%m', Zeitstempel) FROM Bestellungen " +
+            "WHERE Zeitstempel < ? AND ID <= ? ORDER BY 1";
+    private static final String SQL_ARCHIV_INDEX = "SELECT Monat, Teil, Datei, Von_ID, Bis_ID, Anzahl, Umsatz FROM Archiv ORDER BY Monat, Teil";
+    private static final String SQL_ARCHIV_EINTRAGEN = "INSERT INTO Archiv(Monat, Teil, Datei, Von_ID, Bis_ID, Anzahl, Umsatz) " +
+            "VALUES(?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_ARCHIV_ZAHLUNGEN_LOESCHEN = "DELETE FROM Zahlungen WHERE Bestellung_ID IN " +
+            "(SELECT ID FROM Bestellungen WHERE Zeitstempel >= ? AND Zeitstempel < ? AND ID <= ?)";
+    private static final String SQL_ARCHIV_BESTELLUNGEN_LOESCHEN = "DELETE FROM Bestellungen " +
+            "WHERE Zeitstempel >= ? AND Zeitstempel < ? AND ID <= ?";
+    private static final String SQL_ABGLEICH_BESTELLUNGEN = "SELECT ID, CAST(strftime('%s', Zeitstempel) AS INTEGER), " +
+            "Kaffeeart, Mit_Milch, Preis FROM Bestellungen WHERE ID > ? ORDER BY ID LIMIT ?";
+    private static final String SQL_ABGLEICH_ZAHLUNGEN = "SELECT ID, Bestellung_ID, Muenztyp, Anzahl FROM Zahlungen " +
+            "WHERE ID > ? ORDER BY ID LIMIT ?";
+    private static final String SQL_ABGLEICH_LESEN = "SELECT Sequenz, Bestellung_ID, Zahlung_ID, Muenzbestand FROM Abgleich WHERE Ziel = ?";
+    private static final String SQL_ABGLEICH_SCHREIBEN = "INSERT OR REPLACE INTO Abgleich(Ziel, Sequenz, Bestellung_ID, Zahlung_ID, Muenzbestand, Geschrieben) " +
+            "VALUES(?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
+    // Höchste Bestellungs-ID, die jedes Abgleichsziel samt Zahlungen schon hat (NULL ohne Ziele)
+    private static final String SQL_ABGLEICH_GRENZE = "SELECT MIN(MIN(a.Bestellung_ID, COALESCE(" +
+            "(SELECT MIN(z.Bestellung_ID) - 1 FROM Zahlungen z WHERE z.ID > a.Zahlung_ID), a.Bestellung_ID))) FROM Abgleich a";
+    // Gleiches Format wie CURRENT_TIMESTAMP (UTC), damit Rollups und Sortierung stimmen
+    private static final DateTimeFormatter ZEITSTEMPEL_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    // Verzeichnis des Automaten: enthält die DB und das Münzjournal
+    private final Path verzeichnis;
+    private VerbindungsPool pool;
+
+    // Zähler für Lastsimulation und Benchmarks: Commits und geschriebene Zeilen
+    private final LongAdder schreibTransaktionen = new LongAdder();
+    private final LongAdder geschriebeneZeilen = new LongAdder();
+
+    // Beim Start gelesener Snapshot (null, wenn es keinen gibt)
+    private Automatenzustand gespeicherterZustand;
+    // true, solange seit dem letzten Snapshot nichts anderes geschrieben wurde
+    private volatile boolean zustandAktuell = false;
 
     public DatabaseManager() {
+        this(Paths.get("."), POOL_GROESSE);
+    }
+
+    // Flottenbetrieb: jeder Automat hat sein eigenes Verzeichnis und damit seine eigene DB-Datei
+    public DatabaseManager(Path verzeichnis, int poolGroesse) {
+        this.verzeichnis = verzeichnis;
+        try {
+            pool = new VerbindungsPool("jdbc:sqlite:" + verzeichnis.resolve(DATEINAME), poolGroesse);
+        } catch (SQLException e) {
+            System.err.println("DB Verbindungsfehler: " + e.getMessage());
+        }
         initialisiereDatenbank();
+        ladeZustand();
+    }
+
+    public Path getVerzeichnis() {
+        return verzeichnis;
+    }
+
+    // operation: Name für die Metriken (Latenz db_<operation>, Fehler db_<operation>_fehler)
+    private VerbindungsPool.Verbindung verbindung(String operation) throws SQLException {
+        if (pool == null) throw new SQLException("Keine Datenbankverbindung verfügbar.");
+        return pool.ausleihen(operation);
+    }
+
+    private static void fehler(String operation, SQLException e) {
+        Metriken.zaehler("db_" + operation + "_fehler").increment();
+        e.printStackTrace();
     }
 
     private void initialisiereDatenbank() {
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement()) {
+        try (VerbindungsPool.Verbindung v = verbindung("initialisiereDatenbank");
+             Statement stmt = v.getConnection().createStatement()) {
+
+            // Schema schon auf aktuellem Stand: keine CREATE-/Seed-Abfragen beim Start
+            try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+                if (rs.next() && rs.getInt(1) == SCHEMA_VERSION) return;
+            }
+
+            // Freie Seiten nach dem Archivieren schrittweise abgeben (wirkt nur auf eine neue, leere DB;
+            // bestehende DBs stellt die Archivierung beim Start einmalig um)
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
 
             // 1. Tabelle Bestellungen
             String sqlBestellungen = "CREATE TABLE IF NOT EXISTS Bestellungen (" +
@@ -39,101 +165,757 @@ public class DatabaseManager {
                     "Anzahl INTEGER)";
             stmt.execute(sqlBestand);
 
+            // 4. Stand des Münzjournals (Write-Behind): bis zu welcher Sequenz ist alles gebucht
+            stmt.execute("CREATE TABLE IF NOT EXISTS Muenzjournal (" +
+                    "ID INTEGER PRIMARY KEY CHECK (ID = 1)," +
+                    "Sequenz INTEGER)");
+            stmt.execute("INSERT OR IGNORE INTO Muenzjournal (ID, Sequenz) VALUES (1, 0)");
+
+            // Stand des Ereignislogs: alle Sätze vor dieser Position sind verdichtet
+            stmt.execute("CREATE TABLE IF NOT EXISTS Ereignislog (" +
+                    "ID INTEGER PRIMARY KEY CHECK (ID = 1)," +
+                    "Position INTEGER)");
+            stmt.execute("INSERT OR IGNORE INTO Ereignislog (ID, Position) VALUES (1, 0)");
+
+            // 5. Laufende Summen, werden in derselben Transaktion wie jeder Verkauf erhöht
+            stmt.execute("CREATE TABLE IF NOT EXISTS Verkaufszaehler (" +
+                    "Schluessel TEXT PRIMARY KEY," +
+                    "Wert INTEGER NOT NULL) WITHOUT ROWID");
+            zaehlerNachtragen(v.getConnection());
+
+            // 6. Vorverdichtete Verkäufe pro Minute/Stunde/Tag und Kaffeeart für Zeitraum-Auswertungen
+            stmt.execute("CREATE TABLE IF NOT EXISTS Verkaufsrollup (" +
+                    "Aufloesung INTEGER NOT NULL," +
+                    "Bucket INTEGER NOT NULL," +
+                    "Kaffeeart TEXT NOT NULL," +
+                    "Tassen INTEGER NOT NULL," +
+                    "Mit_Milch INTEGER NOT NULL," +
+                    "Umsatz INTEGER NOT NULL," +
+                    "PRIMARY KEY (Aufloesung, Bucket, Kaffeeart)) WITHOUT ROWID");
+            rollupsNachtragen(v.getConnection());
+
+            // Indizes für Zeitbereiche auf den Rohdaten und für Zahlungen pro Bestellung
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_bestellungen_zeit ON Bestellungen(Zeitstempel, Kaffeeart, Mit_Milch, Preis)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_zahlungen_bestellung ON Zahlungen(Bestellung_ID)");
+
+            // 7. Snapshot des Automatenzustands (eine Zeile)
+            stmt.execute("CREATE TABLE IF NOT EXISTS Automatenzustand (" +
+                    "ID INTEGER PRIMARY KEY CHECK (ID = 1)," +
+                    "Daten BLOB," +
+                    "Aktuell INTEGER NOT NULL DEFAULT 0," +
+                    "Geschrieben DATETIME)");
+
+            // 8. Index der Archivdateien (Bestellungen älter als die Aufbewahrungsdauer)
+            stmt.execute("CREATE TABLE IF NOT EXISTS Archiv (" +
+                    "Monat TEXT NOT NULL," +
+                    "Teil INTEGER NOT NULL," +
+                    "Datei TEXT NOT NULL," +
+                    "Von_ID INTEGER NOT NULL," +
+                    "Bis_ID INTEGER NOT NULL," +
+                    "Anzahl INTEGER NOT NULL," +
+                    "Umsatz INTEGER NOT NULL," +
+                    "Erstellt DATETIME DEFAULT CURRENT_TIMESTAMP," +
+                    "PRIMARY KEY (Monat, Teil))");
+
+            // 9. Stand des Abgleichs mit der Zentrale, pro Ziel
+            stmt.execute("CREATE TABLE IF NOT EXISTS Abgleich (" +
+                    "Ziel TEXT PRIMARY KEY," +
+                    "Sequenz INTEGER NOT NULL," +
+                    "Bestellung_ID INTEGER NOT NULL," +
+                    "Zahlung_ID INTEGER NOT NULL," +
+                    "Muenzbestand BLOB," +
+                    "Geschrieben DATETIME)");
+
             // Initialisierung der Münz-Tabelle falls leer
             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Muenzbestand");
             if (rs.next() && rs.getInt(1) == 0) {
-                int[] werte = {200, 100, 50, 20, 10, 5, 2, 1};
-                PreparedStatement ps = conn.prepareStatement("INSERT INTO Muenzbestand (Muenztyp, Anzahl) VALUES (?, ?)");
-                for (int wert : werte) {
-                    ps.setInt(1, wert);
-                    ps.setInt(2, 10); // Startbestand: 10 Stück pro Münze
-                    ps.executeUpdate();
+                try (PreparedStatement ps = v.getConnection().prepareStatement("INSERT INTO Muenzbestand (Muenztyp, Anzahl) VALUES (?, ?)")) {
+                    for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                        ps.setInt(1, MuenzVektor.wert(i));
+                        ps.setInt(2, 10); // Startbestand: 10 Stück pro Münze
+                        ps.executeUpdate();
+                    }
                 }
             }
 
+            stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
         } catch (SQLException e) {
+            Metriken.zaehler("db_initialisiereDatenbank_fehler").increment();
             System.err.println("DB Init Fehler: " + e.getMessage());
         }
     }
 
-    // --- BESTELLUNGEN ---
+    // --- SNAPSHOT ---
 
-    public int bestellungSpeichern(String kaffeeArt, boolean mitMilch, int preis) {
-        String sql = "INSERT INTO Bestellungen(Kaffeeart, Mit_Milch, Preis) VALUES(?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, kaffeeArt);
-            pstmt.setInt(2, mitMilch ? 1 : 0);
-            pstmt.setInt(3, preis);
+    private void ladeZustand() {
+        try (VerbindungsPool.Verbindung v = verbindung("ladeZustand");
+             ResultSet rs = v.vorbereiten(SQL_ZUSTAND_LESEN).executeQuery()) {
+            if (rs.next()) {
+                gespeicherterZustand = Automatenzustand.ausBytes(rs.getBytes(1));
+                zustandAktuell = gespeicherterZustand != null && rs.getInt(2) == 1;
+            }
+        } catch (SQLException e) {
+            fehler("ladeZustand", e);
+        }
+    }
+
+    public Automatenzustand getGespeicherterZustand() {
+        return gespeicherterZustand;
+    }
+
+    // Stimmen Münzbestand und Tassenzahl im Snapshot noch mit den Tabellen überein?
+    public boolean istZustandAktuell() {
+        return zustandAktuell;
+    }
+
+    // aktuell = true nur, wenn alle Journale geschrieben sind (z.B. beim Beenden)
+    public void zustandSpeichern(Automatenzustand zustand, boolean aktuell) {
+        try (VerbindungsPool.Verbindung v = verbindung("zustandSpeichern")) {
+            PreparedStatement pstmt = v.vorbereiten(SQL_ZUSTAND_SCHREIBEN);
+            pstmt.setBytes(1, zustand.alsBytes());
+            pstmt.setInt(2, aktuell ? 1 : 0);
             pstmt.executeUpdate();
-            ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) return rs.getInt(1);
+            geschrieben(1);
+            gespeicherterZustand = zustand;
+            zustandAktuell = aktuell;
         } catch (SQLException e) {
-            e.printStackTrace();
+            fehler("zustandSpeichern", e);
+        }
+    }
+
+    // Jede andere Buchung macht Münzbestand und Tassenzahl im Snapshot ungültig.
+    // Kostet nur bei der ersten Buchung nach einem Snapshot eine Anweisung.
+    private void zustandVeraltet(VerbindungsPool.Verbindung v) throws SQLException {
+        if (zustandAktuell) {
+            v.vorbereiten(SQL_ZUSTAND_VERALTET).executeUpdate();
+            zustandAktuell = false;
         }
-        return -1;
     }
 
-    public void zahlungSpeichern(int bestellungId, Map<Integer, Integer> eingeworfeneMuenzen) {
-        String sql = "INSERT INTO Zahlungen(Bestellung_ID, Muenztyp, Anzahl) VALUES(?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            for (Map.Entry<Integer, Integer> entry : eingeworfeneMuenzen.entrySet()) {
-                if (entry.getValue() > 0) {
+    // --- BESTELLUNGEN ---
+
+    // Einzelne Bestellung ohne Zahlungen; läuft wie jeder Verkauf inkl. Zähler in einer Transaktion
+    public int bestellungSpeichern(String kaffeeArt, boolean mitMilch, int preis) {
+        Verkaufsbuchung buchung = neueVerkaufsbuchung().bestellung(kaffeeArt, mitMilch, preis);
+        buchung.abschliessen();
+        return buchung.getBestellungId();
+    }
+
+    public void zahlungSpeichern(int bestellungId, MuenzVektor eingeworfeneMuenzen) {
+        try (VerbindungsPool.Verbindung v = verbindung("zahlungSpeichern")) {
+            zustandVeraltet(v);
+            PreparedStatement pstmt = v.vorbereiten(SQL_ZAHLUNG);
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                if (eingeworfeneMuenzen.get(i) > 0) {
                     pstmt.setInt(1, bestellungId);
-                    pstmt.setInt(2, entry.getKey());
-                    pstmt.setInt(3, entry.getValue());
+                    pstmt.setInt(2, MuenzVektor.wert(i));
+                    pstmt.setInt(3, eingeworfeneMuenzen.get(i));
                     pstmt.executeUpdate();
+                    geschrieben(1);
                 }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            fehler("zahlungSpeichern", e);
+        }
+    }
+
+    // --- VERKAUF ALS EINE TRANSAKTION ---
+
+    public Verkaufsbuchung neueVerkaufsbuchung() {
+        return new Verkaufsbuchung(this);
+    }
+
+    // Bestellung, Zahlungen (Batch) und Münzbestand-Deltas in einem Commit.
+    // Liefert die Bestellungs-ID (0 ohne Bestellung) oder -1, wenn zurückgerollt wurde.
+    int verkaufBuchen(Verkaufsbuchung buchung) {
+        try (VerbindungsPool.Verbindung v = verbindung("verkaufBuchen")) {
+            Connection conn = v.getConnection();
+            conn.setAutoCommit(false);
+            zustandVeraltet(v);
+            int[] zeilen = {0};
+            int bestellungId = buchungSchreiben(v, buchung, zeilen);
+            conn.commit();
+            conn.setAutoCommit(true);
+            geschriebeneZeilen.add(zeilen[0]);
+            schreibTransaktionen.increment();
+            return bestellungId;
+        } catch (SQLException e) {
+            // Rollback übernimmt der Pool bei der Rückgabe der Verbindung
+            fehler("verkaufBuchen", e);
+            return -1;
+        }
+    }
+
+    // Viele Buchungen in einem Commit (Verdichtung des Ereignislogs)
+    boolean verkaeufeBuchen(List<Verkaufsbuchung> buchungen) {
+        if (buchungen.isEmpty()) return true;
+        try (VerbindungsPool.Verbindung v = verbindung("verkaeufeBuchen")) {
+            Connection conn = v.getConnection();
+            conn.setAutoCommit(false);
+            zustandVeraltet(v);
+            int[] zeilen = {0};
+            for (Verkaufsbuchung buchung : buchungen) {
+                buchungSchreiben(v, buchung, zeilen);
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+            geschriebeneZeilen.add(zeilen[0]);
+            schreibTransaktionen.increment();
+            return true;
+        } catch (SQLException e) {
+            fehler("verkaeufeBuchen", e);
+            return false;
+        }
+    }
+
+    // Schreibt eine Buchung in die laufende Transaktion und zählt die Zeilen in zeilen[0]
+    private int buchungSchreiben(VerbindungsPool.Verbindung v, Verkaufsbuchung buchung, int[] zeilen) throws SQLException {
+        int bestellungId = 0;
+        PreparedStatement zaehler = v.vorbereiten(SQL_ZAEHLER_ERHOEHEN);
+        boolean zaehlerOffen = false;
+        if (buchung.hatBestellung()) {
+            PreparedStatement pstmt = v.vorbereitenMitSchluessel(SQL_BESTELLUNG);
+            pstmt.setString(1, buchung.getKaffeeArt());
+            pstmt.setInt(2, buchung.isMitMilch() ? 1 : 0);
+            pstmt.setInt(3, buchung.getPreis());
+            pstmt.setString(4, buchung.getZeitstempel() < 0 ? null
+                    : ZEITSTEMPEL_FORMAT.format(Instant.ofEpochMilli(buchung.getZeitstempel())));
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (!rs.next()) throw new SQLException("Keine Bestellungs-ID erhalten.");
+                bestellungId = rs.getInt(1);
+            }
+            zeilen[0]++;
+
+            // Zähler: Tassen, Umsatz, Milch/ohne Milch, Tassen pro Kaffeeart
+            zaehlerErhoehen(zaehler, Verkaufsstatistik.TASSEN, 1);
+            zaehlerErhoehen(zaehler, Verkaufsstatistik.UMSATZ, buchung.getPreis());
+            zaehlerErhoehen(zaehler, buchung.isMitMilch() ? Verkaufsstatistik.MIT_MILCH : Verkaufsstatistik.OHNE_MILCH, 1);
+            zaehlerErhoehen(zaehler, Verkaufsstatistik.ART_PRAEFIX + buchung.getKaffeeArt(), 1);
+            zaehlerOffen = true;
+
+            PreparedStatement rollup = v.vorbereiten(SQL_ROLLUP_ERHOEHEN);
+            for (Verkaufsintervall.Aufloesung a : Verkaufsintervall.Aufloesung.values()) {
+                rollup.setLong(1, a.getSekunden());
+                rollup.setInt(2, bestellungId);
+                rollup.addBatch();
+            }
+            zeilen[0] += rollup.executeBatch().length;
+
+            MuenzVektor zahlungen = buchung.getZahlungen();
+            if (!zahlungen.istLeer()) {
+                PreparedStatement zahlung = v.vorbereiten(SQL_ZAHLUNG);
+                for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                    if (zahlungen.get(i) <= 0) continue;
+                    zahlung.setInt(1, bestellungId);
+                    zahlung.setInt(2, MuenzVektor.wert(i));
+                    zahlung.setInt(3, zahlungen.get(i));
+                    zahlung.addBatch();
+                }
+                zeilen[0] += zahlung.executeBatch().length;
+            }
+        }
+
+        for (Map.Entry<String, Long> z : buchung.getZaehler().entrySet()) {
+            zaehlerErhoehen(zaehler, z.getKey(), z.getValue());
+            zaehlerOffen = true;
+        }
+        if (zaehlerOffen) {
+            zeilen[0] += zaehler.executeBatch().length;
+        }
+
+        MuenzVektor aenderungen = buchung.getMuenzAenderungen();
+        if (!aenderungen.istLeer()) {
+            PreparedStatement bestand = v.vorbereiten(SQL_MUENZBESTAND_DELTA);
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                if (aenderungen.get(i) == 0) continue;
+                bestand.setInt(1, aenderungen.get(i));
+                bestand.setInt(2, MuenzVektor.wert(i));
+                bestand.addBatch();
+            }
+            zeilen[0] += bestand.executeBatch().length;
+        }
+
+        if (buchung.getJournalSequenz() >= 0) {
+            PreparedStatement journal = v.vorbereiten(SQL_JOURNAL_SETZEN);
+            journal.setLong(1, buchung.getJournalSequenz());
+            journal.executeUpdate();
+            zeilen[0]++;
+        }
+
+        if (buchung.getEreignisPosition() >= 0) {
+            PreparedStatement position = v.vorbereiten(SQL_EREIGNISLOG_SETZEN);
+            position.setLong(1, buchung.getEreignisPosition());
+            position.executeUpdate();
+            zeilen[0]++;
         }
+        return bestellungId;
     }
 
     // --- NEU: PERSISTENZ METHODEN ---
 
+    private static void zaehlerErhoehen(PreparedStatement zaehler, String schluessel, long delta) throws SQLException {
+        zaehler.setString(1, schluessel);
+        zaehler.setLong(2, delta);
+        zaehler.addBatch();
+    }
+
+    // Einmalige Migration: Zähler aus der vorhandenen Historie berechnen (nur wenn sie fehlen)
+    private void zaehlerNachtragen(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM Verkaufszaehler WHERE Schluessel = '" + Verkaufsstatistik.TASSEN + "'")) {
+            if (rs.next()) return;
+        }
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO Verkaufszaehler(Schluessel, Wert) " +
+                    "SELECT '" + Verkaufsstatistik.TASSEN + "', COUNT(*) FROM Bestellungen " +
+                    "UNION ALL SELECT '" + Verkaufsstatistik.UMSATZ + "', COALESCE(SUM(Preis), 0) FROM Bestellungen " +
+                    "UNION ALL SELECT '" + Verkaufsstatistik.MIT_MILCH + "', COUNT(*) FROM Bestellungen WHERE Mit_Milch = 1 " +
+                    "UNION ALL SELECT '" + Verkaufsstatistik.OHNE_MILCH + "', COUNT(*) FROM Bestellungen WHERE Mit_Milch <> 1");
+            stmt.execute("INSERT INTO Verkaufszaehler(Schluessel, Wert) " +
+                    "SELECT '" + Verkaufsstatistik.ART_PRAEFIX + "' || Kaffeeart, COUNT(*) FROM Bestellungen " +
+                    "WHERE Kaffeeart IS NOT NULL GROUP BY Kaffeeart");
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // Einmalige Migration: Rollups aus vorhandenen Bestellungen aufbauen
+    private void rollupsNachtragen(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM Verkaufsrollup)")) {
+            if (rs.next() && rs.getInt(1) == 1) return;
+        }
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO Verkaufsrollup(Aufloesung, Bucket, Kaffeeart, Tassen, Mit_Milch, Umsatz) " +
+                "SELECT ?1, CAST(strftime('%s', Zeitstempel) AS INTEGER) / ?1 * ?1 AS B, COALESCE(Kaffeeart, '') AS K, " +
+                "COUNT(*), COALESCE(SUM(Mit_Milch), 0), COALESCE(SUM(Preis), 0) " +
+                "FROM Bestellungen WHERE Zeitstempel IS NOT NULL GROUP BY B, K")) {
+            for (Verkaufsintervall.Aufloesung a : Verkaufsintervall.Aufloesung.values()) {
+                pstmt.setLong(1, a.getSekunden());
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
     // Liest die Gesamtanzahl aller jemals verkauften Tassen aus der DB [71]
+    // O(1): gelesen wird der laufende Zähler, nicht COUNT(*) über die Historie
     public int getGesamtTassenAnzahl() {
-        String sql = "SELECT COUNT(*) FROM Bestellungen";
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (VerbindungsPool.Verbindung v = verbindung("getGesamtTassenAnzahl")) {
+            PreparedStatement pstmt = v.vorbereiten(SQL_ZAEHLER_LESEN);
+            pstmt.setString(1, Verkaufsstatistik.TASSEN);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            fehler("getGesamtTassenAnzahl", e);
+        }
+        return 0;
+    }
+
+    // Alle Zähler auf einmal (Tassen, Umsatz, Milch, pro Kaffeeart)
+    public Verkaufsstatistik ladeVerkaufsstatistik() {
+        Verkaufsstatistik.Builder builder = new Verkaufsstatistik.Builder();
+        try (VerbindungsPool.Verbindung v = verbindung("ladeVerkaufsstatistik");
+             ResultSet rs = v.vorbereiten(SQL_ZAEHLER_ALLE).executeQuery()) {
+            while (rs.next()) {
+                builder.wert(rs.getString(1), rs.getLong(2));
+            }
+        } catch (SQLException e) {
+            fehler("ladeVerkaufsstatistik", e);
+        }
+        return builder.build();
+    }
+
+    // --- AUSWERTUNGEN ÜBER ZEITRÄUME ---
+
+    // Verkäufe pro Bucket und Kaffeeart im halboffenen Intervall [von, bis), direkt aus den Rollups
+    public List<Verkaufsintervall> ladeVerkaufsverlauf(Verkaufsintervall.Aufloesung aufloesung, Instant von, Instant bis) {
+        List<Verkaufsintervall> verlauf = new ArrayList<>();
+        try (VerbindungsPool.Verbindung v = verbindung("ladeVerkaufsverlauf")) {
+            PreparedStatement pstmt = v.vorbereiten(SQL_ROLLUP_VERLAUF);
+            pstmt.setLong(1, aufloesung.getSekunden());
+            pstmt.setLong(2, aufloesung.abrunden(von.getEpochSecond()));
+            pstmt.setLong(3, aufloesung.aufrunden(bis.getEpochSecond()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    verlauf.add(new Verkaufsintervall(aufloesung, Instant.ofEpochSecond(rs.getLong(1)),
+                            rs.getString(2), rs.getLong(3), rs.getLong(4), rs.getLong(5)));
+                }
+            }
+        } catch (SQLException e) {
+            fehler("ladeVerkaufsverlauf", e);
+        }
+        return verlauf;
+    }
+
+    // Summen für [von, bis) auf Minutengenauigkeit. Der Zeitraum wird in möglichst grobe
+    // Buckets zerlegt (Tage in der Mitte, Stunden und Minuten nur an den Rändern),
+    // dadurch liest auch ein ganzes Jahr nur einige hundert Zeilen.
+    public Verkaufsstatistik ladeVerkaufsstatistik(Instant von, Instant bis) {
+        Verkaufsstatistik.Builder builder = new Verkaufsstatistik.Builder();
+        long[][] abschnitte = Verkaufsintervall.zerlegen(von.getEpochSecond(), bis.getEpochSecond());
+        try (VerbindungsPool.Verbindung v = verbindung("ladeVerkaufsstatistikZeitraum")) {
+            PreparedStatement pstmt = v.vorbereiten(SQL_ROLLUP_ZEITRAUM);
+            for (int i = 0; i < abschnitte.length; i++) {
+                pstmt.setLong(3 * i + 1, abschnitte[i][0]);
+                pstmt.setLong(3 * i + 2, abschnitte[i][1]);
+                pstmt.setLong(3 * i + 3, abschnitte[i][2]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    builder.verkauf(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4));
+                }
+            }
+        } catch (SQLException e) {
+            fehler("ladeVerkaufsstatistikZeitraum", e);
+        }
+        return builder.build();
+    }
+
+    // --- ROHDATEN UND ARCHIV ---
+
+    // Bestellungen mit Zahlungen im Zeitraum [von, bis) und ID-Bereich (nachId, bisId], aufsteigend nach ID.
+    // Die Sätze werden einzeln an das Ziel gegeben, nicht als Liste gesammelt.
+    public void bestellungenLesen(Instant von, Instant bis, long nachId, long bisId, Consumer<Bestellsatz> ziel) {
+        bestellungenLesen(von, bis, nachId, bisId, -1, ziel);
+    }
+
+    // Wie oben, aber höchstens maxAnzahl Bestellungen (-1 = alle). Für lange Exporte seitenweise
+    // aufrufen, dann bleibt die Verbindung zwischen den Seiten für Verkäufe frei.
+    // Liefert die ID der letzten gelesenen Bestellung (nachId, wenn keine mehr kam, -1 bei DB-Fehler).
+    public long bestellungenLesen(Instant von, Instant bis, long nachId, long bisId, int maxAnzahl, Consumer<Bestellsatz> ziel) {
+        long letzteId = nachId;
+        try (VerbindungsPool.Verbindung v = verbindung("bestellungenLesen")) {
+            PreparedStatement pstmt = v.vorbereiten(SQL_BESTELLUNGEN_LESEN);
+            pstmt.setFetchSize(LESE_BLOCK);
+            pstmt.setLong(1, nachId);
+            pstmt.setLong(2, bisId);
+            pstmt.setString(3, ZEITSTEMPEL_FORMAT.format(von));
+            pstmt.setString(4, ZEITSTEMPEL_FORMAT.format(bis));
+            pstmt.setInt(5, maxAnzahl);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                long id = -1;
+                long zeit = 0;
+                String art = null;
+                boolean milch = false;
+                int preis = 0;
+                MuenzVektor zahlungen = null;
+                while (rs.next()) {
+                    if (rs.getLong(1) != id) {
+                        if (zahlungen != null) ziel.accept(new Bestellsatz(id, zeit, art, milch, preis, zahlungen));
+                        id = rs.getLong(1);
+                        zeit = rs.getLong(2);
+                        art = rs.getString(3);
+                        milch = rs.getInt(4) == 1;
+                        preis = rs.getInt(5);
+                        zahlungen = new MuenzVektor();
+                    }
+                    int schacht = MuenzVektor.schacht(rs.getInt(6));
+                    if (!rs.wasNull() && schacht >= 0) zahlungen.add(schacht, rs.getInt(7));
+                }
+                if (zahlungen != null) {
+                    ziel.accept(new Bestellsatz(id, zeit, art, milch, preis, zahlungen));
+                    letzteId = id;
+                }
+            }
+        } catch (SQLException e) {
+            fehler("bestellungenLesen", e);
+            return -1;
+        }
+        return letzteId;
+    }
+
+    // Höchste vergebene Bestellungs-ID (0 ohne Bestellungen)
+    public long ladeHoechsteBestellungId() {
+        try (VerbindungsPool.Verbindung v = verbindung("ladeHoechsteBestellungId");
+             ResultSet rs = v.vorbereiten(SQL_HOECHSTE_BESTELLUNG).executeQuery()) {
             if (rs.next()) {
-                return rs.getInt(1);
+                return rs.getLong(1);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            fehler("ladeHoechsteBestellungId", e);
         }
         return 0;
     }
 
-    // Lädt den aktuellen Münzbestand aus der DB
-    public Map<Integer, Integer> ladeMuenzBestand() {
-        Map<Integer, Integer> bestand = new HashMap<>();
-        String sql = "SELECT Muenztyp, Anzahl FROM Muenzbestand";
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    // Monate (yyyy-MM, UTC) mit Bestellungen vor der Grenze, älteste zuerst
+    List<String> ladeArchivierbareMonate(Instant grenze, long bisId) {
+        List<String> monate = new ArrayList<>();
+        try (VerbindungsPool.Verbindung v = verbindung("ladeArchivierbareMonate")) {
+            PreparedStatement pstmt = v.vorbereiten(SQL_ARCHIV_MONATE);
+            pstmt.setString(1, ZEITSTEMPEL_FORMAT.format(grenze));
+            pstmt.setLong(2, bisId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    monate.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            fehler("ladeArchivierbareMonate", e);
+        }
+        return monate;
+    }
+
+    // null, wenn der Index nicht gelesen werden konnte: eine leere Liste hieße "keine Archivdateien"
+    public List<Archivdatei> ladeArchivIndex() {
+        List<Archivdatei> index = new ArrayList<>();
+        try (VerbindungsPool.Verbindung v = verbindung("ladeArchivIndex");
+             ResultSet rs = v.vorbereiten(SQL_ARCHIV_INDEX).executeQuery()) {
+            while (rs.next()) {
+                index.add(new Archivdatei(rs.getString(1), rs.getInt(2), rs.getString(3),
+                        rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7)));
+            }
+        } catch (SQLException e) {
+            fehler("ladeArchivIndex", e);
+            return null;
+        }
+        return index;
+    }
+
+    // Trägt die fertige Archivdatei in den Index ein und löscht genau die archivierten Zeilen,
+    // alles in einem Commit. Stimmt die Anzahl nicht mit der Datei überein, wird zurückgerollt.
+    boolean archivBuchen(Archivdatei datei, Instant von, Instant bis, long bisId) {
+        try (VerbindungsPool.Verbindung v = verbindung("archivBuchen")) {
+            Connection conn = v.getConnection();
+            conn.setAutoCommit(false);
+            PreparedStatement eintragen = v.vorbereiten(SQL_ARCHIV_EINTRAGEN);
+            eintragen.setString(1, datei.getMonat());
+            eintragen.setInt(2, datei.getTeil());
+            eintragen.setString(3, datei.getDatei());
+            eintragen.setLong(4, datei.getVonId());
+            eintragen.setLong(5, datei.getBisId());
+            eintragen.setLong(6, datei.getAnzahl());
+            eintragen.setLong(7, datei.getUmsatzInCent());
+            eintragen.executeUpdate();
+
+            int zahlungen = bereichLoeschen(v.vorbereiten(SQL_ARCHIV_ZAHLUNGEN_LOESCHEN), von, bis, bisId);
+            int bestellungen = bereichLoeschen(v.vorbereiten(SQL_ARCHIV_BESTELLUNGEN_LOESCHEN), von, bis, bisId);
+            if (bestellungen != datei.getAnzahl()) {
+                throw new SQLException("Archiv " + datei.getDatei() + ": " + datei.getAnzahl()
+                        + " Bestellungen geschrieben, " + bestellungen + " gelöscht.");
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+            geschriebeneZeilen.add(1 + zahlungen + bestellungen);
+            schreibTransaktionen.increment();
+            return true;
+        } catch (SQLException e) {
+            fehler("archivBuchen", e);
+            return false;
+        }
+    }
+
+    private static int bereichLoeschen(PreparedStatement pstmt, Instant von, Instant bis, long bisId) throws SQLException {
+        pstmt.setString(1, ZEITSTEMPEL_FORMAT.format(von));
+        pstmt.setString(2, ZEITSTEMPEL_FORMAT.format(bis));
+        pstmt.setLong(3, bisId);
+        return pstmt.executeUpdate();
+    }
+
+    boolean hatInkrementellesVakuum() {
+        try (VerbindungsPool.Verbindung v = verbindung("hatInkrementellesVakuum");
+             Statement stmt = v.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+            return rs.next() && rs.getInt(1) == 2;
+        } catch (SQLException e) {
+            fehler("hatInkrementellesVakuum", e);
+            return false;
+        }
+    }
+
+    // Ältere DBs haben kein inkrementelles Vakuum; die Umstellung braucht einmal ein volles VACUUM.
+    // Das sperrt die DB für die ganze Dauer: nur beim Start aufrufen, bevor Verkäufe angenommen werden.
+    boolean inkrementellesVakuumEinrichten() {
+        if (hatInkrementellesVakuum()) return true;
+        try (VerbindungsPool.Verbindung v = verbindung("vakuumEinrichten");
+             Statement stmt = v.getConnection().createStatement()) {
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            stmt.execute("VACUUM");
+            return true;
+        } catch (SQLException e) {
+            fehler("vakuumEinrichten", e);
+            return false;
+        }
+    }
+
+    // Gibt bis zu "seiten" freie Seiten an das Dateisystem zurück; liefert die noch freien Seiten.
+    // Kurze Schritte, damit Verkäufe zwischendurch an die Verbindung kommen.
+    int vakuumSchritt(int seiten) {
+        try (VerbindungsPool.Verbindung v = verbindung("vakuumSchritt");
+             Statement stmt = v.getConnection().createStatement()) {
+            // Der Pragma gibt pro Schritt nur eine Seite frei. execute() bliebe nach dem ersten Schritt stehen,
+            // executeQuery() lehnt ihn ab (keine Spalten); executeUpdate() läuft bis zum Ende durch.
+            stmt.executeUpdate("PRAGMA incremental_vacuum(" + seiten + ")");
+            try (ResultSet rs = stmt.executeQuery("PRAGMA freelist_count")) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            fehler("vakuumSchritt", e);
+            return 0;
+        }
+    }
+
+    // --- ABGLEICH MIT DER ZENTRALE ---
+
+    // Füllt das Paket mit bis zu maxZeilen neuen Bestellungen und Zahlungen. Zahlungen werden nur
+    // bis zur letzten Bestellung im Paket genommen, damit keine Zahlung vor ihrer Bestellung ankommt.
+    boolean abgleichLesen(Abgleichsbatch.Builder batch, long nachBestellung, long nachZahlung, int maxZeilen) {
+        try (VerbindungsPool.Verbindung v = verbindung("abgleichLesen")) {
+            PreparedStatement bestellungen = v.vorbereiten(SQL_ABGLEICH_BESTELLUNGEN);
+            bestellungen.setLong(1, nachBestellung);
+            bestellungen.setInt(2, maxZeilen);
+            try (ResultSet rs = bestellungen.executeQuery()) {
+                while (rs.next()) {
+                    batch.bestellung(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getInt(4) == 1, rs.getInt(5));
+                }
+            }
+            long bisBestellung = batch.getBisBestellung();
+            PreparedStatement zahlungen = v.vorbereiten(SQL_ABGLEICH_ZAHLUNGEN);
+            zahlungen.setLong(1, nachZahlung);
+            zahlungen.setInt(2, maxZeilen);
+            try (ResultSet rs = zahlungen.executeQuery()) {
+                while (rs.next() && rs.getLong(2) <= bisBestellung) {
+                    batch.zahlung(rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getInt(4));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            fehler("abgleichLesen", e);
+            return false;
+        }
+    }
+
+    // Bestätigter Stand für ein Ziel (Startwerte, wenn es noch keinen gibt)
+    Abgleichsagent.Stand ladeAbgleichsstand(String ziel) {
+        try (VerbindungsPool.Verbindung v = verbindung("ladeAbgleichsstand")) {
+            PreparedStatement pstmt = v.vorbereiten(SQL_ABGLEICH_LESEN);
+            pstmt.setString(1, ziel);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Abgleichsagent.Stand(rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                            Abgleichsagent.Stand.bestandAusBytes(rs.getBytes(4)));
+                }
+            }
+        } catch (SQLException e) {
+            fehler("ladeAbgleichsstand", e);
+        }
+        return new Abgleichsagent.Stand(0, 0, 0, null);
+    }
+
+    boolean abgleichsstandSpeichern(String ziel, Abgleichsagent.Stand stand) {
+        try (VerbindungsPool.Verbindung v = verbindung("abgleichsstandSpeichern")) {
+            PreparedStatement pstmt = v.vorbereiten(SQL_ABGLEICH_SCHREIBEN);
+            pstmt.setString(1, ziel);
+            pstmt.setLong(2, stand.getSequenz());
+            pstmt.setLong(3, stand.getBestellung());
+            pstmt.setLong(4, stand.getZahlung());
+            pstmt.setBytes(5, stand.bestandAlsBytes());
+            pstmt.executeUpdate();
+            geschrieben(1);
+            return true;
+        } catch (SQLException e) {
+            fehler("abgleichsstandSpeichern", e);
+            return false;
+        }
+    }
+
+    // Bestellungen bis zu dieser ID sind bei allen Abgleichszielen angekommen und dürfen
+    // archiviert werden (Long.MAX_VALUE ohne Abgleich, 0 bei einem Fehler)
+    long ladeAbgleichsgrenze() {
+        try (VerbindungsPool.Verbindung v = verbindung("ladeAbgleichsgrenze");
+             ResultSet rs = v.vorbereiten(SQL_ABGLEICH_GRENZE).executeQuery()) {
+            if (rs.next()) {
+                long grenze = rs.getLong(1);
+                return rs.wasNull() ? Long.MAX_VALUE : grenze;
+            }
+        } catch (SQLException e) {
+            fehler("ladeAbgleichsgrenze", e);
+            return 0;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    // Lädt den aktuellen Münzbestand aus der DB in den übergebenen Vektor
+    public void ladeMuenzBestand(MuenzVektor bestand) {
+        bestand.leeren();
+        try (VerbindungsPool.Verbindung v = verbindung("ladeMuenzBestand");
+             ResultSet rs = v.vorbereiten(SQL_MUENZBESTAND).executeQuery()) {
             while (rs.next()) {
-                bestand.put(rs.getInt("Muenztyp"), rs.getInt("Anzahl"));
+                int schacht = MuenzVektor.schacht(rs.getInt("Muenztyp"));
+                if (schacht >= 0) bestand.set(schacht, rs.getInt("Anzahl"));
+            }
+        } catch (SQLException e) {
+            fehler("ladeMuenzBestand", e);
+        }
+    }
+
+    // Höchste Münzjournal-Sequenz, deren Deltas bereits im Münzbestand stecken
+    public long ladeMuenzJournalSequenz() {
+        try (VerbindungsPool.Verbindung v = verbindung("ladeMuenzJournalSequenz");
+             ResultSet rs = v.vorbereiten(SQL_JOURNAL_LESEN).executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            fehler("ladeMuenzJournalSequenz", e);
+        }
+        return 0;
+    }
+
+    // Erste noch nicht verdichtete Position im Ereignislog
+    public long ladeEreignislogPosition() {
+        try (VerbindungsPool.Verbindung v = verbindung("ladeEreignislogPosition");
+             ResultSet rs = v.vorbereiten(SQL_EREIGNISLOG_LESEN).executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            fehler("ladeEreignislogPosition", e);
         }
-        return bestand;
+        return 0;
     }
 
     // Aktualisiert den Bestand einer bestimmten Münze
     public void updateMuenzBestand(int muenzTyp, int neueAnzahl) {
-        String sql = "UPDATE Muenzbestand SET Anzahl = ? WHERE Muenztyp = ?";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (VerbindungsPool.Verbindung v = verbindung("updateMuenzBestand")) {
+            zustandVeraltet(v);
+            PreparedStatement pstmt = v.vorbereiten(SQL_MUENZBESTAND_UPDATE);
             pstmt.setInt(1, neueAnzahl);
             pstmt.setInt(2, muenzTyp);
             pstmt.executeUpdate();
+            geschrieben(1);
         } catch (SQLException e) {
-            e.printStackTrace();
+            fehler("updateMuenzBestand", e);
+        }
+    }
+
+    // Eine Anweisung im Autocommit ist eine eigene Transaktion
+    private void geschrieben(int zeilen) {
+        schreibTransaktionen.increment();
+        geschriebeneZeilen.add(zeilen);
+    }
+
+    public long getSchreibTransaktionen() {
+        return schreibTransaktionen.sum();
+    }
+
+    public long getGeschriebeneZeilen() {
+        return geschriebeneZeilen.sum();
+    }
+
+    // Schließt alle Verbindungen des Pools (beim Beenden der Anwendung)
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package de.gfn.coffee;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+
+// Abgleich in ein Verzeichnis: eine Datei pro Paket, <maschine>-<sequenz>-<bis Bestellung>-<bis Zahlung>.cdc.
+// Überschneiden sich zwei Dateien (Wiederholung mit mehr Zeilen), gilt die Zeile pro ID einmal.
+// Ersatz für die Zentrale in Tests und Ablage für den Abgleichsempfaenger.
+public class Dateiabgleich implements Abgleichsziel {
+    private final Path verzeichnis;
+
+    public Dateiabgleich(Path verzeichnis) throws IOException {
+        this.verzeichnis = Files.createDirectories(verzeichnis);
+    }
+
+    @Override
+    public String getName() {
+        return "datei:" + verzeichnis.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public CompletableFuture<Void> senden(Abgleichsbatch batch) {
+        // Eine Wiederholung mit derselben Sequenz, aber mehr Zeilen bekommt eine eigene Datei. Bei gleichem
+        // Namen sind die Zeilen dieselben; ersetzt wird höchstens ein älterer Münzbestand.
+        Path ziel = verzeichnis.resolve(String.format("%s-%012d-%012d-%012d.cdc", batch.getMaschinenId(),
+                batch.getSequenz(), batch.getBisBestellung(), batch.getBisZahlung()));
+        try {
+            byte[] daten = batch.alsBytes();
+            Path temp = verzeichnis.resolve(ziel.getFileName() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                out.write(daten);
+                out.getFD().sync();
+            }
+            Files.move(temp, ziel, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Metriken.zaehler("abgleich_bytes").add(daten.length);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,350 @@
+package de.gfn.coffee;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Append-Only-Ereignislog als primäres Verkaufsjournal: Münzen, Bestellungen, Wartung und
+// Defekte werden als Sätze fester Länge in eine per mmap eingeblendete Abschnittsdatei
+// geschrieben (nur Speicherzugriffe, kein Syscall pro Satz). Ein Hintergrund-Thread
+// verdichtet die Sätze in einer einzigen SQLite-Transaktion. Beim Start wird alles, was
+// noch nicht in der DB steht, aus den Dateien nachgespielt.
+//
+// Satzaufbau (64 Byte):
+//   0 Typ | 1 Milch | 2 Namenslänge (short) | 4 Preis bzw. Münzwert | 8 Zeit (ms)
+//   16 Zahlung pro Schacht (8 x short) bzw. Delta (int) | 32 Kaffeeart (UTF-8, max. 32 Byte)
+// Der Typ wird zuletzt geschrieben: ein Satz ohne Typ gilt als nicht vorhanden.
+public class Ereignisjournal implements Verkaufsjournal {
+    static final int SATZ_LAENGE = 64;
+    static final int SAETZE_PRO_ABSCHNITT = 4096; // 256 KiB pro Datei
+    private static final int MAX_NAME = 32;
+    private static final long VERDICHTEN_INTERVALL_MS = 1000;
+
+    static final byte MUENZE = 1;
+    static final byte BESTELLUNG = 2;
+    static final byte WARTUNG = 3;
+    static final byte DEFEKT = 4;
+
+    // Ein gemeinsamer Verdichter-Thread für alle Journale im Prozess
+    private static final ScheduledExecutorService VERDICHTER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ereignisjournal-verdichten");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final DatabaseManager dbManager;
+    private final Path verzeichnis;
+    private final String praefix;
+
+    // Eingeblendete Abschnitte, die noch nicht vollständig verdichtet sind (inkl. aktuellem)
+    private final TreeMap<Long, MappedByteBuffer> abschnitte = new TreeMap<>();
+    private long aktuellerAbschnitt;
+    private MappedByteBuffer aktuell;
+    // Globale Position des nächsten Satzes = Abschnitt * SAETZE_PRO_ABSCHNITT + Index
+    private long schreibPosition;
+
+    // Nur vom Verdichter benutzt
+    private final ReentrantLock verdichtenLock = new ReentrantLock();
+    private long verdichtetBis;
+    private final ScheduledFuture<?> periodischesVerdichten;
+
+    public Ereignisjournal(DatabaseManager db, Path verzeichnis, String praefix) {
+        this.dbManager = db;
+        this.verzeichnis = verzeichnis;
+        this.praefix = praefix;
+
+        this.verdichtetBis = db.ladeEreignislogPosition();
+        long naechster = vorhandeneEinblenden();
+        // Rest aus dem letzten Lauf in die DB bringen, danach stimmt der Bestand in der DB
+        verdichten();
+        synchronized (this) {
+            if (abschnitte.isEmpty()) {
+                // Neu beginnen, Positionen bleiben dabei monoton steigend
+                naechster = Math.max(naechster, (verdichtetBis + SAETZE_PRO_ABSCHNITT - 1) / SAETZE_PRO_ABSCHNITT);
+                neuerAbschnitt(naechster);
+            }
+        }
+
+        this.periodischesVerdichten = VERDICHTER.scheduleWithFixedDelay(this::verdichten,
+                VERDICHTEN_INTERVALL_MS, VERDICHTEN_INTERVALL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Liegen Dateien eines früheren Laufs im Verzeichnis? (z.B. nach Wechsel des Persistenzmodus)
+    static boolean vorhanden(Path verzeichnis, String praefix) {
+        try (DirectoryStream<Path> dateien = Files.newDirectoryStream(verzeichnis, praefix + "-*.bin")) {
+            return dateien.iterator().hasNext();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // --- SCHREIBEN ---
+
+    @Override
+    public synchronized void aufzeichnen(int schacht, int delta) {
+        if (delta == 0) return;
+        int basis = satzBeginnen();
+        if (basis < 0) {
+            MuenzVektor einzeln = new MuenzVektor();
+            einzeln.set(schacht, delta);
+            dbManager.neueVerkaufsbuchung().muenzAenderungen(einzeln).abschliessen();
+            return;
+        }
+        aktuell.putInt(basis + 4, MuenzVektor.wert(schacht));
+        aktuell.putInt(basis + 16, delta);
+        satzAbschliessen(basis, MUENZE);
+    }
+
+    @Override
+    public boolean mitBuchungAbschliessen(Verkaufsbuchung buchung) {
+        byte[] name = buchung.hatBestellung() ? buchung.getKaffeeArt().getBytes(StandardCharsets.UTF_8) : null;
+        if (!buchung.getMuenzAenderungen().istLeer() || buchung.getJournalSequenz() >= 0
+                || (name != null && name.length > MAX_NAME)) {
+            // Passt nicht in einen Satz: selten, daher direkt in die DB
+            return buchung.abschliessen();
+        }
+        if (name == null) return true;
+
+        synchronized (this) {
+            int basis = satzBeginnen();
+            if (basis < 0) return buchung.abschliessen();
+            aktuell.put(basis + 1, (byte) (buchung.isMitMilch() ? 1 : 0));
+            aktuell.putShort(basis + 2, (short) name.length);
+            aktuell.putInt(basis + 4, buchung.getPreis());
+            MuenzVektor zahlungen = buchung.getZahlungen();
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                aktuell.putShort(basis + 16 + 2 * i, (short) zahlungen.get(i));
+            }
+            aktuell.put(basis + 32, name);
+            satzAbschliessen(basis, BESTELLUNG);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void wartungAufzeichnen() {
+        int basis = satzBeginnen();
+        if (basis >= 0) {
+            satzAbschliessen(basis, WARTUNG);
+        } else {
+            dbManager.neueVerkaufsbuchung().zaehler(Verkaufsstatistik.WARTUNGEN, 1).abschliessen();
+        }
+    }
+
+    @Override
+    public synchronized void defektAufzeichnen() {
+        int basis = satzBeginnen();
+        if (basis >= 0) {
+            satzAbschliessen(basis, DEFEKT);
+        } else {
+            dbManager.neueVerkaufsbuchung().zaehler(Verkaufsstatistik.DEFEKTE, 1).abschliessen();
+        }
+    }
+
+    // Liefert den Byte-Offset des nächsten freien Satzes im aktuellen Abschnitt (-1 ohne Datei)
+    private int satzBeginnen() {
+        if (aktuell != null && !aktuell.hasRemaining()) {
+            neuerAbschnitt(aktuellerAbschnitt + 1);
+        }
+        if (aktuell == null) return -1;
+        int basis = aktuell.position();
+        aktuell.putLong(basis + 8, System.currentTimeMillis());
+        return basis;
+    }
+
+    private void satzAbschliessen(int basis, byte typ) {
+        aktuell.put(basis, typ);
+        aktuell.position(basis + SATZ_LAENGE);
+        schreibPosition++;
+    }
+
+    // --- VERDICHTEN ---
+
+    // Faltet alle Sätze ab verdichtetBis in eine SQLite-Transaktion
+    public void verdichten() {
+        verdichtenLock.lock();
+        try {
+            long bis;
+            Map<Long, ByteBuffer> lesen = new TreeMap<>();
+            synchronized (this) {
+                bis = schreibPosition;
+                if (bis <= verdichtetBis) return;
+                abschnitte.forEach((seq, puffer) -> lesen.put(seq, puffer.duplicate()));
+            }
+
+            // Sätze unterhalb von bis ändern sich nicht mehr und können ohne Sperre gelesen werden
+            List<Verkaufsbuchung> buchungen = new ArrayList<>();
+            MuenzVektor deltas = new MuenzVektor();
+            int wartungen = 0;
+            int defekte = 0;
+            byte[] name = new byte[MAX_NAME];
+            for (Map.Entry<Long, ByteBuffer> eintrag : lesen.entrySet()) {
+                long erste = eintrag.getKey() * SAETZE_PRO_ABSCHNITT;
+                ByteBuffer puffer = eintrag.getValue();
+                for (long pos = Math.max(erste, verdichtetBis); pos < Math.min(erste + SAETZE_PRO_ABSCHNITT, bis); pos++) {
+                    int basis = (int) (pos - erste) * SATZ_LAENGE;
+                    switch (puffer.get(basis)) {
+                        case MUENZE: {
+                            int schacht = MuenzVektor.schacht(puffer.getInt(basis + 4));
+                            if (schacht >= 0) deltas.add(schacht, puffer.getInt(basis + 16));
+                            break;
+                        }
+                        case BESTELLUNG: {
+                            MuenzVektor zahlung = new MuenzVektor();
+                            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                                zahlung.set(i, puffer.getShort(basis + 16 + 2 * i));
+                            }
+                            int laenge = puffer.getShort(basis + 2);
+                            puffer.get(basis + 32, name, 0, laenge);
+                            buchungen.add(dbManager.neueVerkaufsbuchung()
+                                    .bestellung(new String(name, 0, laenge, StandardCharsets.UTF_8),
+                                            puffer.get(basis + 1) == 1, puffer.getInt(basis + 4))
+                                    .zahlung(zahlung)
+                                    .zeitstempel(puffer.getLong(basis + 8)));
+                            break;
+                        }
+                        case WARTUNG:
+                            wartungen++;
+                            break;
+                        case DEFEKT:
+                            defekte++;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            // Münzbestand, Zähler und neue Position zusammen mit den Bestellungen festschreiben
+            buchungen.add(dbManager.neueVerkaufsbuchung()
+                    .muenzAenderungen(deltas)
+                    .zaehler(Verkaufsstatistik.WARTUNGEN, wartungen)
+                    .zaehler(Verkaufsstatistik.DEFEKTE, defekte)
+                    .ereignisPosition(bis));
+            if (!dbManager.verkaeufeBuchen(buchungen)) {
+                // Beim nächsten Durchlauf erneut versuchen, die Sätze bleiben erhalten
+                return;
+            }
+            verdichtetBis = bis;
+            aufraeumen();
+        } finally {
+            verdichtenLock.unlock();
+        }
+    }
+
+    // Vollständig verdichtete, abgeschlossene Abschnitte löschen
+    private synchronized void aufraeumen() {
+        while (!abschnitte.isEmpty()) {
+            long seq = abschnitte.firstKey();
+            if (seq == aktuellerAbschnitt && aktuell != null) break;
+            if ((seq + 1) * SAETZE_PRO_ABSCHNITT > verdichtetBis) break;
+            abschnitte.remove(seq);
+            loeschen(seq);
+        }
+    }
+
+    // --- DATEIEN ---
+
+    private Path datei(long seq) {
+        return verzeichnis.resolve(praefix + "-" + seq + ".bin");
+    }
+
+    private MappedByteBuffer einblenden(long seq) throws IOException {
+        try (FileChannel kanal = FileChannel.open(datei(seq), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Die Einblendung bleibt nach dem Schließen des Kanals gültig
+            return kanal.map(FileChannel.MapMode.READ_WRITE, 0, (long) SAETZE_PRO_ABSCHNITT * SATZ_LAENGE);
+        }
+    }
+
+    private void neuerAbschnitt(long seq) {
+        try {
+            aktuell = einblenden(seq);
+            aktuellerAbschnitt = seq;
+            abschnitte.put(seq, aktuell);
+            schreibPosition = seq * SAETZE_PRO_ABSCHNITT;
+            aufraeumen();
+        } catch (IOException e) {
+            // Ohne Log wird direkt in die DB gebucht
+            System.err.println("Ereignisjournal Fehler: " + e.getMessage());
+            aktuell = null;
+        }
+    }
+
+    // Blendet vorhandene Abschnitte ein, setzt Schreibposition hinter den letzten Satz.
+    // Liefert die nächste freie Abschnittsnummer.
+    private long vorhandeneEinblenden() {
+        long naechster = 0;
+        try (DirectoryStream<Path> dateien = Files.newDirectoryStream(verzeichnis, praefix + "-*.bin")) {
+            for (Path p : dateien) {
+                String name = p.getFileName().toString();
+                long seq;
+                try {
+                    seq = Long.parseLong(name.substring(praefix.length() + 1, name.length() - 4));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                naechster = Math.max(naechster, seq + 1);
+                if ((seq + 1) * SAETZE_PRO_ABSCHNITT <= verdichtetBis) {
+                    loeschen(seq); // Schon verdichtet, nur die Datei blieb liegen
+                    continue;
+                }
+                abschnitte.put(seq, einblenden(seq));
+            }
+        } catch (IOException e) {
+            System.err.println("Ereignisjournal Wiederherstellung fehlgeschlagen: " + e.getMessage());
+        }
+
+        if (!abschnitte.isEmpty()) {
+            // Weiter im letzten Abschnitt, direkt hinter dem letzten vollständigen Satz
+            aktuellerAbschnitt = abschnitte.lastKey();
+            aktuell = abschnitte.get(aktuellerAbschnitt);
+            int index = 0;
+            while (index < SAETZE_PRO_ABSCHNITT && aktuell.get(index * SATZ_LAENGE) != 0) {
+                index++;
+            }
+            aktuell.position(index * SATZ_LAENGE);
+            schreibPosition = aktuellerAbschnitt * SAETZE_PRO_ABSCHNITT + index;
+        }
+        return naechster;
+    }
+
+    private void loeschen(long seq) {
+        try {
+            Files.deleteIfExists(datei(seq));
+        } catch (IOException e) {
+            System.err.println("Ereignisjournal Fehler: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        periodischesVerdichten.cancel(false);
+        verdichten();
+        synchronized (this) {
+            // Alles verdichtet: auch den angefangenen Abschnitt entfernen,
+            // der nächste Start beginnt mit einer neuen Datei
+            if (verdichtetBis >= schreibPosition) {
+                for (long seq : abschnitte.keySet()) {
+                    loeschen(seq);
+                }
+                abschnitte.clear();
+            }
+            aktuell = null;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package de.gfn.coffee;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// HTTP-Schnittstelle für Automaten ohne Bildschirm (JDK HttpServer, JSON, Server-Sent Events).
+// Lesende Anfragen nutzen den zuletzt veröffentlichten Zustand der Engine und blockieren den
+// Engine-Thread nicht; nur Serviceaktionen laufen als normaler Befehl durch die Engine.
+// Standardmäßig nur an localhost gebunden.
+//
+//   GET  /automaten                        Übersicht aller Automaten
+//   GET  /automaten/{id}                   Status (Zutaten, Tassen, Defekt, Einwurf, Warteschlange)
+//   GET  /automaten/{id}/muenzen           Münzbestand pro Münzwert
+//   GET  /automaten/{id}/verkaeufe         Verkaufszähler
+//   GET  /automaten/{id}/wechselgeld       Empfohlener Wechselgeldvorrat (?stunden=168&ziel=5, Ziel 1-99 %)
+//   POST /automaten/{id}/auffuellen        Service: Zutaten auffüllen, Defekt zurücksetzen
+//   GET  /automaten/{id}/ereignisse        Live-Ereignisse als text/event-stream
+//   GET  /metriken                         Metriken als Text
+//   GET  /nachfuellplan?stunden=24         Nachfüllplan (nur im Flottenbetrieb)
+public class Fernzugriff implements AutoCloseable {
+    // Java 17: keine virtuellen Threads, daher ein fester Pool. Ereignisströme belegen je einen
+    // Thread und sind begrenzt, damit normale Anfragen immer einen freien Thread finden.
+    private static final int THREADS = 32;
+    private static final int MAX_STROEME = 16;
+    private static final int STROM_PUFFER = 256;
+    private static final long HERZSCHLAG_MS = 15_000;
+    private static final long BEFEHL_TIMEOUT_MS = 5_000;
+    // Obergrenze für ?stunden= (vier Wochen)
+    private static final int MAX_STUNDEN = 28 * 24;
+    // So lange gilt eine Wechselgeldempfehlung für dieselben Parameter
+    private static final long WECHSELGELD_GUELTIG_MS = 5 * 60_000;
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor threads;
+    private final Map<String, VendingEngine> automaten = new LinkedHashMap<>();
+    private final Flotte flotte;
+    private final Semaphore stroeme = new Semaphore(MAX_STROEME);
+    // Eine Wechselgeldplanung belegt alle Kerne, deshalb höchstens eine zur Zeit
+    private final Semaphore planung = new Semaphore(1);
+    // Letzte Empfehlung pro Automat
+    private final Map<String, Empfehlungsantwort> empfehlungen = new ConcurrentHashMap<>();
+    private volatile boolean geschlossen = false;
+
+    public Fernzugriff(InetSocketAddress adresse, List<VendingEngine> automaten, Flotte flotte) throws IOException {
+        for (VendingEngine automat : automaten) {
+            this.automaten.put(automat.getMaschinenId(), automat);
+        }
+        this.flotte = flotte;
+        AtomicInteger nr = new AtomicInteger();
+        this.threads = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "fernzugriff-" + nr.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        threads.allowCoreThreadTimeOut(true);
+        this.server = HttpServer.create(adresse, 0);
+        server.setExecutor(threads);
+        server.createContext("/", this::bearbeiten);
+        server.start();
+    }
+
+    public static Fernzugriff starten(int port, VendingEngine automat) throws IOException {
+        return new Fernzugriff(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), List.of(automat), null);
+    }
+
+    public static Fernzugriff starten(int port, Flotte flotte) throws IOException {
+        return new Fernzugriff(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), flotte.getAutomaten(), flotte);
+    }
+
+    // Startet die Schnittstelle, falls -Dsmartcoffee.fernzugriff=<port> gesetzt ist (sonst null).
+    // Andere Adresse als localhost nur ausdrücklich über -Dsmartcoffee.fernzugriff.adresse
+    public static Fernzugriff ausSystemProperty(VendingEngine automat) {
+        String port = System.getProperty("smartcoffee.fernzugriff");
+        if (port == null || port.isBlank()) return null;
+        String adresse = System.getProperty("smartcoffee.fernzugriff.adresse");
+        try {
+            InetSocketAddress bindung = adresse == null || adresse.isBlank()
+                    ? new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim()))
+                    : new InetSocketAddress(adresse.trim(), Integer.parseInt(port.trim()));
+            return new Fernzugriff(bindung, List.of(automat), null);
+        } catch (IOException | IllegalArgumentException e) {
+            // IllegalArgumentException: Port keine Zahl oder außerhalb 0-65535
+            System.err.println("Fernzugriff konnte nicht gestartet werden: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // --- ANFRAGEN ---
+
+    private void bearbeiten(HttpExchange ex) throws IOException {
+        try {
+            String[] pfad = ex.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+            String methode = ex.getRequestMethod();
+
+            if (pfad.length == 1 && pfad[0].equals("metriken") && methode.equals("GET")) {
+                senden(ex, 200, "text/plain; version=0.0.4; charset=utf-8", Metriken.alsText());
+            } else if (pfad.length == 1 && pfad[0].equals("nachfuellplan") && methode.equals("GET") && flotte != null) {
+                int stunden = zahlParameter(ex, "stunden", 24, 1, MAX_STUNDEN);
+                json(ex, 200, nachfuellplanJson(flotte.nachfuellplan(Duration.ofHours(stunden), Duration.ofHours(4))));
+            } else if (pfad.length == 1 && pfad[0].equals("automaten") && methode.equals("GET")) {
+                StringBuilder sb = new StringBuilder("[");
+                for (VendingEngine automat : automaten.values()) {
+                    if (sb.length() > 1) sb.append(',');
+                    statusJson(sb, automat.getMaschinenId(), automat.getZustand());
+                }
+                json(ex, 200, sb.append(']').toString());
+            } else if (pfad.length >= 2 && pfad[0].equals("automaten")) {
+                VendingEngine automat = automaten.get(pfad[1]);
+                if (automat == null) {
+                    fehler(ex, 404, "Unbekannter Automat: " + pfad[1]);
+                } else {
+                    automatBearbeiten(ex, automat, pfad.length == 2 ? "" : pfad[2], methode);
+                }
+            } else {
+                fehler(ex, 404, "Unbekannter Pfad: " + ex.getRequestURI().getPath());
+            }
+        } catch (UngueltigerParameter e) {
+            fehler(ex, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            fehler(ex, 500, String.valueOf(e.getMessage()));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void automatBearbeiten(HttpExchange ex, VendingEngine automat, String aktion, String methode) throws IOException {
+        switch (methode + " " + aktion) {
+            case "GET ":
+                json(ex, 200, statusJson(new StringBuilder(), automat.getMaschinenId(), automat.getZustand()).toString());
+                break;
+            case "GET muenzen":
+                json(ex, 200, muenzenJson(new StringBuilder(), automat.getZustand().getZustand().getMuenzBestand()).toString());
+                break;
+            case "GET verkaeufe":
+                json(ex, 200, verkaeufeJson(automat.getVerkaufsstatistik()));
+                break;
+            case "GET wechselgeld": {
+                // Rechnet einige Sekunden (Monte Carlo im Fork-Join-Pool), blockiert nur diese Anfrage
+                int stunden = zahlParameter(ex, "stunden", (int) Wechselgeldplaner.STANDARD_SERVICE.toHours(), 1, MAX_STUNDEN);
+                int zielProzent = zahlParameter(ex, "ziel", (int) Math.round(100 * Wechselgeldplaner.STANDARD_ZIEL), 1, 99);
+                wechselgeld(ex, automat, stunden, zielProzent);
+                break;
+            }
+            case "POST auffuellen":
+                try {
+                    VendingEreignis e = automat.auffuellen().get(BEFEHL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    json(ex, 200, ereignisJson(new StringBuilder(), automat.getMaschinenId(), e).toString());
+                } catch (ExecutionException | TimeoutException e) {
+                    fehler(ex, 503, "Automat antwortet nicht: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fehler(ex, 503, "Unterbrochen");
+                }
+                break;
+            case "GET ereignisse":
+                ereignisstrom(ex, automat);
+                break;
+            default:
+                fehler(ex, 404, "Unbekannte Aktion: " + methode + " " + aktion);
+        }
+    }
+
+    // Server-Sent Events: der Engine-Listener legt nur in einen begrenzten Puffer, geschrieben
+    // wird auf dem Thread dieser Anfrage. Ein zu langsamer Client wird getrennt statt die Engine
+    // aufzuhalten; ohne Ereignisse hält ein Kommentar alle 15 s die Verbindung offen.
+    private void ereignisstrom(HttpExchange ex, VendingEngine automat) throws IOException {
+        if (!stroeme.tryAcquire()) {
+            fehler(ex, 503, "Zu viele Ereignisströme");
+            return;
+        }
+        BlockingQueue<VendingEreignis> puffer = new ArrayBlockingQueue<>(STROM_PUFFER);
+        AtomicInteger verworfen = new AtomicInteger();
+        VendingEngine.Listener listener = e -> {
+            if (!puffer.offer(e)) verworfen.incrementAndGet();
+        };
+        automat.addListener(listener);
+        try {
+            ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            ex.getResponseHeaders().set("Cache-Control", "no-cache");
+            ex.sendResponseHeaders(200, 0);
+            OutputStream out = ex.getResponseBody();
+            schreiben(out, "event: zustand\ndata: " + ereignisJson(new StringBuilder(), automat.getMaschinenId(), automat.getZustand()) + "\n\n");
+            while (!geschlossen && verworfen.get() == 0) {
+                VendingEreignis e = puffer.poll(HERZSCHLAG_MS, TimeUnit.MILLISECONDS);
+                if (e == null) {
+                    schreiben(out, ": ping\n\n");
+                    continue;
+                }
+                StringBuilder sb = new StringBuilder();
+                do {
+                    sb.append("event: ").append(e.getTyp().name().toLowerCase()).append("\ndata: ");
+                    ereignisJson(sb, automat.getMaschinenId(), e).append("\n\n");
+                } while ((e = puffer.poll()) != null);
+                schreiben(out, sb.toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Client hat die Verbindung geschlossen
+        } finally {
+            automat.removeListener(listener);
+            stroeme.release();
+        }
+    }
+
+    private void wechselgeld(HttpExchange ex, VendingEngine automat, int stunden, int zielProzent) throws IOException {
+        Empfehlungsantwort letzte = empfehlungen.get(automat.getMaschinenId());
+        if (letzte != null && letzte.passt(stunden, zielProzent)) {
+            json(ex, 200, letzte.json);
+            return;
+        }
+        if (!planung.tryAcquire()) {
+            ex.getResponseHeaders().set("Retry-After", "10");
+            fehler(ex, 503, "Es läuft bereits eine Wechselgeldplanung");
+            return;
+        }
+        try {
+            Wechselgeldplaner.Empfehlung empfehlung = automat.getWechselgeldempfehlung(Duration.ofHours(stunden), zielProzent / 100.0);
+            if (empfehlung == null) {
+                fehler(ex, 409, "Zu wenige Verkäufe mit Zahlungen für eine Empfehlung");
+                return;
+            }
+            String json = wechselgeldJson(empfehlung);
+            empfehlungen.put(automat.getMaschinenId(), new Empfehlungsantwort(stunden, zielProzent, json));
+            json(ex, 200, json);
+        } finally {
+            planung.release();
+        }
+    }
+
+    // --- JSON ---
+
+    private StringBuilder statusJson(StringBuilder sb, String id, VendingEreignis e) {
+        Automatenzustand z = e.getZustand();
+        sb.append("{\"id\":");
+        text(sb, id);
+        sb.append(",\"bohnen\":").append(z.getKaffeeBestand())
+                .append(",\"milch\":").append(z.getMilchBestand())
+                .append(",\"tassen\":").append(z.getTassenGesamt())
+                .append(",\"defekt\":").append(z.isDefekt())
+                .append(",\"einwurf\":").append(e.getEinwurf())
+                .append(",\"auftraegeOffen\":").append(e.getAuftraegeOffen())
+                .append(",\"muenzen\":");
+        return muenzenJson(sb, z.getMuenzBestand()).append('}');
+    }
+
+    // Schlüssel ist der Münzwert in Cent
+    private static StringBuilder muenzenJson(StringBuilder sb, MuenzVektor bestand) {
+        sb.append('{');
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(MuenzVektor.wert(i)).append("\":").append(bestand.get(i));
+        }
+        return sb.append('}');
+    }
+
+    private static String verkaeufeJson(Verkaufsstatistik s) {
+        StringBuilder sb = new StringBuilder("{\"tassen\":").append(s.getTassen())
+                .append(",\"umsatzInCent\":").append(s.getUmsatzInCent())
+                .append(",\"mitMilch\":").append(s.getMitMilch())
+                .append(",\"ohneMilch\":").append(s.getOhneMilch())
+                .append(",\"wartungen\":").append(s.getWartungen())
+                .append(",\"defekte\":").append(s.getDefekte())
+                .append(",\"proArt\":{");
+        boolean erstes = true;
+        for (Map.Entry<String, Long> e : s.getTassenProArt().entrySet()) {
+            if (!erstes) sb.append(',');
+            erstes = false;
+            text(sb, e.getKey());
+            sb.append(':').append(e.getValue());
+        }
+        return sb.append("}}").toString();
+    }
+
+    private StringBuilder ereignisJson(StringBuilder sb, String id, VendingEreignis e) {
+        sb.append("{\"typ\":\"").append(e.getTyp()).append("\",\"nachricht\":");
+        text(sb, e.getNachricht());
+        if (e.getErgebnis() != null) sb.append(",\"ergebnis\":\"").append(e.getErgebnis()).append('"');
+        Auftrag a = e.getAuftrag();
+        if (a != null) {
+            sb.append(",\"auftrag\":{\"nummer\":").append(a.getNummer()).append(",\"getraenk\":");
+            text(sb, a.getTyp());
+            if (e.getStufe() != null) sb.append(",\"stufe\":\"").append(e.getStufe()).append('"');
+            sb.append('}');
+        }
+        sb.append(",\"status\":");
+        return statusJson(sb, id, e).append('}');
+    }
+
+    private static String nachfuellplanJson(Nachfuellplan plan) {
+        StringBuilder sb = new StringBuilder("{\"erstellt\":\"").append(plan.getErstellt())
+                .append("\",\"touren\":").append(plan.getAnzahlTouren()).append(",\"termine\":[");
+        boolean erstes = true;
+        for (Nachfuellplan.Termin t : plan.getTermine()) {
+            if (!erstes) sb.append(',');
+            erstes = false;
+            sb.append("{\"id\":");
+            text(sb, t.getMaschinenId());
+            sb.append(",\"termin\":\"").append(t.getTermin())
+                    .append("\",\"leerAb\":\"").append(t.getLeerAb())
+                    .append("\",\"grund\":\"").append(t.getGrund())
+                    .append("\",\"dringend\":").append(t.isDringend()).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String wechselgeldJson(Wechselgeldplaner.Empfehlung e) {
+        StringBuilder sb = new StringBuilder("{\"vorrat\":");
+        muenzenJson(sb, e.getVorrat())
+                .append(",\"geldwertInCent\":").append(e.getGeldwertInCent())
+                .append(",\"ausfallquote\":").append(e.getAusfallquote())
+                .append(",\"ausfallquoteBestand\":").append(e.getAusfallquoteBestand())
+                .append(",\"ziel\":").append(e.getZiel())
+                .append(",\"erreicht\":").append(e.isErreicht())
+                .append(",\"stunden\":").append(e.getZeitraum().toHours())
+                .append(",\"erwarteteVerkaeufe\":").append(Math.round(e.getErwarteteVerkaeufe()))
+                .append(",\"stichprobe\":").append(e.getStichprobe());
+        return sb.append('}').toString();
+    }
+
+    private static void text(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    // --- ANTWORTEN ---
+
+    // Ganzzahl aus der Query im Bereich [min, max], sonst Antwort 400
+    private static int zahlParameter(HttpExchange ex, String name, int standard, int min, int max) {
+        String query = ex.getRequestURI().getQuery();
+        if (query == null) return standard;
+        for (String teil : query.split("&")) {
+            String[] kv = teil.split("=", 2);
+            if (kv.length == 2 && kv[0].equals(name)) {
+                int wert;
+                try {
+                    wert = Integer.parseInt(kv[1]);
+                } catch (NumberFormatException e) {
+                    throw new UngueltigerParameter(name + " ist keine Zahl: " + kv[1]);
+                }
+                if (wert < min || wert > max) {
+                    throw new UngueltigerParameter(name + " muss zwischen " + min + " und " + max + " liegen");
+                }
+                return wert;
+            }
+        }
+        return standard;
+    }
+
+    private static void json(HttpExchange ex, int code, String inhalt) throws IOException {
+        senden(ex, code, "application/json; charset=utf-8", inhalt);
+    }
+
+    private static void fehler(HttpExchange ex, int code, String meldung) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"fehler\":");
+        text(sb, meldung);
+        json(ex, code, sb.append('}').toString());
+    }
+
+    private static void senden(HttpExchange ex, int code, String typ, String inhalt) throws IOException {
+        byte[] daten = inhalt.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", typ);
+        ex.sendResponseHeaders(code, daten.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(daten);
+        }
+    }
+
+    private static void schreiben(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    // Offene Ereignisströme enden spätestens mit dem nächsten Herzschlag
+    @Override
+    public void close() {
+        geschlossen = true;
+        server.stop(1);
+        threads.shutdownNow();
+    }
+
+    private static final class UngueltigerParameter extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UngueltigerParameter(String meldung) {
+            super(meldung);
+        }
+    }
+
+    private static final class Empfehlungsantwort {
+        final int stunden;
+        final int zielProzent;
+        final String json;
+        final long zeit = System.currentTimeMillis();
+
+        Empfehlungsantwort(int stunden, int zielProzent, String json) {
+            this.stunden = stunden;
+            this.zielProzent = zielProzent;
+            this.json = json;
+        }
+
+        boolean passt(int stunden, int zielProzent) {
+            return this.stunden == stunden && this.zielProzent == zielProzent
+                    && System.currentTimeMillis() - zeit < WECHSELGELD_GUELTIG_MS;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package de.gfn.coffee;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Flottenbetrieb: viele unabhängige Automaten in einem Prozess.
+// Jeder Automat hat ein eigenes Verzeichnis (eigene SQLite-Datei + Münzjournal), damit
+// sich die Automaten keine DB-Sperre teilen. Alle Engines laufen auf einem gemeinsamen
+// Thread-Pool, bleiben dank SeriellerExecutor aber jeweils single-threaded.
+public class Flotte implements AutoCloseable {
+    // Eine Verbindung pro Automat reicht und spart Datei-Handles bei großen Flotten
+    private static final int POOL_GROESSE_PRO_AUTOMAT = 1;
+
+    private final ExecutorService threadPool;
+    private final List<VendingEngine> automaten = new ArrayList<>();
+    // Nur lesend für flottenweite Auswertungen; geschlossen werden sie von den Engines
+    private final List<DatabaseManager> datenbanken = new ArrayList<>();
+
+    public Flotte(Path basisVerzeichnis, int anzahlAutomaten, int threads) {
+        AtomicInteger nr = new AtomicInteger();
+        this.threadPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "flotte-" + nr.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (int i = 0; i < anzahlAutomaten; i++) {
+                String id = String.format("automat-%04d", i);
+                Path verzeichnis = Files.createDirectories(basisVerzeichnis.resolve(id));
+                DatabaseManager db = new DatabaseManager(verzeichnis, POOL_GROESSE_PRO_AUTOMAT);
+                automaten.add(new VendingEngine(id, db, threadPool));
+                datenbanken.add(db);
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Flottenverzeichnis konnte nicht angelegt werden", e);
+        }
+    }
+
+    public VendingEngine getAutomat(int index) {
+        return automaten.get(index);
+    }
+
+    public List<VendingEngine> getAutomaten() {
+        return Collections.unmodifiableList(automaten);
+    }
+
+    public int groesse() {
+        return automaten.size();
+    }
+
+    // Summiert die Rollups aller Automaten für [von, bis) (eine Bereichsabfrage pro Automat)
+    public Verkaufsstatistik ladeVerkaufsstatistik(Instant von, Instant bis) {
+        Verkaufsstatistik.Builder gesamt = new Verkaufsstatistik.Builder();
+        for (DatabaseManager db : datenbanken) {
+            gesamt.hinzufuegen(db.ladeVerkaufsstatistik(von, bis));
+        }
+        return gesamt.build();
+    }
+
+    // Exportiert die Bestellungen jedes Automaten (DB und Archiv) in eine eigene Datei <id><endung>.
+    // Nacheinander, damit die Platte sequentiell schreibt; ein abgebrochener Lauf wird fortgesetzt.
+    // Liefert pro Automat die letzte exportierte Bestellungs-ID.
+    public Map<String, Long> exportieren(Path zielVerzeichnis, Verkaufsexport.Format format, Instant von, Instant bis) throws IOException {
+        Files.createDirectories(zielVerzeichnis);
+        Map<String, Long> letzteIds = new LinkedHashMap<>();
+        for (int i = 0; i < automaten.size(); i++) {
+            VendingEngine automat = automaten.get(i);
+            Verkaufsexport export = new Verkaufsexport(datenbanken.get(i), automat.getArchivierung());
+            letzteIds.put(automat.getMaschinenId(),
+                    export.fortsetzen(zielVerzeichnis.resolve(automat.getMaschinenId() + format.getEndung()), format, von, bis));
+        }
+        return letzteIds;
+    }
+
+    // Reichweiten aller Automaten und daraus die Service-Touren für die nächsten Stunden
+    public Nachfuellplan nachfuellplan(Duration horizont, Duration tourAbstand) {
+        Instant jetzt = Instant.now();
+        List<Fuellstandsprognose> prognosen = new ArrayList<>(automaten.size());
+        for (VendingEngine automat : automaten) {
+            prognosen.add(automat.getFuellstandsprognose(jetzt));
+        }
+        return Nachfuellplan.erstellen(prognosen, jetzt, horizont, tourAbstand);
+    }
+
+    @Override
+    public void close() {
+        for (VendingEngine automat : automaten) {
+            automat.close();
+        }
+        threadPool.shutdown();
+        try {
+            threadPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.gfn.coffee;
+
+import java.time.Instant;
+
+// Füllstand und Reichweite eines Automaten zu einem Zeitpunkt (unveränderlich)
+public final class Fuellstandsprognose {
+    // Kein Verbrauch im Fenster: Zutat wird nach heutiger Kenntnis nie knapp
+    static final long NIE = Long.MAX_VALUE;
+
+    private final String maschinenId;
+    private final long zeitpunktMs;
+    private final int[] frei;
+    private final double[] rateProStunde;
+    private final long[] leerAbMs;
+
+    Fuellstandsprognose(String maschinenId, long zeitpunktMs, int[] frei, double[] rateProStunde, long[] leerAbMs) {
+        this.maschinenId = maschinenId;
+        this.zeitpunktMs = zeitpunktMs;
+        this.frei = frei;
+        this.rateProStunde = rateProStunde;
+        this.leerAbMs = leerAbMs;
+    }
+
+    public String getMaschinenId() {
+        return maschinenId;
+    }
+
+    public Instant getZeitpunkt() {
+        return Instant.ofEpochMilli(zeitpunktMs);
+    }
+
+    // Bestand abzüglich Reservierungen
+    public int getFrei(Zutat zutat) {
+        return frei[zutat.ordinal()];
+    }
+
+    public double getRateProStunde(Zutat zutat) {
+        return rateProStunde[zutat.ordinal()];
+    }
+
+    // null, solange die Zutat nicht verbraucht wird
+    public Instant getLeerAb(Zutat zutat) {
+        long ms = leerAbMs[zutat.ordinal()];
+        return ms == NIE ? null : Instant.ofEpochMilli(ms);
+    }
+
+    // Zutat, die zuerst ausgeht (null: keine Zutat wird verbraucht)
+    public Zutat getKnappsteZutat() {
+        Zutat knappste = null;
+        for (Zutat z : Zutat.values()) {
+            if (leerAbMs[z.ordinal()] != NIE && (knappste == null || leerAbMs[z.ordinal()] < leerAbMs[knappste.ordinal()])) {
+                knappste = z;
+            }
+        }
+        return knappste;
+    }
+
+    public Instant getLeerAb() {
+        Zutat knappste = getKnappsteZutat();
+        return knappste == null ? null : getLeerAb(knappste);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(maschinenId).append(':');
+        for (Zutat z : Zutat.values()) {
+            Instant leer = getLeerAb(z);
+            sb.append(String.format(" %s %dg (%.0f g/h, leer ab %s)", z.getName(), getFrei(z),
+                    getRateProStunde(z), leer == null ? "-" : leer));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package de.gfn.coffee;
+
+// Die Getränkekarte (vorher fest in SmartCoffeeGUI.createProductPanel)
+// Jedes Getränk bringt sein Rezept mit (Gramm Bohnen, Gramm Milchpulver)
+public enum Getraenk {
+    ESPRESSO("Espresso", false, 80, "Der Wachmacher", new Rezept(20, 0)),
+    KAFFEE_CREMA("Kaffee Crema", false, 100, "Klassischer Genuss", new Rezept(25, 0)),
+    CAPPUCCINO("Cappuccino", true, 120, "Italienische Art", new Rezept(20, 10)),
+    MILCHKAFFEE("Milchkaffee", true, 120, "50% Kaffee, 50% Milch", new Rezept(15, 15)),
+    LATTE_MACCHIATO("Latte Macchiato", true, 140, "Viel Milchschaum", new Rezept(15, 20)),
+    DOPPELTER_ESPRESSO("Doppelter Espresso", false, 150, "Doppelte Stärke", new Rezept(40, 0));
+
+    private final String name;
+    private final boolean mitMilch;
+    private final int preis;
+    private final String beschreibung;
+    private final Rezept rezept;
+
+    Getraenk(String name, boolean mitMilch, int preis, String beschreibung, Rezept rezept) {
+        this.name = name;
+        this.mitMilch = mitMilch;
+        this.preis = preis;
+        this.beschreibung = beschreibung;
+        this.rezept = rezept;
+    }
+
+    // Bestellungen und Rollups führen das Getränk unter seinem Anzeigenamen
+    public static Getraenk ausName(String name) {
+        for (Getraenk g : values()) {
+            if (g.name.equals(name)) return g;
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isMitMilch() {
+        return mitMilch;
+    }
+
+    public int getPreis() {
+        return preis;
+    }
+
+    public String getBeschreibung() {
+        return beschreibung;
+    }
+
+    public Rezept getRezept() {
+        return rezept;
+    }
+}
@@ -0,0 +1,28 @@
+package de.gfn.coffee;
+
+// Der bisherige Algorithmus: große Münzen zuerst.
+// Schnell, findet bei begrenztem Bestand aber nicht immer eine vorhandene Lösung.
+public class GreedyWechselgeld implements WechselgeldStrategie {
+
+    @Override
+    public boolean berechnen(int betrag, MuenzVektor bestand, long bestandsVersion, MuenzVektor ergebnis) {
+        int rest = betrag;
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            int wert = MuenzVektor.wert(i);
+            int anzahl = Math.min(rest / wert, bestand.get(i));
+            ergebnis.set(i, anzahl);
+            rest -= anzahl * wert;
+        }
+        return rest == 0;
+    }
+
+    @Override
+    public boolean istMoeglich(int betrag, MuenzVektor bestand, long bestandsVersion) {
+        int rest = betrag;
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            int wert = MuenzVektor.wert(i);
+            rest -= Math.min(rest / wert, bestand.get(i)) * wert;
+        }
+        return rest == 0;
+    }
+}
@@ -1,64 +1,229 @@
 package de.gfn.coffee;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
 public class Kaffeeautomat {
+    // Snapshot alle n Tassen; Defekt und Wartung werden sofort gesichert
+    private static final int SNAPSHOT_INTERVALL = 50;
+
+    // Ergebnis jedes Verkaufs (prozessweit, über alle Automaten)
+    private static final LongAdder ERFOLG = Metriken.zaehler("verkauf_erfolg");
+    private static final LongAdder WECHSELGELD_ABGELEHNT = Metriken.zaehler("verkauf_wechselgeld_abgelehnt");
+    private static final LongAdder ZU_WENIG_GELD = Metriken.zaehler("verkauf_zu_wenig_geld");
+    private static final LongAdder ZUTATEN_FEHLEN = Metriken.zaehler("verkauf_zutaten_fehlen");
+    private static final LongAdder AUSSER_BETRIEB = Metriken.zaehler("verkauf_ausser_betrieb");
+    private static final LongAdder DEFEKT = Metriken.zaehler("verkauf_defekt");
+    // Verkauf ausgegeben, aber die Transaktion schlug fehl (wird nachgeholt, zählt erst dann als Erfolg)
+    private static final LongAdder NICHT_GEBUCHT = Metriken.zaehler("verkauf_nicht_gebucht");
+    // Annahme bis Ausgabe (inkl. Warteschlange) und die Buchung am Ende
+    private static final Latenzhistogramm ZUBEREITUNG_DAUER = Metriken.histogramm("zubereitung_gesamt");
+    private static final Latenzhistogramm FERTIGSTELLEN_DAUER = Metriken.histogramm("verkauf_fertigstellen");
+
     private boolean defekt = false;
-    private int kaffeeBestand = 2000;
-    private int milchBestand = 200;
+    // Bohnen und Milch inkl. Reservierungen offener Aufträge, Verbrauch laut Rezept
+    private final Zutatenlager lager;
     private int tassenGesamt; // Wird jetzt aus DB geladen
+    private int naechsteAuftragsnummer = 1;
 
     private final DatabaseManager dbManager;
     private final Muenzwechsler muenzWechsler;
+    // Wiederverwendeter Puffer für die Münzen der aktuellen Zahlung
+    private final MuenzVektor bezahlteMuenzen = new MuenzVektor();
+    // Ausgegebene Verkäufe, deren Buchung fehlschlug (DB belegt); vor der nächsten Buchung erneut versucht
+    private final ArrayDeque<OffenerVerkauf> nichtGebucht = new ArrayDeque<>();
 
     public Kaffeeautomat(DatabaseManager db, Muenzwechsler mw) {
         this.dbManager = db;
         this.muenzWechsler = mw;
 
+        // Zutaten und Defekt aus dem letzten Snapshot, sonst Standardwerte
+        Automatenzustand zustand = dbManager.getGespeicherterZustand();
+        if (zustand != null) {
+            this.lager = new Zutatenlager(zustand.getKaffeeBestand(), zustand.getMilchBestand());
+            this.defekt = zustand.isDefekt();
+        } else {
+            this.lager = new Zutatenlager(Zutat.BOHNEN.getKapazitaet(), Zutat.MILCH.getKapazitaet());
+        }
+        // Verbrauchsrate der letzten Stunden aus den Minuten-Rollups
+        Instant jetzt = Instant.now();
+        lager.verlaufNachtragen(dbManager.ladeVerkaufsverlauf(Verkaufsintervall.Aufloesung.MINUTE,
+                jetzt.minus(Duration.ofMinutes(Verbrauchsprognose.FENSTER_MINUTEN)), jetzt));
+
         // LADE HISTORIE: Anforderung [71] - Gesamte Betriebszeit
-        this.tassenGesamt = dbManager.getGesamtTassenAnzahl();
+        this.tassenGesamt = zustand != null && dbManager.istZustandAktuell()
+                ? zustand.getTassenGesamt()
+                : dbManager.getGesamtTassenAnzahl();
     }
 
+    // Kompletter Verkauf in einem Schritt: annehmen und sofort fertigstellen.
+    // Ergebnis, Wechselgeld und Tassennummer stehen im zurückgegebenen Auftrag.
+    public Auftrag verkaufen(String typ, boolean mitMilch, int preis) {
+        Auftrag auftrag = auftragAnnehmen(typ, mitMilch, preis);
+        if (auftrag.isAngenommen()) auftragFertigstellen(auftrag);
+        return auftrag;
+    }
+
+    // Wie verkaufen, aber als Anzeigetext
     public String getraenkZubereiten(String typ, boolean mitMilch, int preis) {
-        if (defekt) return "FEHLER: Automat ist defekt (Mahlwerk). Bitte Service rufen.";
+        return Meldungen.auftrag(verkaufen(typ, mitMilch, preis));
+    }
+
+    // Prüft Zutaten (abzüglich der Reservierungen offener Aufträge), kassiert und reserviert
+    public Auftrag auftragAnnehmen(String typ, boolean mitMilch, int preis) {
+        if (defekt) {
+            AUSSER_BETRIEB.increment();
+            return Auftrag.abgelehnt(typ, mitMilch, preis, Verkaufsergebnis.AUSSER_BETRIEB);
+        }
 
-        if (kaffeeBestand < 25) return "FEHLER: Nicht genügend Kaffeebohnen.";
-        if (mitMilch && milchBestand < 10) return "FEHLER: Nicht genügend Milchpulver.";
+        Rezept rezept = Rezept.fuer(typ, mitMilch);
+        Zutat fehlt = lager.fehlt(rezept);
+        if (fehlt != null) {
+            ZUTATEN_FEHLEN.increment();
+            return Auftrag.zutatFehlt(typ, mitMilch, preis, fehlt);
+        }
+
+        // Eingeworfene Münzen sichern, der Wechsler setzt den Einwurf beim Bezahlen zurück
+        bezahlteMuenzen.kopiereVon(muenzWechsler.getEingeworfeneMuenzen());
+        Verkaufsergebnis zahlung = muenzWechsler.zahlen(preis);
+        if (zahlung != Verkaufsergebnis.ERFOLG) {
+            if (zahlung == Verkaufsergebnis.ZU_WENIG_GELD) {
+                ZU_WENIG_GELD.increment();
+            } else {
+                WECHSELGELD_ABGELEHNT.increment();
+            }
+            return Auftrag.abgelehnt(typ, mitMilch, preis, zahlung);
+        }
+
+        lager.reservieren(rezept);
+        return new Auftrag(naechsteAuftragsnummer++, typ, mitMilch, preis, bezahlteMuenzen, muenzWechsler.getWechselgeld());
+    }
 
-        String bezahlStatus = muenzWechsler.wechselgeldBerechnen(preis);
-        if (bezahlStatus.startsWith("Wechseln ist nicht möglich") || bezahlStatus.startsWith("Zu wenig")) {
-            return bezahlStatus;
+    // Verbraucht die Reservierung und bucht den Verkauf (nach der Zubereitung).
+    // Liefert ERFOLG oder DEFEKT und trägt beides samt Tassennummer in den Auftrag ein.
+    public Verkaufsergebnis auftragFertigstellen(Auftrag auftrag) {
+        long t0 = System.nanoTime();
+        try {
+            return fertigstellen(auftrag);
+        } finally {
+            FERTIGSTELLEN_DAUER.erfassenSeit(t0);
+            ZUBEREITUNG_DAUER.erfassenSeit(auftrag.getAngenommenNanos());
         }
+    }
 
-        kaffeeBestand -= 25;
-        if (mitMilch) milchBestand -= 10;
+    private Verkaufsergebnis fertigstellen(Auftrag auftrag) {
+        lager.verbrauchen(Rezept.fuer(auftrag.getTyp(), auftrag.isMitMilch()), System.currentTimeMillis());
         tassenGesamt++;
 
         // Simulierter Defekt (2%) [90]
-        if (Math.random() < 0.02) {
+        // ThreadLocalRandom: kein gemeinsamer Zufallsgenerator zwischen vielen Automaten
+        // Aufträge, die schon in der Zubereitung sind, laufen noch zu Ende; neue werden abgelehnt
+        if (ThreadLocalRandom.current().nextDouble() < 0.02) {
             defekt = true;
-            return "CRITICAL: Mahlwerk ist gerade kaputt gegangen! Kaffee wurde nicht fertig.";
+            DEFEKT.increment();
+            muenzWechsler.defektProtokollieren();
+            zustandSichern();
+            auftrag.abschliessen(Verkaufsergebnis.DEFEKT, tassenGesamt);
+            return Verkaufsergebnis.DEFEKT;
         }
 
-        int orderId = dbManager.bestellungSpeichern(typ, mitMilch, preis);
-        dbManager.zahlungSpeichern(orderId, muenzWechsler.getEingeworfeneMuenzenMap());
+        // Der Kaffee ist ausgegeben: schlägt die Buchung fehl, bleibt der Verkauf offen und wird
+        // mit seinem Zeitpunkt nachgebucht, statt verloren zu gehen
+        nachholen();
+        OffenerVerkauf verkauf = new OffenerVerkauf(auftrag, System.currentTimeMillis());
+        if (nichtGebucht.isEmpty() && buchen(verkauf)) {
+            ERFOLG.increment();
+        } else {
+            NICHT_GEBUCHT.increment();
+            nichtGebucht.add(verkauf);
+        }
 
-        String msg = "Ihr " + typ + " wird zubereitet. \n" + bezahlStatus;
+        if (tassenGesamt % SNAPSHOT_INTERVALL == 0) {
+            zustandSichern();
+        }
+        auftrag.abschliessen(Verkaufsergebnis.ERFOLG, tassenGesamt);
+        return Verkaufsergebnis.ERFOLG;
+    }
 
-        // Meldung jede 20. Tasse [88]
-        if (tassenGesamt % 20 == 0) {
-            msg += "\n(INFO: Dies ist die " + tassenGesamt + ". ausgegebene Tasse!)";
+    // Bestellung, Zahlungen und Münzbestand in einer Transaktion
+    private boolean buchen(OffenerVerkauf verkauf) {
+        Auftrag a = verkauf.auftrag;
+        return muenzWechsler.buchen(dbManager.neueVerkaufsbuchung()
+                .bestellung(a.getTyp(), a.isMitMilch(), a.getPreis())
+                .zahlung(a.getBezahlteMuenzen())
+                .zeitstempel(verkauf.zeitMs));
+    }
+
+    // Offene Verkäufe in ihrer Reihenfolge buchen, bis einer wieder scheitert
+    private void nachholen() {
+        while (!nichtGebucht.isEmpty() && buchen(nichtGebucht.peek())) {
+            nichtGebucht.poll();
+            ERFOLG.increment();
         }
+    }
 
-        return msg;
+    // Unveränderlicher Schnappschuss (Zutaten, Tassen, Defekt, Münzbestand); Text siehe Meldungen.status
+    public Automatenzustand getZustand() {
+        return aktuellerZustand();
     }
 
     public String getStatus() {
-        return String.format("Bohnen: %dg | Milch: %dg | Tassen: %d | Defekt: %s",
-                kaffeeBestand, milchBestand, tassenGesamt, defekt ? "JA" : "NEIN");
+        return Meldungen.status(aktuellerZustand());
+    }
+
+    public boolean isDefekt() {
+        return defekt;
+    }
+
+    // Threadsicher (Metriken)
+    public int getBestand(Zutat zutat) {
+        return lager.getBestand(zutat);
+    }
+
+    // Threadsicher: wird von der Flotte für den Nachfüllplan gelesen
+    public Fuellstandsprognose getFuellstandsprognose(String maschinenId, Instant jetzt) {
+        return lager.prognose(maschinenId, jetzt.toEpochMilli());
     }
 
     public void auffuellen() {
-        this.kaffeeBestand = 2000;
-        this.milchBestand = 200;
+        lager.auffuellen();
         this.defekt = false;
+        muenzWechsler.wartungProtokollieren();
+        zustandSichern();
+    }
+
+    // Zwischenstand: Münzbestand und Tassenzahl darin gelten noch nicht als aktuell,
+    // weil das Münzjournal noch offene Änderungen haben kann
+    public void zustandSichern() {
+        dbManager.zustandSpeichern(aktuellerZustand(), false);
+    }
+
+    // Beim Beenden, nachdem der Muenzwechsler (und damit sein Journal) geschlossen wurde.
+    // Der nächste Start liest dann alles mit einer Abfrage.
+    public void zustandSichernBeimBeenden() {
+        nachholen();
+        for (OffenerVerkauf v : nichtGebucht) {
+            System.err.println("Verkauf nicht gebucht: #" + v.auftrag.getNummer() + " " + v.auftrag.getTyp()
+                    + " " + v.auftrag.getPreis() + " Cent um " + Instant.ofEpochMilli(v.zeitMs));
+        }
+        // Mit fehlenden Verkäufen passt die Tassenzahl nicht zu den Zählern: nicht als aktuell markieren
+        dbManager.zustandSpeichern(aktuellerZustand(), nichtGebucht.isEmpty());
+    }
+
+    private Automatenzustand aktuellerZustand() {
+        return new Automatenzustand(lager.getBestand(Zutat.BOHNEN), lager.getBestand(Zutat.MILCH), defekt, tassenGesamt, muenzWechsler.getMuenzBestand());
+    }
+
+    private static final class OffenerVerkauf {
+        final Auftrag auftrag;
+        final long zeitMs;
+
+        OffenerVerkauf(Auftrag auftrag, long zeitMs) {
+            this.auftrag = auftrag;
+            this.zeitMs = zeitMs;
+        }
     }
-}
\ No newline at end of file
+}
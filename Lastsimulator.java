@@ -0,0 +1,224 @@
+package de.gfn.coffee;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+// Lastsimulation ohne Oberfläche und ohne Animation.
+// Kunden kommen als Poisson-Prozess (virtuelle Zeit), werfen Münzen nach einer
+// Verteilung ein und bestellen nach einem Produktmix. Die Bedienzeit jedes Verkaufs
+// wird real gemessen; Wartezeiten ergeben sich aus der Ankunftsrate.
+//
+// Aufruf: java de.gfn.coffee.Lastsimulator --kunden=10000 --rate=2.0 --seed=42
+//         --mix=ESPRESSO:3,CAPPUCCINO:2 --muenzen=200:1,100:3,50:3,20:2,10:2
+//         --verzeichnis=simulation --persistenz=ereignislog --metriken=metriken.txt
+public class Lastsimulator {
+
+    public static class Konfiguration {
+        int kunden = 5000;
+        double ankunftsRateProSekunde = 1.0;
+        long seed = 42;
+        Path verzeichnis = Paths.get("simulation");
+        Persistenzmodus persistenz = Persistenzmodus.DATENBANK;
+        // Am Ende Zähler und Latenzhistogramme als Text hierhin schreiben (null = nicht)
+        Path metriken = null;
+        // Gewichte pro Getraenk (Index = ordinal)
+        double[] produktMix = {3, 3, 2, 1, 1, 1};
+        // Gewichte pro Münzschacht (Index wie MuenzVektor)
+        double[] muenzVerteilung = {1, 3, 3, 2, 2, 1, 0.5, 0.5};
+
+        public static Konfiguration ausArgumenten(String[] args) {
+            Konfiguration k = new Konfiguration();
+            for (String arg : args) {
+                String[] teile = arg.replaceFirst("^--", "").split("=", 2);
+                if (teile.length != 2) throw new IllegalArgumentException("Ungültiges Argument: " + arg);
+                switch (teile[0]) {
+                    case "kunden": k.kunden = Integer.parseInt(teile[1]); break;
+                    case "rate": k.ankunftsRateProSekunde = Double.parseDouble(teile[1]); break;
+                    case "seed": k.seed = Long.parseLong(teile[1]); break;
+                    case "verzeichnis": k.verzeichnis = Paths.get(teile[1]); break;
+                    case "persistenz": k.persistenz = Persistenzmodus.valueOf(teile[1].trim().toUpperCase()); break;
+                    case "metriken": k.metriken = Paths.get(teile[1]); break;
+                    case "mix": k.produktMix = parseProduktMix(teile[1]); break;
+                    case "muenzen": k.muenzVerteilung = parseMuenzVerteilung(teile[1]); break;
+                    default: throw new IllegalArgumentException("Unbekannte Option: " + teile[0]);
+                }
+            }
+            return k;
+        }
+
+        private static double[] parseProduktMix(String text) {
+            double[] mix = new double[Getraenk.values().length];
+            for (String eintrag : text.split(",")) {
+                String[] kv = eintrag.split(":");
+                mix[Getraenk.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Double.parseDouble(kv[1]);
+            }
+            return mix;
+        }
+
+        private static double[] parseMuenzVerteilung(String text) {
+            double[] verteilung = new double[MuenzVektor.SCHAECHTE];
+            for (String eintrag : text.split(",")) {
+                String[] kv = eintrag.split(":");
+                int schacht = MuenzVektor.schacht(Integer.parseInt(kv[0].trim()));
+                if (schacht < 0) throw new IllegalArgumentException("Unbekannte Münze: " + kv[0]);
+                verteilung[schacht] = Double.parseDouble(kv[1]);
+            }
+            return verteilung;
+        }
+    }
+
+    public static class Bericht {
+        int kunden;
+        int verkauft;
+        int wechselgeldAbgelehnt;
+        int zutatenFehlen;
+        int defekte;
+        int wartungen;
+        double laufzeitSekunden;
+        double simulierteSekunden;
+        long[] bedienzeitNanos;
+        long[] verweilzeitNanos;
+        long dbTransaktionen;
+        long dbZeilen;
+
+        public double getAbgelehntQuote() {
+            return kunden == 0 ? 0 : (double) wechselgeldAbgelehnt / kunden;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Kunden: %d | Verkauft: %d | Wechselgeld abgelehnt: %d (%.2f%%) | Zutaten fehlten: %d | Defekte: %d | Wartungen: %d%n",
+                    kunden, verkauft, wechselgeldAbgelehnt, 100 * getAbgelehntQuote(), zutatenFehlen, defekte, wartungen));
+            sb.append(String.format("Durchsatz: %.1f Verkäufe/s (Laufzeit %.2f s, simuliert %.0f s)%n",
+                    verkauft / laufzeitSekunden, laufzeitSekunden, simulierteSekunden));
+            sb.append("Bedienzeit   ").append(perzentile(bedienzeitNanos)).append('\n');
+            sb.append("Verweilzeit  ").append(perzentile(verweilzeitNanos)).append('\n');
+            sb.append(String.format("DB: %d Transaktionen, %d Zeilen (%.2f Transaktionen pro Verkauf)",
+                    dbTransaktionen, dbZeilen, verkauft == 0 ? 0.0 : (double) dbTransaktionen / verkauft));
+            return sb.toString();
+        }
+
+        private static String perzentile(long[] werte) {
+            if (werte.length == 0) return "-";
+            long[] sortiert = werte.clone();
+            Arrays.sort(sortiert);
+            return String.format("p50 %.3f ms | p90 %.3f ms | p99 %.3f ms | max %.3f ms",
+                    perzentil(sortiert, 0.50), perzentil(sortiert, 0.90), perzentil(sortiert, 0.99),
+                    sortiert[sortiert.length - 1] / 1e6);
+        }
+
+        private static double perzentil(long[] sortiert, double p) {
+            int index = (int) Math.ceil(p * sortiert.length) - 1;
+            return sortiert[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    private final Konfiguration konfig;
+    private final Random zufall;
+
+    public Lastsimulator(Konfiguration konfig) {
+        this.konfig = konfig;
+        this.zufall = new Random(konfig.seed);
+    }
+
+    public Bericht ausfuehren() throws IOException {
+        Files.createDirectories(konfig.verzeichnis);
+        Getraenk[] karte = Getraenk.values();
+        Bericht bericht = new Bericht();
+        bericht.kunden = konfig.kunden;
+        long[] bedienzeit = new long[konfig.kunden];
+        long[] verweilzeit = new long[konfig.kunden];
+
+        try (DatabaseManager db = new DatabaseManager(konfig.verzeichnis, 2)) {
+            Muenzwechsler wechsler = new Muenzwechsler(db, new OptimalesWechselgeld(), konfig.persistenz);
+            Kaffeeautomat automat = new Kaffeeautomat(db, wechsler);
+            long transaktionenVorher = db.getSchreibTransaktionen();
+            long zeilenVorher = db.getGeschriebeneZeilen();
+
+            // Virtuelle Zeit in Nanosekunden: Ankunft und Ende des letzten Verkaufs
+            double ankunft = 0;
+            double automatFrei = 0;
+            long start = System.nanoTime();
+
+            for (int k = 0; k < konfig.kunden; k++) {
+                ankunft += -Math.log(1 - zufall.nextDouble()) / konfig.ankunftsRateProSekunde * 1e9;
+                Getraenk g = karte[waehle(konfig.produktMix)];
+
+                long t0 = System.nanoTime();
+                while (wechsler.getAktuellerEinwurf() < g.getPreis()) {
+                    wechsler.muenzeAnnehmen(MuenzVektor.wert(waehle(konfig.muenzVerteilung)));
+                }
+                Verkaufsergebnis ergebnis = automat.verkaufen(g.getName(), g.isMitMilch(), g.getPreis()).getErgebnis();
+                long dauer = System.nanoTime() - t0;
+
+                double beginn = Math.max(ankunft, automatFrei);
+                automatFrei = beginn + dauer;
+                bedienzeit[k] = dauer;
+                verweilzeit[k] = (long) (automatFrei - ankunft);
+
+                auswerten(ergebnis, automat, wechsler, bericht);
+            }
+
+            bericht.laufzeitSekunden = (System.nanoTime() - start) / 1e9;
+            bericht.simulierteSekunden = automatFrei / 1e9;
+            bericht.bedienzeitNanos = bedienzeit;
+            bericht.verweilzeitNanos = verweilzeit;
+            // Schließen schreibt offene Journale, das gehört zur DB-Last dazu
+            wechsler.close();
+            automat.zustandSichernBeimBeenden();
+            bericht.dbTransaktionen = db.getSchreibTransaktionen() - transaktionenVorher;
+            bericht.dbZeilen = db.getGeschriebeneZeilen() - zeilenVorher;
+        }
+        if (konfig.metriken != null) {
+            Metriken.exportieren(konfig.metriken);
+        }
+        return bericht;
+    }
+
+    private void auswerten(Verkaufsergebnis ergebnis, Kaffeeautomat automat, Muenzwechsler wechsler, Bericht bericht) {
+        switch (ergebnis) {
+            case ERFOLG:
+                bericht.verkauft++;
+                break;
+            case WECHSELGELD_NICHT_MOEGLICH:
+                bericht.wechselgeldAbgelehnt++;
+                break;
+            case DEFEKT:
+                bericht.defekte++;
+                automat.auffuellen();
+                bericht.wartungen++;
+                break;
+            case ZUTATEN_FEHLEN:
+            case AUSSER_BETRIEB:
+                // Keine Bohnen/Milch: Kunde nimmt sein Geld zurück, Service füllt auf
+                bericht.zutatenFehlen++;
+                wechsler.einwurfZurueckgeben();
+                automat.auffuellen();
+                bericht.wartungen++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int waehle(double[] gewichte) {
+        double summe = 0;
+        for (double g : gewichte) summe += g;
+        double r = zufall.nextDouble() * summe;
+        for (int i = 0; i < gewichte.length; i++) {
+            r -= gewichte[i];
+            if (r < 0) return i;
+        }
+        return gewichte.length - 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Konfiguration konfig = Konfiguration.ausArgumenten(args);
+        System.out.println(new Lastsimulator(konfig).ausfuehren());
+    }
+}
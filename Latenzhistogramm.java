@@ -0,0 +1,82 @@
+package de.gfn.coffee;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latenzen in Nanosekunden, logarithmisch-linear eingeteilt wie bei HdrHistogram:
+// bis 63 ns exakt, darüber 32 Buckets pro Zweierpotenz (höchstens ca. 3 % Abweichung).
+// Erfassen ist lock-frei (ein Inkrement im Bucket-Array), Perzentile werden nur beim Export gelesen.
+public final class Latenzhistogramm {
+    private static final int UNTERTEILUNG_BITS = 6;
+    private static final int DIREKT = 1 << UNTERTEILUNG_BITS;       // 0..63 exakt
+    private static final int PRO_GRUPPE = DIREKT / 2;                // 32 Buckets pro Zweierpotenz
+    private static final int MAX_BITS = 40;                          // ca. 18 Minuten
+    private static final long MAX_WERT = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = index(MAX_WERT) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder anzahl = new LongAdder();
+    private final LongAdder summe = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void erfassen(long nanos) {
+        long wert = Math.min(Math.max(nanos, 0), MAX_WERT);
+        buckets.incrementAndGet(index(wert));
+        anzahl.increment();
+        summe.add(wert);
+        long bisher = max.get();
+        while (wert > bisher && !max.compareAndSet(bisher, wert)) {
+            bisher = max.get();
+        }
+    }
+
+    // Für den Aufruf am Ende einer Messung: erfassenSeit(t0) mit t0 = System.nanoTime()
+    public void erfassenSeit(long startNanos) {
+        erfassen(System.nanoTime() - startNanos);
+    }
+
+    public long getAnzahl() {
+        return anzahl.sum();
+    }
+
+    public long getSumme() {
+        return summe.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // Obere Grenze des Buckets, in den das p-Perzentil fällt (nie über dem Maximum)
+    public long perzentil(double p) {
+        long gesamt = 0;
+        long[] kopie = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            kopie[i] = buckets.get(i);
+            gesamt += kopie[i];
+        }
+        if (gesamt == 0) return 0;
+        long ziel = Math.max(1, (long) Math.ceil(p * gesamt));
+        long kumuliert = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            kumuliert += kopie[i];
+            if (kumuliert >= ziel) return Math.min(obereGrenze(i), getMax());
+        }
+        return getMax();
+    }
+
+    private static int index(long wert) {
+        if (wert < DIREKT) return (int) wert;
+        int gruppe = 63 - Long.numberOfLeadingZeros(wert) - UNTERTEILUNG_BITS + 1;
+        int unter = (int) (wert >>> gruppe) - PRO_GRUPPE;
+        return DIREKT + (gruppe - 1) * PRO_GRUPPE + unter;
+    }
+
+    private static long obereGrenze(int index) {
+        if (index < DIREKT) return index;
+        int gruppe = (index - DIREKT) / PRO_GRUPPE + 1;
+        long unter = (index - DIREKT) % PRO_GRUPPE + PRO_GRUPPE;
+        return ((unter + 1) << gruppe) - 1;
+    }
+}
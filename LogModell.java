@@ -0,0 +1,64 @@
+package de.gfn.coffee;
+
+import javax.swing.AbstractListModel;
+import java.util.List;
+
+// Protokoll der GUI als Ringpuffer mit fester Zeilenzahl. Die JList zeichnet nur die
+// sichtbaren Zeilen, ältere Einträge fallen vorne heraus: Speicher und Zeichenaufwand
+// bleiben auch nach einem ganzen Tag Kioskbetrieb gleich. Nur auf dem EDT benutzen.
+final class LogModell extends AbstractListModel<String> {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] zeilen;
+    private int start = 0;
+    private int anzahl = 0;
+
+    LogModell(int kapazitaet) {
+        this.zeilen = new String[kapazitaet];
+    }
+
+    @Override
+    public int getSize() {
+        return anzahl;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return zeilen[(start + index) % zeilen.length];
+    }
+
+    // Mehrzeilige Meldungen werden in einzelne Listenzeilen zerlegt
+    void anhaengen(String text) {
+        anhaengen(List.of(text));
+    }
+
+    // Ein Ereignis pro Änderungsart für den ganzen Block (nicht pro Zeile)
+    void anhaengen(List<String> texte) {
+        int vorher = anzahl;
+        int entfernt = 0;
+        for (String text : texte) {
+            int von = 0;
+            while (von <= text.length()) {
+                int bis = text.indexOf('\n', von);
+                if (bis < 0) bis = text.length();
+                if (anzahl == zeilen.length) {
+                    start = (start + 1) % zeilen.length;
+                    anzahl--;
+                    entfernt++;
+                }
+                zeilen[(start + anzahl) % zeilen.length] = text.substring(von, bis);
+                anzahl++;
+                von = bis + 1;
+            }
+        }
+        // Aus Sicht der Liste: vorne alte Zeilen weg, hinten neue dazu
+        int alteEntfernt = Math.min(entfernt, vorher);
+        if (alteEntfernt > 0) {
+            fireIntervalRemoved(this, 0, alteEntfernt - 1);
+        }
+        int bleiben = vorher - alteEntfernt;
+        if (anzahl > bleiben) {
+            fireIntervalAdded(this, bleiben, anzahl - 1);
+        }
+    }
+}
@@ -1,12 +1,47 @@
 package de.gfn.coffee;
 
 import javax.swing.SwingUtilities;
+import java.awt.GraphicsEnvironment;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
+        // So früh wie möglich: ab hier laufen die Startzeiten
+        Startvorgang start = new Startvorgang();
+        Metriken.exportAusSystemProperty();
+        List<String> optionen = Arrays.asList(args);
+        // Probestart (z.B. Trainingslauf für das Klassenarchiv, siehe pom.xml): starten und sofort beenden
+        if (optionen.contains("--probestart")) {
+            start.bereit().thenRun(() -> System.exit(0));
+        }
+        // Beim Beenden erst Fernzugriff und Münzjournal, dann die Verbindungen schließen
+        Runtime.getRuntime().addShutdownHook(new Thread(start::close, "db-shutdown"));
+
+        if (GraphicsEnvironment.isHeadless() || optionen.contains("--ohne-gui")) {
+            ohneOberflaeche(start);
+            return;
+        }
+        // Datenbank und Zustand laden im Hintergrund, das Fenster erscheint schon vorher
+        start.starten();
         SwingUtilities.invokeLater(() -> {
-            SmartCoffeeGUI gui = new SmartCoffeeGUI();
+            SmartCoffeeGUI gui = new SmartCoffeeGUI(start);
             gui.setVisible(true);
+            start.erreicht("fenster");
         });
     }
-}
\ No newline at end of file
+
+    // Automat ohne Bildschirm: Bedienung und Überwachung nur über den Fernzugriff
+    private static void ohneOberflaeche(Startvorgang start) {
+        if (System.getProperty("smartcoffee.fernzugriff") == null) {
+            System.setProperty("smartcoffee.fernzugriff", "8080");
+        }
+        start.starten().join();
+        Fernzugriff fernzugriff = start.getFernzugriff();
+        if (fernzugriff == null) {
+            System.exit(1);
+        }
+        System.out.println("Smart Coffee ohne Oberfläche, Fernzugriff auf Port " + fernzugriff.getPort());
+        start.erreicht("bereit");
+    }
+}
@@ -0,0 +1,95 @@
+package de.gfn.coffee;
+
+// Anzeigetexte für Ergebnisse und Zustände. Nur die Anzeige (GUI, Konsole) formatiert,
+// die Verkaufslogik arbeitet mit Verkaufsergebnis, MuenzVektor und Automatenzustand.
+public final class Meldungen {
+
+    private Meldungen() {
+    }
+
+    // Meldungen: zu wenig Geld, passend gezahlt [99, 102], Wechseln nicht möglich [101, 104],
+    // erfolgreich mit Wechselgeld [100, 103]
+    public static String zahlung(Verkaufsergebnis ergebnis, MuenzVektor wechselgeld) {
+        switch (ergebnis) {
+            case ERFOLG:
+                return wechselgeld.istLeer()
+                        ? "Zahlvorgang erfolgreich."
+                        : "Zahlvorgang erfolgreich entnehmen Sie das Wechselgeld.\n(" + wechselgeld + ")";
+            case ZU_WENIG_GELD:
+                return "Zu wenig Geld eingeworfen.";
+            case WECHSELGELD_NICHT_MOEGLICH:
+                return "Wechseln ist nicht möglich. Entnehmen Sie Ihre Münzen.";
+            default:
+                return ergebnis.name();
+        }
+    }
+
+    // Ergebnis eines Auftrags: Ablehnungsgrund, angenommen, fertig oder defekt
+    public static String auftrag(Auftrag a) {
+        switch (a.getErgebnis()) {
+            case ERFOLG:
+                if (a.getTassenNummer() == 0) return "Auftrag #" + a.getNummer() + " angenommen: " + a.getTyp();
+                String msg = "Ihr " + a.getTyp() + " wird zubereitet. \n" + zahlung(Verkaufsergebnis.ERFOLG, a.getWechselgeld());
+                // Meldung jede 20. Tasse [88]
+                if (a.getTassenNummer() % 20 == 0) {
+                    msg += "\n(INFO: Dies ist die " + a.getTassenNummer() + ". ausgegebene Tasse!)";
+                }
+                return msg;
+            case ZUTATEN_FEHLEN:
+                return "FEHLER: Nicht genügend " + a.getFehlendeZutat().getName() + ".";
+            case AUSSER_BETRIEB:
+                return "FEHLER: Automat ist defekt (Mahlwerk). Bitte Service rufen.";
+            case DEFEKT:
+                return "CRITICAL: Mahlwerk ist gerade kaputt gegangen! Kaffee wurde nicht fertig.";
+            case WARTESCHLANGE_VOLL:
+                return "Warteschlange voll, bitte kurz warten.";
+            default:
+                return zahlung(a.getErgebnis(), a.getWechselgeld());
+        }
+    }
+
+    public static String status(Automatenzustand z) {
+        return status(z, " | ");
+    }
+
+    public static String status(Automatenzustand z, String trenner) {
+        return "Bohnen: " + z.getKaffeeBestand() + "g" + trenner + "Milch: " + z.getMilchBestand() + "g" + trenner
+                + "Tassen: " + z.getTassenGesamt() + trenner + "Defekt: " + (z.isDefekt() ? "JA" : "NEIN");
+    }
+
+    // ANFORDERUNG: Anzeige beginnend beim kleinsten Münzschacht (1 Ct ... 2 €) [96, 97]
+    public static String muenzbestand(MuenzVektor bestand) {
+        StringBuilder sb = new StringBuilder("Münzbestand: ");
+        // Wir iterieren Rückwärts durch die Schächte (200...1),
+        // um 1...200 auszugeben.
+        for (int i = MuenzVektor.SCHAECHTE - 1; i >= 0; i--) {
+            sb.append("[").append(bestand.get(i)).append("] ");
+        }
+        return sb.toString();
+    }
+
+    public static String ereignis(VendingEreignis e) {
+        switch (e.getTyp()) {
+            case MUENZE:
+                return "Münze erkannt: " + e.getMuenzwert() + " Cent";
+            case AUFTRAG:
+                Auftrag neu = e.getAuftrag();
+                if (neu.isAngenommen()) return "Auftrag #" + neu.getNummer() + " angenommen: " + neu.getTyp();
+                return auftrag(neu);
+            case BESTELLUNG:
+                return auftrag(e.getAuftrag());
+            case ZUBEREITUNG:
+                Auftrag a = e.getAuftrag();
+                return "Auftrag #" + a.getNummer() + " " + a.getTyp() + ": " + e.getStufe().getText()
+                        + (e.getEinheit() > 0 ? " (Einheit " + e.getEinheit() + ")" : "");
+            case WARTUNG:
+                return "Service: Bohnen/Milch & Wechselgeld aufgefüllt.";
+            case ABBRUCH:
+                return e.getRueckgabe().istLeer() ? "Kein Einwurf vorhanden." : "Rückgabe: " + e.getRueckgabe();
+            case FEHLER:
+                return "FEHLER: " + e.getFehlertext();
+            default:
+                return "Bereit.";
+        }
+    }
+}
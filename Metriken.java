@@ -0,0 +1,107 @@
+package de.gfn.coffee;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Prozessweite Metriken: Zähler (LongAdder), Latenzhistogramme und Messwerte (z.B. Füllstände).
+// Heiße Pfade halten ihre Zähler/Histogramme in static final Feldern, die Map wird nur beim
+// Anlegen und beim Export benutzt. Export als Text im Prometheus-Format, auf Wunsch periodisch
+// in eine Datei (-Dsmartcoffee.metriken=metriken.txt).
+public final class Metriken {
+    private static final long EXPORT_INTERVALL_MS = 10_000;
+    private static final double[] PERZENTILE = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Map<String, LongAdder> ZAEHLER = new ConcurrentHashMap<>();
+    private static final Map<String, Latenzhistogramm> HISTOGRAMME = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> MESSWERTE = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService exporter;
+
+    private Metriken() {
+    }
+
+    public static LongAdder zaehler(String name) {
+        LongAdder z = ZAEHLER.get(name);
+        return z != null ? z : ZAEHLER.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public static Latenzhistogramm histogramm(String name) {
+        Latenzhistogramm h = HISTOGRAMME.get(name);
+        return h != null ? h : HISTOGRAMME.computeIfAbsent(name, n -> new Latenzhistogramm());
+    }
+
+    // Wird erst beim Export abgefragt; die Quelle muss threadsicher lesbar sein
+    public static void messwert(String name, LongSupplier quelle) {
+        MESSWERTE.put(name, quelle);
+    }
+
+    public static void messwertEntfernen(String name) {
+        MESSWERTE.remove(name);
+    }
+
+    // --- EXPORT ---
+
+    public static String alsText() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(ZAEHLER).entrySet()) {
+            sb.append(e.getKey()).append(' ').append(e.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> e : new TreeMap<>(MESSWERTE).entrySet()) {
+            long wert;
+            try {
+                wert = e.getValue().getAsLong();
+            } catch (RuntimeException ex) {
+                continue; // Quelle gerade nicht lesbar (z.B. Automat wird beendet)
+            }
+            sb.append(e.getKey()).append(' ').append(wert).append('\n');
+        }
+        for (Map.Entry<String, Latenzhistogramm> e : new TreeMap<>(HISTOGRAMME).entrySet()) {
+            String name = e.getKey();
+            Latenzhistogramm h = e.getValue();
+            sb.append(name).append("_ns_anzahl ").append(h.getAnzahl()).append('\n');
+            sb.append(name).append("_ns_summe ").append(h.getSumme()).append('\n');
+            sb.append(name).append("_ns_max ").append(h.getMax()).append('\n');
+            for (double p : PERZENTILE) {
+                sb.append(name).append("_ns{quantile=\"").append(p).append("\"} ").append(h.perzentil(p)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    // Erst in eine temporäre Datei, dann umbenennen: Leser sehen nie einen halben Export
+    public static void exportieren(Path datei) throws IOException {
+        Path tmp = datei.resolveSibling(datei.getFileName() + ".tmp");
+        Files.write(tmp, alsText().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, datei, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Startet den periodischen Export, falls -Dsmartcoffee.metriken gesetzt ist
+    public static synchronized void exportAusSystemProperty() {
+        String datei = System.getProperty("smartcoffee.metriken");
+        if (datei == null || datei.isBlank() || exporter != null) return;
+        Path ziel = Path.of(datei.trim());
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metriken-export");
+            t.setDaemon(true);
+            return t;
+        });
+        exporter.scheduleWithFixedDelay(() -> {
+            try {
+                exportieren(ziel);
+            } catch (IOException e) {
+                System.err.println("Metriken Export fehlgeschlagen: " + e.getMessage());
+            }
+        }, EXPORT_INTERVALL_MS, EXPORT_INTERVALL_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,274 @@
+package de.gfn.coffee;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Write-Behind für den Münzbestand: Änderungen werden nur im Speicher zusammengefasst
+// und an eine Journaldatei angehängt (ohne fsync). Ein Hintergrund-Thread schreibt die
+// Summen periodisch oder ab einer Schwelle in die DB. Nach einem Absturz werden die
+// Journaldateien beim Start erneut eingespielt.
+public class MuenzJournal implements Verkaufsjournal {
+    private static final long FLUSH_INTERVALL_MS = 2000;
+    private static final int FLUSH_SCHWELLE = 32; // Anzahl bewegter Münzen
+    private static final int SATZ_LAENGE = 8;     // int Muenztyp + int Delta
+
+    // Ein gemeinsamer Flush-Thread für alle Journale im Prozess (auch bei vielen Automaten)
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "muenzjournal-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final DatabaseManager dbManager;
+    private final Path verzeichnis;
+    private final String praefix;
+    // Zusammengefasste Deltas pro Münzschacht seit dem letzten Abschnitt
+    private final MuenzVektor offen = new MuenzVektor();
+    private int offenSumme = 0;
+    private boolean flushAngefordert = false;
+
+    private long sequenz;
+    private FileChannel datei;
+    private final ByteBuffer satz = ByteBuffer.allocate(SATZ_LAENGE);
+
+    // Hält die Reihenfolge der Commits ein (Sequenz in der DB darf nur steigen)
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final ScheduledFuture<?> periodischerFlush;
+
+    public MuenzJournal(DatabaseManager db, Path verzeichnis, String praefix) {
+        this.dbManager = db;
+        this.verzeichnis = verzeichnis;
+        this.praefix = praefix;
+
+        // Erst alte Journale einspielen, danach liest der Wechsler einen korrekten Bestand
+        this.sequenz = wiederherstellen() + 1;
+        oeffneAbschnittsdatei();
+
+        this.periodischerFlush = FLUSHER.scheduleWithFixedDelay(this::flush,
+                FLUSH_INTERVALL_MS, FLUSH_INTERVALL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Reine Speicheroperation plus ein Append in den Page-Cache
+    @Override
+    public synchronized void aufzeichnen(int schacht, int delta) {
+        if (delta == 0) return;
+        offen.add(schacht, delta);
+        offenSumme += Math.abs(delta);
+        schreibeSatz(MuenzVektor.wert(schacht), delta);
+
+        if (offenSumme >= FLUSH_SCHWELLE && !flushAngefordert) {
+            flushAngefordert = true;
+            FLUSHER.execute(this::flush);
+        }
+    }
+
+    // Schreibt alle offenen Deltas zusammen mit der übergebenen Buchung in einem Commit
+    @Override
+    public boolean mitBuchungAbschliessen(Verkaufsbuchung buchung) {
+        commitLock.lock();
+        try {
+            Abschnitt abschnitt = abschneiden();
+            if (abschnitt != null) {
+                buchung.muenzAenderungen(abschnitt.deltas);
+                buchung.journalSequenz(abschnitt.sequenz);
+            }
+            boolean ok = buchung.abschliessen();
+            if (abschnitt != null) {
+                if (ok) {
+                    loeschen(abschnitt.sequenz);
+                } else {
+                    zurueckstellen(abschnitt);
+                }
+            }
+            return ok;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // Zählerstand im selben Commit wie die bis dahin offenen Münzdeltas
+    @Override
+    public void wartungAufzeichnen() {
+        zaehlerBuchen(Verkaufsstatistik.WARTUNGEN);
+    }
+
+    @Override
+    public void defektAufzeichnen() {
+        zaehlerBuchen(Verkaufsstatistik.DEFEKTE);
+    }
+
+    private void zaehlerBuchen(String zaehler) {
+        if (!mitBuchungAbschliessen(dbManager.neueVerkaufsbuchung().zaehler(zaehler, 1))) {
+            System.err.println("Münzjournal: " + zaehler + " nicht gezählt");
+        }
+    }
+
+    public void flush() {
+        synchronized (this) {
+            flushAngefordert = false;
+            if (offenSumme == 0) return;
+        }
+        mitBuchungAbschliessen(dbManager.neueVerkaufsbuchung());
+    }
+
+    // Beendet den aktuellen Abschnitt und beginnt eine neue Journaldatei
+    private synchronized Abschnitt abschneiden() {
+        if (offenSumme == 0) return null;
+        Abschnitt abschnitt = new Abschnitt(sequenz, new MuenzVektor(offen));
+        offen.leeren();
+        offenSumme = 0;
+        schliesseAbschnittsdatei();
+        sequenz++;
+        oeffneAbschnittsdatei();
+        return abschnitt;
+    }
+
+    // Commit fehlgeschlagen: Deltas wieder aufnehmen und im neuen Abschnitt sichern
+    private synchronized void zurueckstellen(Abschnitt abschnitt) {
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            int delta = abschnitt.deltas.get(i);
+            if (delta != 0) {
+                offen.add(i, delta);
+                offenSumme += Math.abs(delta);
+                schreibeSatz(MuenzVektor.wert(i), delta);
+            }
+        }
+        loeschen(abschnitt.sequenz);
+    }
+
+    // --- DATEIEN ---
+
+    private Path datei(long seq) {
+        return verzeichnis.resolve(praefix + "-" + seq + ".log");
+    }
+
+    private void oeffneAbschnittsdatei() {
+        try {
+            datei = FileChannel.open(datei(sequenz), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // Ohne Journal läuft der Automat weiter, nur ohne Absturzsicherung
+            System.err.println("Münzjournal Fehler: " + e.getMessage());
+            datei = null;
+        }
+    }
+
+    private void schliesseAbschnittsdatei() {
+        if (datei == null) return;
+        try {
+            datei.close();
+        } catch (IOException e) {
+            System.err.println("Münzjournal Fehler: " + e.getMessage());
+        }
+        datei = null;
+    }
+
+    private void schreibeSatz(int muenzTyp, int delta) {
+        if (datei == null) return;
+        satz.clear();
+        satz.putInt(muenzTyp).putInt(delta).flip();
+        try {
+            while (satz.hasRemaining()) {
+                datei.write(satz);
+            }
+        } catch (IOException e) {
+            System.err.println("Münzjournal Fehler: " + e.getMessage());
+        }
+    }
+
+    private void loeschen(long seq) {
+        try {
+            Files.deleteIfExists(datei(seq));
+        } catch (IOException e) {
+            System.err.println("Münzjournal Fehler: " + e.getMessage());
+        }
+    }
+
+    // Spielt alle Journaldateien ein, die noch nicht in der DB angekommen sind.
+    // Liefert die höchste bekannte Sequenz.
+    private long wiederherstellen() {
+        long gebucht = dbManager.ladeMuenzJournalSequenz();
+        long hoechste = gebucht;
+        MuenzVektor deltas = new MuenzVektor();
+        boolean etwasOffen = false;
+        List<Long> gefunden = new ArrayList<>();
+
+        try (DirectoryStream<Path> dateien = Files.newDirectoryStream(verzeichnis, praefix + "-*.log")) {
+            for (Path p : dateien) {
+                String name = p.getFileName().toString();
+                long seq;
+                try {
+                    seq = Long.parseLong(name.substring(praefix.length() + 1, name.length() - 4));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                gefunden.add(seq);
+                hoechste = Math.max(hoechste, seq);
+                if (seq <= gebucht) continue; // Commit war durch, nur die Datei blieb liegen
+
+                ByteBuffer inhalt = ByteBuffer.wrap(Files.readAllBytes(p));
+                // Ein halb geschriebener Satz am Ende wird ignoriert
+                while (inhalt.remaining() >= SATZ_LAENGE) {
+                    int muenzTyp = inhalt.getInt();
+                    int delta = inhalt.getInt();
+                    int schacht = MuenzVektor.schacht(muenzTyp);
+                    if (schacht >= 0) {
+                        deltas.add(schacht, delta);
+                        etwasOffen |= delta != 0;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Münzjournal Wiederherstellung fehlgeschlagen: " + e.getMessage());
+            return hoechste;
+        }
+
+        if (etwasOffen || hoechste > gebucht) {
+            Verkaufsbuchung buchung = dbManager.neueVerkaufsbuchung();
+            buchung.muenzAenderungen(deltas);
+            buchung.journalSequenz(hoechste);
+            if (!buchung.abschliessen()) {
+                // Dateien liegen lassen, beim nächsten Start neuer Versuch
+                return hoechste;
+            }
+        }
+        for (long seq : gefunden) {
+            loeschen(seq);
+        }
+        return hoechste;
+    }
+
+    @Override
+    public void close() {
+        periodischerFlush.cancel(false);
+        // Ein evtl. laufender Flush hält den commitLock, flush() wartet darauf
+        flush();
+        synchronized (this) {
+            schliesseAbschnittsdatei();
+            // Leere Abschlussdatei nicht liegen lassen
+            if (offenSumme == 0) loeschen(sequenz);
+        }
+    }
+
+    private static final class Abschnitt {
+        final long sequenz;
+        final MuenzVektor deltas;
+
+        Abschnitt(long sequenz, MuenzVektor deltas) {
+            this.sequenz = sequenz;
+            this.deltas = deltas;
+        }
+    }
+}
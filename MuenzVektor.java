@@ -0,0 +1,137 @@
+package de.gfn.coffee;
+
+import java.util.Arrays;
+
+// Anzahl Münzen pro Münzschacht als primitives Array (statt Map<Integer, Integer>).
+// Schacht 0 ist die größte Münze (200 ct), Schacht 7 die kleinste (1 ct).
+public final class MuenzVektor {
+    private static final int[] WERTE = {200, 100, 50, 20, 10, 5, 2, 1};
+    public static final int SCHAECHTE = WERTE.length;
+
+    // Direkter Zugriff Wert -> Schacht statt linearer Suche
+    private static final int[] SCHACHT_VON_WERT = new int[WERTE[0] + 1];
+
+    static {
+        Arrays.fill(SCHACHT_VON_WERT, -1);
+        for (int i = 0; i < WERTE.length; i++) {
+            SCHACHT_VON_WERT[WERTE[i]] = i;
+        }
+    }
+
+    private final int[] anzahl = new int[SCHAECHTE];
+
+    public MuenzVektor() {
+    }
+
+    public MuenzVektor(MuenzVektor andere) {
+        kopiereVon(andere);
+    }
+
+    // --- Münzwerte ---
+
+    public static int wert(int schacht) {
+        return WERTE[schacht];
+    }
+
+    // Liefert -1 für unbekannte Münzwerte
+    public static int schacht(int wertInCent) {
+        return wertInCent >= 0 && wertInCent < SCHACHT_VON_WERT.length ? SCHACHT_VON_WERT[wertInCent] : -1;
+    }
+
+    public static boolean istGueltig(int wertInCent) {
+        return schacht(wertInCent) >= 0;
+    }
+
+    // --- Zugriff ---
+
+    public int get(int schacht) {
+        return anzahl[schacht];
+    }
+
+    public void set(int schacht, int neueAnzahl) {
+        anzahl[schacht] = neueAnzahl;
+    }
+
+    public void add(int schacht, int delta) {
+        anzahl[schacht] += delta;
+    }
+
+    public int getFuerWert(int wertInCent) {
+        return anzahl[schacht(wertInCent)];
+    }
+
+    // --- Vektor-Operationen ---
+
+    public void addieren(MuenzVektor andere) {
+        for (int i = 0; i < SCHAECHTE; i++) {
+            anzahl[i] += andere.anzahl[i];
+        }
+    }
+
+    public void abziehen(MuenzVektor andere) {
+        for (int i = 0; i < SCHAECHTE; i++) {
+            anzahl[i] -= andere.anzahl[i];
+        }
+    }
+
+    // true, wenn in jedem Schacht mindestens so viele Münzen liegen wie in "andere"
+    public boolean deckt(MuenzVektor andere) {
+        for (int i = 0; i < SCHAECHTE; i++) {
+            if (anzahl[i] < andere.anzahl[i]) return false;
+        }
+        return true;
+    }
+
+    public void kopiereVon(MuenzVektor andere) {
+        System.arraycopy(andere.anzahl, 0, anzahl, 0, SCHAECHTE);
+    }
+
+    public void leeren() {
+        Arrays.fill(anzahl, 0);
+    }
+
+    public boolean istLeer() {
+        for (int a : anzahl) {
+            if (a != 0) return false;
+        }
+        return true;
+    }
+
+    public int summeInCent() {
+        int summe = 0;
+        for (int i = 0; i < SCHAECHTE; i++) {
+            summe += anzahl[i] * WERTE[i];
+        }
+        return summe;
+    }
+
+    public int anzahlMuenzen() {
+        int summe = 0;
+        for (int a : anzahl) {
+            summe += a;
+        }
+        return summe;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof MuenzVektor && Arrays.equals(anzahl, ((MuenzVektor) o).anzahl);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(anzahl);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < SCHAECHTE; i++) {
+            if (anzahl[i] != 0) {
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(anzahl[i]).append("x ").append(WERTE[i]).append("ct");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package de.gfn.coffee;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Gemeinsamer Münzbestand für mehrere gleichzeitige Zahlsitzungen.
+// Ein atomarer Zähler pro Münzschacht, jeder auf einer eigenen Cache-Line, damit sich
+// Sitzungen, die verschiedene Münzen bewegen, nicht gegenseitig ausbremsen.
+// Wechselgeld wird per CAS reserviert: nie mehr Münzen herausgeben als vorhanden.
+final class Muenzbestand {
+    // 16 ints = 64 Byte Abstand zwischen zwei Schächten
+    private static final int ABSTAND = 16;
+
+    private final AtomicIntegerArray anzahl = new AtomicIntegerArray(MuenzVektor.SCHAECHTE * ABSTAND);
+
+    int get(int schacht) {
+        return anzahl.get(schacht * ABSTAND);
+    }
+
+    // Kein konsistenter Schnappschuss über alle Schächte, nur eine Grundlage für die Berechnung
+    void lesen(MuenzVektor ziel) {
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            ziel.set(i, anzahl.get(i * ABSTAND));
+        }
+    }
+
+    void setzen(MuenzVektor quelle) {
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            anzahl.set(i * ABSTAND, quelle.get(i));
+        }
+    }
+
+    void einlegen(MuenzVektor muenzen) {
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            if (muenzen.get(i) != 0) anzahl.getAndAdd(i * ABSTAND, muenzen.get(i));
+        }
+    }
+
+    // Entnimmt alle Münzen oder keine. false, wenn ein Schacht inzwischen zu wenig hat.
+    boolean entnehmen(MuenzVektor muenzen) {
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            int bedarf = muenzen.get(i);
+            if (bedarf <= 0) continue;
+            int index = i * ABSTAND;
+            int vorher;
+            do {
+                vorher = anzahl.get(index);
+                if (vorher < bedarf) {
+                    // Bereits entnommene Schächte zurücklegen
+                    for (int j = 0; j < i; j++) {
+                        if (muenzen.get(j) > 0) anzahl.getAndAdd(j * ABSTAND, muenzen.get(j));
+                    }
+                    return false;
+                }
+            } while (!anzahl.compareAndSet(index, vorher, vorher - bedarf));
+        }
+        return true;
+    }
+}
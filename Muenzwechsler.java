@@ -1,138 +1,155 @@
 package de.gfn.coffee;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeMap;
+public class Muenzwechsler implements AutoCloseable {
+    // Münzwerte und Schacht-Index kommen aus MuenzVektor (Schacht 0 = 200 ct ... Schacht 7 = 1 ct)
 
-public class Muenzwechsler {
-    // Werte in Cent, aber sortiert für die Verarbeitung (Groß nach Klein für Algorithmus)
-    // Index-Mapping wird über Logic gelöst.
-    private final int[] muenzWerte = {200, 100, 50, 20, 10, 5, 2, 1};
+    // Bestand pro Münzschacht, von allen Zahlsitzungen gemeinsam genutzt
+    private final Muenzbestand muenzBestand = new Muenzbestand();
 
-    // Bestand pro Münzart (Index korrespondiert mit muenzWerte)
-    private int[] muenzBestand;
-
-    private int aktuellerEinwurf = 0;
-    private Map<Integer, Integer> eingeworfeneMuenzenMap = new HashMap<>();
+    private final WechselgeldStrategie strategie;
+    // Sitzung für den klassischen Ein-Kunden-Betrieb (GUI, Engine, Simulator)
+    private final Zahlsitzung standardSitzung;
 
     private DatabaseManager dbManager;
+    // Der Speicher-Bestand ist maßgeblich, die DB wird per Write-Behind nachgezogen
+    private final Verkaufsjournal journal;
 
     public Muenzwechsler(DatabaseManager db) {
+        this(db, new OptimalesWechselgeld());
+    }
+
+    public Muenzwechsler(DatabaseManager db, WechselgeldStrategie strategie) {
+        this(db, strategie, Persistenzmodus.ausSystemProperty());
+    }
+
+    public Muenzwechsler(DatabaseManager db, WechselgeldStrategie strategie, Persistenzmodus modus) {
         this.dbManager = db;
-        this.muenzBestand = new int[muenzWerte.length];
+        this.strategie = strategie;
+        this.journal = journalOeffnen(db, modus);
         ladeBestandAusDB();
+        this.standardSitzung = new Zahlsitzung(this, muenzBestand, strategie);
+    }
+
+    // Reste des jeweils anderen Modus zuerst in die DB bringen, dann das gewählte Journal öffnen
+    private static Verkaufsjournal journalOeffnen(DatabaseManager db, Persistenzmodus modus) {
+        if (modus == Persistenzmodus.EREIGNISLOG) {
+            new MuenzJournal(db, db.getVerzeichnis(), "muenzjournal").close();
+            return new Ereignisjournal(db, db.getVerzeichnis(), "ereignislog");
+        }
+        if (Ereignisjournal.vorhanden(db.getVerzeichnis(), "ereignislog")) {
+            new Ereignisjournal(db, db.getVerzeichnis(), "ereignislog").close();
+        }
+        return new MuenzJournal(db, db.getVerzeichnis(), "muenzjournal");
     }
 
     // Methode: datenAbrufen / ladeBestandAusDB
+    // Nach sauberem Beenden steht der Bestand schon im beim Start gelesenen Snapshot
     private void ladeBestandAusDB() {
-        Map<Integer, Integer> dbBestand = dbManager.ladeMuenzBestand();
-        for (int i = 0; i < muenzWerte.length; i++) {
-            muenzBestand[i] = dbBestand.getOrDefault(muenzWerte[i], 0);
+        Automatenzustand zustand = dbManager.getGespeicherterZustand();
+        MuenzVektor geladen;
+        if (zustand != null && dbManager.istZustandAktuell()) {
+            geladen = zustand.getMuenzBestand();
+        } else {
+            geladen = new MuenzVektor();
+            dbManager.ladeMuenzBestand(geladen);
         }
+        muenzBestand.setzen(geladen);
     }
 
+    // Weitere Sitzung für ein zusätzliches Terminal bzw. einen weiteren Ausgabekopf.
+    // Sitzungen laufen parallel; jede hat ihre eigene Instanz der Wechselgeld-Strategie.
+    public Zahlsitzung neueSitzung() {
+        return new Zahlsitzung(this, muenzBestand, strategie.neueInstanz());
+    }
+
+    // --- EIN-KUNDEN-BETRIEB (Standardsitzung) ---
+
     // Methode: muenzeAnnehmen
     public void muenzeAnnehmen(int wertInCent) {
-        aktuellerEinwurf += wertInCent;
-        eingeworfeneMuenzenMap.put(wertInCent, eingeworfeneMuenzenMap.getOrDefault(wertInCent, 0) + 1);
+        standardSitzung.muenzeAnnehmen(wertInCent);
+    }
 
-        // Münze direkt in den Bestand aufnehmen (bestandAktualisieren)
-        bestandAktualisieren(wertInCent, 1);
+    // Ergebnis: zu wenig Geld, erfolgreich (passend [99, 102] oder mit Wechselgeld [100, 103]),
+    // Wechseln nicht möglich [101, 104]. Das Wechselgeld steht danach in getWechselgeld().
+    public Verkaufsergebnis zahlen(int preis) {
+        return standardSitzung.zahlen(preis);
     }
 
-    // Methode: wechselgeldBerechnen
+    // Methode: wechselgeldBerechnen (als Text, siehe Meldungen.zahlung)
     public String wechselgeldBerechnen(int preis) {
-        int rueckgabeBetrag = aktuellerEinwurf - preis;
+        return standardSitzung.bezahlen(preis);
+    }
 
-        // Fall 1: Zu wenig Geld (Implizit, wird oft von GUI schon gefangen, aber hier zur Sicherheit)
-        if (rueckgabeBetrag < 0) return "Zu wenig Geld eingeworfen.";
+    // Nur lesen: gilt bis zur nächsten Zahlung
+    public MuenzVektor getWechselgeld() {
+        return standardSitzung.getWechselgeld();
+    }
 
-        // Fall 2: Passend gezahlt [Anforderung 99, 102]
-        if (rueckgabeBetrag == 0) {
-            resetEinwurf();
-            return "Zahlvorgang erfolgreich.";
-        }
+    // Prüft ohne Buchung, ob ein Betrag aktuell herausgegeben werden könnte
+    public boolean istWechselgeldMoeglich(int betrag) {
+        return standardSitzung.istWechselgeldMoeglich(betrag);
+    }
 
-        // Fall 3: Wechselgeld nötig - Prüfen ob vorhanden [Anforderung 100]
-        Map<Integer, Integer> wechselgeld = new HashMap<>();
-        int rest = rueckgabeBetrag;
-        int[] tempBestand = muenzBestand.clone();
-
-        // Greedy Algorithmus (Große Münzen zuerst für optimale Ausgabe)
-        for (int i = 0; i < muenzWerte.length; i++) {
-            int wert = muenzWerte[i];
-            while (rest >= wert && tempBestand[i] > 0) {
-                rest -= wert;
-                tempBestand[i]--;
-                wechselgeld.put(wert, wechselgeld.getOrDefault(wert, 0) + 1);
-            }
-        }
+    // Abbruch durch den Kunden: eingeworfene Münzen unverändert zurückgeben
+    public String einwurfZurueckgeben() {
+        return standardSitzung.einwurfZurueckgeben();
+    }
 
-        if (rest > 0) {
-            // Fall 4: Wechseln nicht möglich [Anforderung 101, 104]
-            // Eingeworfene Münzen zurückbuchen (da Transaktion abgebrochen)
-            rueckbuchenEingeworfen();
-            resetEinwurf();
-            return "Wechseln ist nicht möglich. Entnehmen Sie Ihre Münzen.";
-        } else {
-            // Fall 5: Erfolgreich mit Wechselgeld [Anforderung 103]
-            // Bestand wirklich reduzieren (bestandAktualisieren)
-            for (Map.Entry<Integer, Integer> entry : wechselgeld.entrySet()) {
-                bestandAktualisieren(entry.getKey(), -entry.getValue());
-            }
-            resetEinwurf();
-            return "Zahlvorgang erfolgreich entnehmen Sie das Wechselgeld.\n(" + formatWechselgeld(wechselgeld) + ")";
-        }
+    public void einwurfZurueckgeben(MuenzVektor rueckgabe) {
+        standardSitzung.einwurfZurueckgeben(rueckgabe);
     }
 
-    // Hilfsmethode: bestandAktualisieren
-    private void bestandAktualisieren(int wert, int anzahlAenderung) {
-        for(int i=0; i<muenzWerte.length; i++) {
-            if(muenzWerte[i] == wert) {
-                muenzBestand[i] += anzahlAenderung;
-                // Sofort in DB speichern
-                dbManager.updateMuenzBestand(wert, muenzBestand[i]);
-                break;
-            }
-        }
+    public int getAktuellerEinwurf() {
+        return standardSitzung.getAktuellerEinwurf();
     }
 
-    private void rueckbuchenEingeworfen() {
-        for (Map.Entry<Integer, Integer> entry : eingeworfeneMuenzenMap.entrySet()) {
-            bestandAktualisieren(entry.getKey(), -entry.getValue());
-        }
+    // Nur lesen: der Vektor wird beim nächsten Bezahlvorgang zurückgesetzt
+    public MuenzVektor getEingeworfeneMuenzen() {
+        return standardSitzung.getEingeworfeneMuenzen();
     }
 
-    private String formatWechselgeld(Map<Integer, Integer> wechselgeld) {
-        // Sortierte Ausgabe für schöneren Text
-        TreeMap<Integer, Integer> sorted = new TreeMap<>(wechselgeld);
-        StringBuilder sb = new StringBuilder();
-        sorted.descendingMap().forEach((wert, anzahl) -> sb.append(anzahl).append("x ").append(wert).append("ct, "));
-        String res = sb.toString();
-        return res.isEmpty() ? "" : res.substring(0, res.length() - 2);
+    // --- GEMEINSAM FÜR ALLE SITZUNGEN ---
+
+    // Von den Sitzungen nach jeder Bestandsänderung aufgerufen (Journal ist threadsicher)
+    void bestandGeaendert(int schacht, int anzahlAenderung) {
+        // Kein DB-Zugriff: das Journal schreibt asynchron bzw. mit dem nächsten Verkauf
+        journal.aufzeichnen(schacht, anzahlAenderung);
     }
 
-    // ANFORDERUNG: Anzeige beginnend beim kleinsten Münzschacht (1 Ct ... 2 €) [96, 97]
-    public String getBestandsAnzeige() {
-        StringBuilder sb = new StringBuilder("Münzbestand: ");
-        // Wir iterieren Rückwärts durch muenzWerte (da das Array 200...1 ist),
-        // um 1...200 auszugeben.
-        for (int i = muenzWerte.length - 1; i >= 0; i--) {
-            sb.append("[").append(muenzBestand[i]).append("] ");
-        }
-        return sb.toString();
+    // Schreibt die Buchung des Verkaufs zusammen mit den offenen Bestandsänderungen
+    public boolean buchen(Verkaufsbuchung buchung) {
+        return journal.mitBuchungAbschliessen(buchung);
     }
 
-    public int getAktuellerEinwurf() {
-        return aktuellerEinwurf;
+    // Betriebsereignisse des Automaten laufen über dasselbe Journal
+    public void wartungProtokollieren() {
+        journal.wartungAufzeichnen();
+    }
+
+    public void defektProtokollieren() {
+        journal.defektAufzeichnen();
+    }
+
+    // Für Auswertungen mit derselben Wechsel-Logik (z.B. Wechselgeldplaner); nicht direkt rechnen lassen
+    WechselgeldStrategie getStrategie() {
+        return strategie;
+    }
+
+    // ANFORDERUNG: Anzeige beginnend beim kleinsten Münzschacht (1 Ct ... 2 €) [96, 97]
+    public String getBestandsAnzeige() {
+        return Meldungen.muenzbestand(getMuenzBestand());
     }
 
-    public Map<Integer, Integer> getEingeworfeneMuenzenMap() {
-        return eingeworfeneMuenzenMap;
+    // Kopie des gemeinsamen Bestands (für den Snapshot)
+    MuenzVektor getMuenzBestand() {
+        MuenzVektor kopie = new MuenzVektor();
+        muenzBestand.lesen(kopie);
+        return kopie;
     }
 
-    private void resetEinwurf() {
-        aktuellerEinwurf = 0;
-        eingeworfeneMuenzenMap.clear();
+    // Offene Bestandsänderungen schreiben und das Journal beenden
+    @Override
+    public void close() {
+        journal.close();
     }
-}
\ No newline at end of file
+}
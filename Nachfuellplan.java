@@ -0,0 +1,113 @@
+package de.gfn.coffee;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Service-Touren für die Flotte: Ein Besuch füllt alle Zutaten eines Automaten auf.
+// Touren starten in festen Abständen ab jetzt; jeder Automat kommt in die letzte Tour,
+// die noch vor seinem Leerstand liegt. Automaten, die innerhalb des Horizonts nicht
+// leer werden, bekommen keinen Termin (keine unnötigen Fahrten).
+public final class Nachfuellplan {
+
+    public static final class Termin {
+        private final String maschinenId;
+        private final Instant termin;
+        private final Instant leerAb;
+        private final Zutat grund;
+
+        Termin(String maschinenId, Instant termin, Instant leerAb, Zutat grund) {
+            this.maschinenId = maschinenId;
+            this.termin = termin;
+            this.leerAb = leerAb;
+            this.grund = grund;
+        }
+
+        public String getMaschinenId() {
+            return maschinenId;
+        }
+
+        // Beginn der Tour, in der der Automat angefahren wird
+        public Instant getTermin() {
+            return termin;
+        }
+
+        public Instant getLeerAb() {
+            return leerAb;
+        }
+
+        public Zutat getGrund() {
+            return grund;
+        }
+
+        // Schon knapp: sofort anfahren
+        public boolean isDringend() {
+            return !leerAb.isAfter(termin);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: %s (leer ab %s)%s", termin, maschinenId, grund.getName(), leerAb,
+                    isDringend() ? " DRINGEND" : "");
+        }
+    }
+
+    private final Instant erstellt;
+    private final List<Termin> termine;
+
+    private Nachfuellplan(Instant erstellt, List<Termin> termine) {
+        this.erstellt = erstellt;
+        this.termine = Collections.unmodifiableList(termine);
+    }
+
+    public static Nachfuellplan erstellen(List<Fuellstandsprognose> prognosen, Instant jetzt,
+                                          Duration horizont, Duration tourAbstand) {
+        if (tourAbstand.isZero() || tourAbstand.isNegative()) {
+            throw new IllegalArgumentException("Tourabstand muss positiv sein: " + tourAbstand);
+        }
+        Instant ende = jetzt.plus(horizont);
+        long abstandMs = tourAbstand.toMillis();
+        List<Termin> termine = new ArrayList<>();
+        for (Fuellstandsprognose p : prognosen) {
+            Instant leerAb = p.getLeerAb();
+            if (leerAb == null || leerAb.isAfter(ende)) continue;
+            // Letzte Tour, die spätestens beim Leerstand beginnt
+            long touren = Math.max(0, Math.floorDiv(leerAb.toEpochMilli() - jetzt.toEpochMilli(), abstandMs));
+            termine.add(new Termin(p.getMaschinenId(), jetzt.plusMillis(touren * abstandMs), leerAb, p.getKnappsteZutat()));
+        }
+        termine.sort(Comparator.comparing(Termin::getTermin).thenComparing(Termin::getLeerAb));
+        return new Nachfuellplan(jetzt, termine);
+    }
+
+    public Instant getErstellt() {
+        return erstellt;
+    }
+
+    public List<Termin> getTermine() {
+        return termine;
+    }
+
+    // Anzahl Touren mit mindestens einem Automaten
+    public int getAnzahlTouren() {
+        int touren = 0;
+        Instant letzte = null;
+        for (Termin t : termine) {
+            if (!t.getTermin().equals(letzte)) touren++;
+            letzte = t.getTermin();
+        }
+        return touren;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("Nachfüllplan %s: %d Automaten in %d Touren",
+                erstellt, termine.size(), getAnzahlTouren()));
+        for (Termin t : termine) {
+            sb.append('\n').append(t);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,135 @@
+package de.gfn.coffee;
+
+// Minimale Münzanzahl bei begrenztem Bestand (Bounded Knapsack, dynamische Programmierung).
+// Die Tabelle wird bis zum angefragten Betrag berechnet (kleinere Beträge hängen nicht von
+// größeren ab) und bleibt gültig, bis sich der Bestand ändert. Abfragen bis zu diesem Betrag
+// sind danach ein Tabellenzugriff; da sich der Bestand fast mit jedem Verkauf ändert, spart das
+// die Berechnung bis zur vollen Kapazität.
+// Nicht threadsicher: jede Instanz hat eigene Puffer.
+public class OptimalesWechselgeld implements WechselgeldStrategie {
+    private static final int UNMOEGLICH = Integer.MAX_VALUE / 2;
+    private static final int START_KAPAZITAET = 500; // 5 Euro Wechselgeld, wächst bei Bedarf
+
+    private int kapazitaet;
+    // minMuenzen[a]: kleinste Münzanzahl für Betrag a mit dem ganzen Bestand
+    private int[] minMuenzen;
+    private int[] vorher;
+    // genutzt[i][a]: Anzahl Münzen aus Schacht i in der optimalen Lösung für Betrag a (Stufe i)
+    private int[][] genutzt;
+    private int[] fenster;
+    private int[] fensterSchluessel;
+
+    // Cache-Schlüssel der aktuell berechneten Tabelle
+    private MuenzVektor tabelleBestand;
+    private long tabelleVersion = -1;
+    // Höchster Betrag, für den die Tabelle berechnet ist
+    private int tabelleBis = -1;
+
+    public OptimalesWechselgeld() {
+        this(START_KAPAZITAET);
+    }
+
+    public OptimalesWechselgeld(int kapazitaet) {
+        this.kapazitaet = kapazitaet;
+    }
+
+    // Eigene Puffer je Sitzung
+    @Override
+    public WechselgeldStrategie neueInstanz() {
+        return new OptimalesWechselgeld(kapazitaet);
+    }
+
+    @Override
+    public boolean berechnen(int betrag, MuenzVektor bestand, long bestandsVersion, MuenzVektor ergebnis) {
+        if (!istMoeglich(betrag, bestand, bestandsVersion)) return false;
+
+        // Lösung rückwärts aus der Tabelle ablesen
+        int rest = betrag;
+        for (int i = MuenzVektor.SCHAECHTE - 1; i >= 0; i--) {
+            int anzahl = genutzt[i][rest];
+            ergebnis.set(i, anzahl);
+            rest -= anzahl * MuenzVektor.wert(i);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean istMoeglich(int betrag, MuenzVektor bestand, long bestandsVersion) {
+        if (betrag < 0) return false;
+        if (betrag > kapazitaet || genutzt == null) {
+            // Selten: Puffer einmalig vergrößern
+            kapazitaet = Math.max(kapazitaet, betrag);
+            puffernAnlegen();
+        } else if (bestand == tabelleBestand && bestandsVersion == tabelleVersion && betrag <= tabelleBis) {
+            return minMuenzen[betrag] < UNMOEGLICH;
+        }
+        tabelleBerechnen(bestand, betrag);
+        tabelleBestand = bestand;
+        tabelleVersion = bestandsVersion;
+        tabelleBis = betrag;
+        return minMuenzen[betrag] < UNMOEGLICH;
+    }
+
+    private void puffernAnlegen() {
+        minMuenzen = new int[kapazitaet + 1];
+        vorher = new int[kapazitaet + 1];
+        genutzt = new int[MuenzVektor.SCHAECHTE][kapazitaet + 1];
+        fenster = new int[kapazitaet + 1];
+        fensterSchluessel = new int[kapazitaet + 1];
+        tabelleBestand = null;
+        tabelleBis = -1;
+    }
+
+    // Pro Münzart ein Durchlauf je Restklasse (Betrag mod Wert) mit gleitendem Minimum
+    // über die erlaubte Stückzahl: O(Schächte * bis) statt O(Schächte * bis * Bestand).
+    private void tabelleBerechnen(MuenzVektor bestand, int bis) {
+        int[] alt = vorher;
+        int[] neu = minMuenzen;
+        alt[0] = 0;
+        for (int a = 1; a <= bis; a++) {
+            alt[a] = UNMOEGLICH;
+        }
+
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            int wert = MuenzVektor.wert(i);
+            int maxAnzahl = Math.max(bestand.get(i), 0);
+            int[] genutztI = genutzt[i];
+
+            for (int r = 0; r < wert && r <= bis; r++) {
+                int kopf = 0;
+                int ende = 0;
+                for (int j = 0, a = r; a <= bis; j++, a += wert) {
+                    // Kandidat j: alt[r + j*wert] - j (Münzen dieser Art werden später addiert)
+                    if (alt[a] < UNMOEGLICH) {
+                        int schluessel = alt[a] - j;
+                        while (ende > kopf && fensterSchluessel[ende - 1] >= schluessel) {
+                            ende--;
+                        }
+                        fensterSchluessel[ende] = schluessel;
+                        fenster[ende++] = j;
+                    }
+                    while (kopf < ende && fenster[kopf] < j - maxAnzahl) {
+                        kopf++;
+                    }
+                    if (kopf < ende) {
+                        neu[a] = fensterSchluessel[kopf] + j;
+                        genutztI[a] = j - fenster[kopf];
+                    } else {
+                        neu[a] = UNMOEGLICH;
+                        genutztI[a] = 0;
+                    }
+                }
+            }
+
+            int[] tausch = alt;
+            alt = neu;
+            neu = tausch;
+        }
+
+        // Ergebnis der letzten Stufe steht in "alt"
+        if (alt != minMuenzen) {
+            vorher = minMuenzen;
+            minMuenzen = alt;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package de.gfn.coffee;
+
+// Auswahl des Verkaufsjournals, z.B. per -Dsmartcoffee.persistenz=ereignislog
+public enum Persistenzmodus {
+    // Jeder Verkauf ist eine SQLite-Transaktion (Standard)
+    DATENBANK,
+    // Verkäufe und Münzen als Sätze im Ereignislog, Verdichtung nach SQLite im Hintergrund
+    EREIGNISLOG;
+
+    public static Persistenzmodus ausSystemProperty() {
+        String wert = System.getProperty("smartcoffee.persistenz", DATENBANK.name());
+        return valueOf(wert.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,41 @@
+package de.gfn.coffee;
+
+// Verbrauch eines Getränks in Gramm pro Zutat (unveränderlich)
+public final class Rezept {
+    // Für Bestellungen, die nicht auf der Karte stehen (bisherige Pauschalwerte)
+    static final Rezept STANDARD = new Rezept(25, 0);
+    static final Rezept STANDARD_MIT_MILCH = new Rezept(25, 10);
+
+    private final int[] mengen = new int[Zutat.values().length];
+
+    public Rezept(int bohnen, int milch) {
+        mengen[Zutat.BOHNEN.ordinal()] = bohnen;
+        mengen[Zutat.MILCH.ordinal()] = milch;
+    }
+
+    public int getMenge(Zutat zutat) {
+        return mengen[zutat.ordinal()];
+    }
+
+    // Rezept laut Karte, sonst die Pauschale
+    public static Rezept fuer(String typ, boolean mitMilch) {
+        Getraenk g = Getraenk.ausName(typ);
+        if (g != null) return g.getRezept();
+        return mitMilch ? STANDARD_MIT_MILCH : STANDARD;
+    }
+
+    // Größte Menge, die ein Getränk der Karte von dieser Zutat braucht.
+    // Darunter kann nicht mehr jedes Getränk verkauft werden.
+    static int groessteMenge(Zutat zutat) {
+        int max = 0;
+        for (Getraenk g : Getraenk.values()) {
+            max = Math.max(max, g.getRezept().getMenge(zutat));
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return getMenge(Zutat.BOHNEN) + "g Bohnen, " + getMenge(Zutat.MILCH) + "g Milch";
+    }
+}
@@ -0,0 +1,53 @@
+package de.gfn.coffee;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Führt Aufgaben strikt nacheinander aus, leiht sich dafür aber nur bei Bedarf
+// einen Thread aus einem gemeinsamen Pool. So bekommt jeder Automat einen eigenen
+// "Single Writer", ohne dass pro Automat ein Thread dauerhaft belegt ist.
+public class SeriellerExecutor implements Executor {
+    // Nach so vielen Aufgaben wird der Pool-Thread für andere Automaten freigegeben
+    private static final int MAX_AM_STUECK = 64;
+
+    private final Executor basis;
+    private final Queue<Runnable> warteschlange = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean aktiv = new AtomicBoolean(false);
+
+    public SeriellerExecutor(Executor basis) {
+        this.basis = basis;
+    }
+
+    @Override
+    public void execute(Runnable aufgabe) {
+        warteschlange.add(aufgabe);
+        planen();
+    }
+
+    private void planen() {
+        if (aktiv.compareAndSet(false, true)) {
+            basis.execute(this::abarbeiten);
+        }
+    }
+
+    private void abarbeiten() {
+        try {
+            Runnable aufgabe;
+            int erledigt = 0;
+            while (erledigt < MAX_AM_STUECK && (aufgabe = warteschlange.poll()) != null) {
+                try {
+                    aufgabe.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Fehler in serieller Aufgabe: " + e.getMessage());
+                }
+                erledigt++;
+            }
+        } finally {
+            aktiv.set(false);
+            // Zwischenzeitlich eingereihte Aufgaben nicht liegen lassen
+            if (!warteschlange.isEmpty()) planen();
+        }
+    }
+}
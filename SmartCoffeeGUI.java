@@ -3,19 +3,31 @@ package de.gfn.coffee;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SmartCoffeeGUI extends JFrame {
 
-    private final Kaffeeautomat automat;
-    private final Muenzwechsler wechsler;
+    // Die GUI zeigt nur an; verkauft wird in der VendingEngine (nicht auf dem EDT).
+    // Wird erst gesetzt, wenn der Start fertig ist (nur auf dem EDT); bis dahin ist die Bedienung gesperrt.
+    private VendingEngine engine;
+    private final Startvorgang start;
 
     // UI Komponenten
     private JLabel statusLabel;    // "Bereit" / "Zubereitung..."
     private JLabel creditLabel;    // "Guthaben: ..."
     private JLabel stockLabel;     // "Bohnen: ... | Milch: ... | Status: ..."
     private JProgressBar progressBar;
-    private JTextArea logArea;
+    private JList<String> logListe;
+    // Feste Zeilenzahl, älteste Zeilen fallen heraus
+    private final LogModell logModell = new LogModell(LOG_ZEILEN);
+    // Zeilen des aktuellen Bildes, werden gesammelt ins Modell geschrieben
+    private final List<String> neueLogZeilen = new ArrayList<>();
+    // Dialoge des aktuellen Bildes; modal, deshalb erst nach dem Zeichnen des ganzen Bildes
+    private final List<Runnable> neueDialoge = new ArrayList<>();
     private JPanel mainPanel;
+    // Zuletzt angezeigter Schnappschuss: Label und Münzlog nur bei Änderung neu aufbauen
+    private Automatenzustand angezeigterZustand;
 
     // Farben für das Design
     private final Color COLOR_BROWN = new Color(60, 40, 30);
@@ -23,18 +35,47 @@ public class SmartCoffeeGUI extends JFrame {
     private final Color COLOR_ACCENT = new Color(210, 180, 140);
     private final Font FONT_BOLD = new Font("Segoe UI", Font.BOLD, 14);
     private final Font FONT_HEADER = new Font("Segoe UI", Font.BOLD, 22);
+    private static final int LOG_ZEILEN = 1000;
 
-    public SmartCoffeeGUI() {
-        // 1. Datenbank initialisieren
-        DatabaseManager db = new DatabaseManager();
+    public SmartCoffeeGUI(Startvorgang start) {
+        this.start = start;
 
-        // 2. Münzwechsler mit Datenbank verbinden
-        wechsler = new Muenzwechsler(db);
+        // 1. Fenster sofort aufbauen, Knöpfe bleiben bis zum Ende des Starts gesperrt
+        initUI();
 
-        // 3. Automat mit Datenbank und Wechsler verbinden
-        automat = new Kaffeeautomat(db, wechsler);
+        // 2. Datenbank, Münzwechsler und Automat laden im Hintergrund (Startvorgang)
+        start.starten().whenComplete((e, fehler) -> SwingUtilities.invokeLater(() -> {
+            if (fehler != null) {
+                startFehlgeschlagen(fehler);
+            } else {
+                bereit(e);
+            }
+        }));
+    }
 
-        initUI();
+    // Start fertig (EDT): Engine übernehmen, Anzeige füllen, Bedienung freigeben
+    private void bereit(VendingEngine e) {
+        engine = e;
+        updateDisplay(engine.getZustand());
+        statusLabel.setText("Bereit.");
+        setButtonsEnabled(true);
+
+        // 3. Zustandsänderungen der Engine gesammelt einmal pro Bild auf dem EDT darstellen
+        Anzeigetakt takt = new Anzeigetakt(this::zustandAnzeigen);
+        engine.addListener(takt::melden);
+
+        start.erreicht("bereit");
+        log(start.getZeiten());
+        logSchreiben();
+    }
+
+    private void startFehlgeschlagen(Throwable fehler) {
+        Throwable ursache = fehler.getCause() != null ? fehler.getCause() : fehler;
+        System.err.println("Automat konnte nicht gestartet werden: " + ursache);
+        statusLabel.setText("Start fehlgeschlagen.");
+        stockLabel.setText(String.valueOf(ursache.getMessage()));
+        JOptionPane.showMessageDialog(this, "Automat konnte nicht gestartet werden:\n" + ursache.getMessage(),
+                "Fehler", JOptionPane.ERROR_MESSAGE);
     }
 
     private void initUI() {
@@ -61,8 +102,9 @@ public class SmartCoffeeGUI extends JFrame {
         // --- FOOTER ---
         createFooter();
 
-        // Initiale Anzeige aktualisieren
-        updateDisplay();
+        // Bis der Automat geladen ist, gibt es nichts zu bedienen
+        statusLabel.setText("Starte...");
+        setButtonsEnabled(false);
     }
 
     private void createHeader() {
@@ -111,36 +153,12 @@ public class SmartCoffeeGUI extends JFrame {
                 BorderFactory.createLineBorder(COLOR_CREAM), " Getränkekarte ",
                 0, 0, FONT_BOLD, COLOR_CREAM));
 
-        // 1. Espresso (Günstig, Schwarz)
-        JButton btnEspresso = createStyledButton("Espresso", "80 ct", "Der Wachmacher");
-        btnEspresso.addActionListener(e -> starteBestellVorgang("Espresso", false, 80));
-
-        // 2. Kaffee Crema (Standard, Schwarz)
-        JButton btnCrema = createStyledButton("Kaffee Crema", "100 ct", "Klassischer Genuss");
-        btnCrema.addActionListener(e -> starteBestellVorgang("Kaffee Crema", false, 100));
-
-        // 3. Cappuccino (Milch)
-        JButton btnCappu = createStyledButton("Cappuccino", "120 ct", "Italienische Art");
-        btnCappu.addActionListener(e -> starteBestellVorgang("Cappuccino", true, 120));
-
-        // 4. Milchkaffee (Milch)
-        JButton btnMilch = createStyledButton("Milchkaffee", "120 ct", "50% Kaffee, 50% Milch");
-        btnMilch.addActionListener(e -> starteBestellVorgang("Milchkaffee", true, 120));
-
-        // 5. Latte Macchiato (Teuer, Milch)
-        JButton btnLatte = createStyledButton("Latte Macchiato", "140 ct", "Viel Milchschaum");
-        btnLatte.addActionListener(e -> starteBestellVorgang("Latte Macchiato", true, 140));
-
-        // 6. Doppelter Espresso (Teuer, Schwarz)
-        JButton btnDouble = createStyledButton("Doppelter Espresso", "150 ct", "Doppelte Stärke");
-        btnDouble.addActionListener(e -> starteBestellVorgang("Doppelter Espresso", false, 150));
-
-        panel.add(btnEspresso);
-        panel.add(btnCrema);
-        panel.add(btnCappu);
-        panel.add(btnMilch);
-        panel.add(btnLatte);
-        panel.add(btnDouble);
+        // Espresso, Kaffee Crema, Cappuccino, Milchkaffee, Latte Macchiato, Doppelter Espresso
+        for (Getraenk g : Getraenk.values()) {
+            JButton btn = createStyledButton(g.getName(), g.getPreis() + " ct", g.getBeschreibung());
+            btn.addActionListener(e -> starteBestellVorgang(g.getName(), g.isMitMilch(), g.getPreis()));
+            panel.add(btn);
+        }
 
         return panel;
     }
@@ -158,11 +176,7 @@ public class SmartCoffeeGUI extends JFrame {
             btn.setFont(new Font("Segoe UI", Font.BOLD, 14));
             btn.setBackground(COLOR_ACCENT);
             btn.setFocusPainted(false);
-            btn.addActionListener(e -> {
-                wechsler.muenzeAnnehmen(coin);
-                statusLabel.setText("Münze erkannt: " + coin + " Cent");
-                updateDisplay();
-            });
+            btn.addActionListener(e -> engine.muenzeEinwerfen(coin));
             panel.add(btn);
         }
         return panel;
@@ -180,26 +194,36 @@ public class SmartCoffeeGUI extends JFrame {
         progressBar.setVisible(false);
 
         // Log Bereich
-        logArea = new JTextArea(6, 40);
-        logArea.setEditable(false);
-        logArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        logArea.setBackground(new Color(230, 230, 230));
-        JScrollPane scroll = new JScrollPane(logArea);
+        logListe = new JList<>(logModell);
+        logListe.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        logListe.setBackground(new Color(230, 230, 230));
+        // Feste Zeilenhöhe: die Liste muss nicht jede Zeile vermessen, gezeichnet wird nur der sichtbare Teil
+        logListe.setFixedCellHeight(logListe.getFontMetrics(logListe.getFont()).getHeight());
+        logListe.setVisibleRowCount(6);
+        logListe.setFocusable(false);
+        JScrollPane scroll = new JScrollPane(logListe);
 
         // Wartungsbutton
         JButton btnMaint = new JButton("<html><center>🔧<br>Wartung</center></html>");
         btnMaint.setBackground(Color.DARK_GRAY);
         btnMaint.setForeground(Color.WHITE);
-        btnMaint.addActionListener(e -> {
-            automat.auffuellen();
-            log("Service: Bohnen/Milch & Wechselgeld aufgefüllt.");
-            JOptionPane.showMessageDialog(this, "Wartung durchgeführt!\nAlles wieder aufgefüllt.", "Service", JOptionPane.INFORMATION_MESSAGE);
-            updateDisplay();
-        });
+        btnMaint.addActionListener(e -> engine.auffuellen().thenAccept(ergebnis -> SwingUtilities.invokeLater(() ->
+                JOptionPane.showMessageDialog(this, "Wartung durchgeführt!\nAlles wieder aufgefüllt.", "Service", JOptionPane.INFORMATION_MESSAGE))));
+
+        // Rückgabeknopf: Einwurf abbrechen
+        JButton btnReturn = new JButton("<html><center>↩<br>Rückgabe</center></html>");
+        btnReturn.setBackground(Color.DARK_GRAY);
+        btnReturn.setForeground(Color.WHITE);
+        btnReturn.addActionListener(e -> engine.abbrechen());
+
+        JPanel servicePanel = new JPanel(new GridLayout(2, 1, 5, 5));
+        servicePanel.setOpaque(false);
+        servicePanel.add(btnReturn);
+        servicePanel.add(btnMaint);
 
         footerPanel.add(progressBar, BorderLayout.NORTH);
         footerPanel.add(scroll, BorderLayout.CENTER);
-        footerPanel.add(btnMaint, BorderLayout.EAST);
+        footerPanel.add(servicePanel, BorderLayout.EAST);
 
         mainPanel.add(footerPanel, BorderLayout.SOUTH);
     }
@@ -207,78 +231,118 @@ public class SmartCoffeeGUI extends JFrame {
     // --- LOGIK & ANIMATION ---
 
     private void starteBestellVorgang(String typ, boolean milch, int preis) {
+        VendingEreignis zustand = engine.getZustand();
+
         // Check 1: Guthaben
-        if (wechsler.getAktuellerEinwurf() < preis) {
+        if (zustand.getEinwurf() < preis) {
             JOptionPane.showMessageDialog(this,
-                    "Zu wenig Geld! Fehlen: " + (preis - wechsler.getAktuellerEinwurf()) + " Cent.",
+                    "Zu wenig Geld! Fehlen: " + (preis - zustand.getEinwurf()) + " Cent.",
                     "Guthaben", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
         // Check 2: Maschinenstatus VOR Animation prüfen
-        String statusCheck = automat.getStatus();
-        if (statusCheck.contains("Defekt: JA")) {
+        if (zustand.isDefekt()) {
             JOptionPane.showMessageDialog(this, "Automat ist DEFEKT!\nBitte Wartung rufen (Button rechts unten).", "Fehler", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        // GUI sperren und Animation starten
-        setButtonsEnabled(false);
-        progressBar.setVisible(true);
-        progressBar.setValue(0);
-        progressBar.setString(typ + " wird zubereitet...");
-        statusLabel.setText("Verarbeite Bestellung: " + typ);
-
-        Timer timer = new Timer(25, null); // Etwas langsamer für Genuss ;)
-        timer.addActionListener(e -> {
-            int value = progressBar.getValue();
-            if (value < 100) {
-                progressBar.setValue(value + 1);
-                if(value == 15) statusLabel.setText("Mahlwerk mahlt Bohnen...");
-                if(value == 40) statusLabel.setText("Wasser wird erhitzt...");
-                if(value == 60) statusLabel.setText("Kaffee läuft...");
-                if(value == 80 && milch) statusLabel.setText("Frischer Milchschaum...");
-            } else {
-                timer.stop();
-                bestellungAbschliessen(typ, milch, preis);
+        // Kein Sperren mehr: der Auftrag wird bezahlt, eingereiht und in der Pipeline zubereitet.
+        // Weitere Bestellungen sind sofort möglich, Fortschritt und Ergebnis kommen als Ereignisse.
+        engine.auftragAufgeben(typ, milch, preis).thenAccept(ergebnis -> SwingUtilities.invokeLater(() -> {
+            if (ergebnis.getErgebnis() == null || !ergebnis.getAuftrag().isAngenommen()) {
+                JOptionPane.showMessageDialog(this, ergebnis.getNachricht(), "Problem aufgetreten", JOptionPane.ERROR_MESSAGE);
             }
-        });
-        timer.start();
+        }));
     }
 
-    private void bestellungAbschliessen(String typ, boolean milch, int preis) {
-        String ergebnis = automat.getraenkZubereiten(typ, milch, preis);
-
+    private void bestellungAbschliessen(VendingEreignis zustand) {
+        String ergebnis = zustand.getNachricht();
+        String typ = zustand.getAuftrag().getTyp();
         log("--- Bestellung: " + typ + " ---");
         log(ergebnis);
-        updateDisplay();
+        warteschlangeAnzeigen(zustand);
+        statusLabel.setText(zustand.getAuftraegeOffen() == 0 ? "Bereit für nächste Bestellung." : statusLabel.getText());
 
-        setButtonsEnabled(true);
-        progressBar.setVisible(false);
-        statusLabel.setText("Bereit für nächste Bestellung.");
-
-        if (ergebnis.contains("FEHLER") || ergebnis.contains("CRITICAL") || ergebnis.contains("nicht möglich")) {
-            JOptionPane.showMessageDialog(this, ergebnis, "Problem aufgetreten", JOptionPane.ERROR_MESSAGE);
+        if (!zustand.getErgebnis().isErfolg()) {
+            neueDialoge.add(() -> JOptionPane.showMessageDialog(this, ergebnis, "Problem aufgetreten", JOptionPane.ERROR_MESSAGE));
         } else {
             // Erfolg: Kleines Popup
-            JOptionPane.showMessageDialog(this, "Bitte entnehmen: " + typ + "\n\n" + ergebnis, "Fertig!", JOptionPane.INFORMATION_MESSAGE);
+            neueDialoge.add(() -> JOptionPane.showMessageDialog(this, "Bitte entnehmen: " + typ + "\n\n" + ergebnis, "Fertig!", JOptionPane.INFORMATION_MESSAGE));
         }
     }
 
-    private void updateDisplay() {
-        creditLabel.setText("Guthaben: " + wechsler.getAktuellerEinwurf() + " Cent");
+    // Fortschrittsbalken zeigt die Stufe des gemeldeten Auftrags und die Länge der Warteschlange
+    private void warteschlangeAnzeigen(VendingEreignis e) {
+        int offen = e.getAuftraegeOffen();
+        progressBar.setVisible(offen > 0);
+        Auftrag a = e.getAuftrag();
+        if (offen > 0 && a != null && a.getStufe() != null) {
+            int stufen = Zubereitungsstufe.values().length;
+            progressBar.setValue(100 * (a.getStufe().ordinal() + 1) / stufen);
+            progressBar.setString("#" + a.getNummer() + " " + a.getTyp() + " | " + offen + " Auftrag/Aufträge offen");
+        }
+    }
 
-        // Status String formatieren
-        String rawStatus = automat.getStatus();
-        String color = rawStatus.contains("Defekt: JA") ? "red" : "#ADD8E6";
-        String icon = rawStatus.contains("Defekt: JA") ? "⚠️ " : "✅ ";
-        String formatted = rawStatus.replace("|", "&nbsp;&nbsp;•&nbsp;&nbsp;");
+    // Alle Ereignisse seit dem letzten Bild (läuft auf dem EDT). Guthaben und Statuszeile
+    // hängen nur vom neuesten Zustand ab und werden einmal pro Bild gesetzt.
+    private void zustandAnzeigen(List<VendingEreignis> ereignisse) {
+        for (VendingEreignis e : ereignisse) {
+            ereignisAnzeigen(e);
+        }
+        updateDisplay(ereignisse.get(ereignisse.size() - 1));
+        logSchreiben();
+        // Erst jetzt: ein modaler Dialog pumpt Ereignisse, das Bild muss vorher vollständig stehen
+        List<Runnable> dialoge = new ArrayList<>(neueDialoge);
+        neueDialoge.clear();
+        for (Runnable d : dialoge) {
+            d.run();
+        }
+    }
+
+    private void ereignisAnzeigen(VendingEreignis e) {
+        switch (e.getTyp()) {
+            case MUENZE:
+                statusLabel.setText(e.getNachricht());
+                break;
+            case WARTUNG:
+            case ABBRUCH:
+            case FEHLER:
+                log(e.getNachricht());
+                break;
+            case AUFTRAG:
+                if (e.getAuftrag() != null && e.getAuftrag().isAngenommen()) log(e.getNachricht());
+                warteschlangeAnzeigen(e);
+                break;
+            case ZUBEREITUNG:
+                statusLabel.setText(e.getNachricht());
+                warteschlangeAnzeigen(e);
+                break;
+            case BESTELLUNG:
+                bestellungAbschliessen(e);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void updateDisplay(VendingEreignis zustand) {
+        creditLabel.setText("Guthaben: " + zustand.getEinwurf() + " Cent");
+
+        Automatenzustand z = zustand.getZustand();
+        if (z.equals(angezeigterZustand)) return;
+
+        String color = z.isDefekt() ? "red" : "#ADD8E6";
+        String icon = z.isDefekt() ? "⚠️ " : "✅ ";
+        String formatted = Meldungen.status(z, " &nbsp;&nbsp;•&nbsp;&nbsp; ");
 
         stockLabel.setText("<html><span style='color:" + color + "'>" + icon + formatted + "</span></html>");
 
-        // Münzschächte im Log anzeigen
-        logArea.append(wechsler.getBestandsAnzeige() + "\n");
-        logArea.setCaretPosition(logArea.getDocument().getLength());
+        // Münzschächte im Log anzeigen, wenn sich der Bestand geändert hat
+        if (!z.gleicherMuenzBestand(angezeigterZustand)) {
+            log(Meldungen.muenzbestand(z.getMuenzBestand()));
+        }
+        angezeigterZustand = z;
     }
 
     // Angepasstes Button-Design für 3 Zeilen Text (Name, Preis, Beschreibung)
@@ -314,7 +378,14 @@ public class SmartCoffeeGUI extends JFrame {
     }
 
     private void log(String text) {
-        logArea.append(text + "\n");
-        logArea.setCaretPosition(logArea.getDocument().getLength());
+        neueLogZeilen.add(text);
+    }
+
+    // Ein Modell-Ereignis und ein Scrollen pro Bild statt pro Zeile
+    private void logSchreiben() {
+        if (neueLogZeilen.isEmpty()) return;
+        logModell.anhaengen(neueLogZeilen);
+        neueLogZeilen.clear();
+        logListe.ensureIndexIsVisible(logModell.getSize() - 1);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+package de.gfn.coffee;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+// Abgleich über TCP: Rahmen {int Länge, Paket}, die Gegenseite bestätigt jedes Paket mit
+// seiner Sequenz (long). Mehrere Pakete dürfen unterwegs sein; Bestätigungen kommen in
+// Sendereihenfolge, jede muss genau zum ältesten offenen Paket passen. Bei einem Fehler oder
+// zuruecksetzen() schlagen alle offenen Pakete fehl und die Verbindung wird beim nächsten
+// senden() neu aufgebaut; späte Bestätigungen der alten Verbindung gehen damit ins Leere.
+public class Socketabgleich implements Abgleichsziel {
+    private static final int VERBINDUNGS_TIMEOUT_MS = 5000;
+
+    private final String host;
+    private final int port;
+    private Socket socket;
+    private DataOutputStream out;
+    // Gesendet, noch nicht bestätigt (Sequenz + Zukunft)
+    private final ArrayDeque<Offen> offen = new ArrayDeque<>();
+
+    public Socketabgleich(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return "socket:" + host + ":" + port;
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> senden(Abgleichsbatch batch) {
+        CompletableFuture<Void> antwort = new CompletableFuture<>();
+        try {
+            if (socket == null) verbinden();
+            byte[] daten = batch.alsBytes();
+            offen.add(new Offen(batch.getSequenz(), antwort));
+            out.writeInt(daten.length);
+            out.write(daten);
+            out.flush();
+            Metriken.zaehler("abgleich_bytes").add(daten.length);
+        } catch (IOException e) {
+            abbrechen(socket, e);
+            antwort.completeExceptionally(e);
+        }
+        return antwort;
+    }
+
+    private void verbinden() throws IOException {
+        Socket s = new Socket();
+        s.connect(new InetSocketAddress(host, port), VERBINDUNGS_TIMEOUT_MS);
+        s.setTcpNoDelay(true);
+        socket = s;
+        out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+        DataInputStream in = new DataInputStream(s.getInputStream());
+        Thread leser = new Thread(() -> bestaetigungenLesen(s, in), "abgleich-antworten");
+        leser.setDaemon(true);
+        leser.start();
+    }
+
+    private void bestaetigungenLesen(Socket s, DataInputStream in) {
+        try {
+            while (true) {
+                long sequenz = in.readLong();
+                synchronized (this) {
+                    if (s != socket) return;
+                    if (offen.isEmpty() || offen.peek().sequenz != sequenz) {
+                        throw new IOException("Unerwartete Bestätigung " + sequenz);
+                    }
+                    offen.poll().antwort.complete(null);
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                abbrechen(s, e);
+            }
+        }
+    }
+
+    // Nur für die aktuelle Verbindung; eine schon ersetzte Verbindung ändert nichts mehr
+    private void abbrechen(Socket s, IOException grund) {
+        if (s != socket) return;
+        for (Offen o : offen) {
+            o.antwort.completeExceptionally(grund);
+        }
+        offen.clear();
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException e) {
+            // Verbindung ist ohnehin verloren
+        }
+        socket = null;
+        out = null;
+    }
+
+    @Override
+    public synchronized void zuruecksetzen() {
+        abbrechen(socket, new IOException("Abgleich zurückgesetzt"));
+    }
+
+    @Override
+    public synchronized void close() {
+        abbrechen(socket, new IOException("Abgleich beendet"));
+    }
+
+    private static final class Offen {
+        final long sequenz;
+        final CompletableFuture<Void> antwort;
+
+        Offen(long sequenz, CompletableFuture<Void> antwort) {
+            this.sequenz = sequenz;
+            this.antwort = antwort;
+        }
+    }
+}
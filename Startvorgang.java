@@ -0,0 +1,162 @@
+package de.gfn.coffee;
+
+import org.sqlite.SQLiteJDBCLoader;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Kaltstart in Phasen. Die Oberfläche baut sich sofort auf dem EDT auf; SQLite-Treiber (samt
+// nativer Bibliothek), Datenbank und Automatenzustand laden parallel dazu auf Hintergrund-Threads.
+// Jede Phase wird als Zeitpunkt ab JVM-Start festgehalten (Metriken start_<phase>_ms) und beim
+// Erreichen von "bereit" als eine Zeile ausgegeben.
+final class Startvorgang implements AutoCloseable {
+    // Länger wartet das Beenden nicht auf einen hängenden Start
+    private static final long BEENDEN_WARTEN_SEKUNDEN = 10;
+    // Werden vom Aufbau der Engine gebraucht: vorab laden und initialisieren, solange der Treiber lädt
+    private static final String[] KLASSEN = {
+            "VendingEngine", "Muenzwechsler", "Kaffeeautomat", "Zahlsitzung", "OptimalesWechselgeld",
+            "MuenzJournal", "Ereignisjournal", "Automatenzustand", "Zutatenlager", "Zubereitungsplaner",
+            "SeriellerExecutor", "VendingEreignis", "Meldungen"};
+
+    // Keine Daemon-Threads: was hier entsteht (Engine-Thread, HTTP-Server) erbt das und muss den
+    // Prozess am Leben halten. Der Pool endet mit dem Start.
+    private final ExecutorService starter = Executors.newFixedThreadPool(2, r -> new Thread(r, "start"));
+    private final long beginn = System.nanoTime();
+    // Millisekunden vom Prozessstart bis main() (JVM, Klassen laden)
+    private final long vorlaufMs;
+    private final Map<String, Long> phasen = new ConcurrentHashMap<>();
+    private final CompletableFuture<String> bereit = new CompletableFuture<>();
+
+    private CompletableFuture<VendingEngine> engine;
+    private volatile Fernzugriff fernzugriff;
+
+    Startvorgang() {
+        vorlaufMs = ProcessHandle.current().info().startInstant()
+                .map(s -> Math.max(0, Duration.between(s, Instant.now()).toMillis()))
+                .orElse(0L);
+        erreicht("main");
+    }
+
+    // Startet Treiber, Datenbank, Engine und (falls konfiguriert) den Fernzugriff im Hintergrund
+    synchronized CompletableFuture<VendingEngine> starten() {
+        if (engine != null) return engine;
+        CompletableFuture<Void> treiber = CompletableFuture.runAsync(() -> schritt("treiber", Startvorgang::treiberLaden), starter);
+        CompletableFuture<Void> klassen = CompletableFuture.runAsync(() -> schritt("klassen", Startvorgang::klassenLaden), starter);
+        engine = treiber
+                .thenApply(x -> phase("datenbank", DatabaseManager::new))
+                // Ohne die Klassen geht es auch, sie dürfen den Start nur nicht verzögern
+                .thenCombine(klassen.exceptionally(e -> null), (db, x) -> db)
+                .thenApply(db -> phase("zustand", () -> new VendingEngine(db)))
+                .thenApply(e -> {
+                    try {
+                        fernzugriff = phase("fernzugriff", () -> Fernzugriff.ausSystemProperty(e));
+                    } catch (RuntimeException | Error fehler) {
+                        // Sonst liefe die Engine samt Thread und DB weiter, ohne dass sie jemand schließt
+                        e.close();
+                        throw fehler;
+                    }
+                    return e;
+                });
+        engine.whenComplete((e, fehler) -> starter.shutdown());
+        return engine;
+    }
+
+    Fernzugriff getFernzugriff() {
+        return fernzugriff;
+    }
+
+    // Ende einer Phase, die nicht hier läuft (Fenster sichtbar, Bedienung freigegeben)
+    void erreicht(String phase) {
+        long ms = vorlaufMs + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - beginn);
+        if (phasen.putIfAbsent(phase, ms) == null) {
+            Metriken.messwert("start_" + phase + "_ms", () -> ms);
+        }
+        if (phase.equals("bereit")) {
+            String zeiten = getZeiten();
+            System.out.println(zeiten);
+            bereit.complete(zeiten);
+        }
+    }
+
+    // Wird mit der Zeile der Startzeiten abgeschlossen
+    CompletableFuture<String> bereit() {
+        return bereit;
+    }
+
+    // Alle Phasen nach Zeitpunkt, z.B. "main 140 | treiber 230 | fenster 410 | ..."
+    String getZeiten() {
+        List<Map.Entry<String, Long>> sortiert = new ArrayList<>(phasen.entrySet());
+        sortiert.sort(Map.Entry.comparingByValue());
+        StringBuilder sb = new StringBuilder("Start (ms ab JVM-Start):");
+        for (Map.Entry<String, Long> e : sortiert) {
+            sb.append(' ').append(e.getKey()).append(' ').append(e.getValue()).append(" |");
+        }
+        sb.setLength(sb.length() - 2);
+        return sb.toString();
+    }
+
+    private <T> T phase(String name, Supplier<T> schritt) {
+        try {
+            return schritt.get();
+        } finally {
+            erreicht(name);
+        }
+    }
+
+    private void schritt(String name, Runnable schritt) {
+        phase(name, () -> {
+            schritt.run();
+            return null;
+        });
+    }
+
+    // Entpackt und lädt die native SQLite-Bibliothek; das ist der teuerste Teil der ersten Verbindung
+    private static void treiberLaden() {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            SQLiteJDBCLoader.initialize();
+        } catch (Exception e) {
+            // Die erste Verbindung versucht es noch einmal und meldet den Fehler selbst
+            System.err.println("SQLite-Treiber konnte nicht vorab geladen werden: " + e.getMessage());
+        }
+    }
+
+    private static void klassenLaden() {
+        ClassLoader loader = Startvorgang.class.getClassLoader();
+        for (String name : KLASSEN) {
+            try {
+                Class.forName(Startvorgang.class.getPackageName() + "." + name, true, loader);
+            } catch (ClassNotFoundException e) {
+                System.err.println("Klasse fehlt: " + name);
+            }
+        }
+    }
+
+    // Shutdown-Hook: einen laufenden Start noch abwarten, damit die DB nicht mitten im Aufbau schließt
+    @Override
+    public void close() {
+        CompletableFuture<VendingEngine> laufend;
+        synchronized (this) {
+            laufend = engine;
+        }
+        if (laufend == null) return;
+        VendingEngine e;
+        try {
+            e = laufend.get(BEENDEN_WARTEN_SEKUNDEN, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            return;
+        }
+        Fernzugriff f = fernzugriff;
+        if (f != null) f.close();
+        e.close();
+    }
+}
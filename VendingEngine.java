@@ -0,0 +1,263 @@
+package de.gfn.coffee;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Verkaufslogik ohne Oberfläche. Alle Befehle laufen nacheinander auf einem eigenen Thread
+// (ein einziger Schreiber), Kaffeeautomat und Muenzwechsler werden nur dort angefasst.
+// Nach jedem Befehl wird ein VendingEreignis an alle Listener verteilt.
+// Im Flottenbetrieb teilen sich viele Engines einen Thread-Pool, jede bleibt aber seriell.
+public class VendingEngine implements AutoCloseable {
+    // Standard: zwei Brüheinheiten; mehr Aufträge als das werden abgelehnt
+    public static final int STANDARD_BRUEHEINHEITEN = 2;
+    private static final int MAX_AUFTRAEGE = 10;
+
+    public interface Listener {
+        // Wird auf dem Engine-Thread aufgerufen; die GUI muss selbst auf den EDT wechseln
+        void ereignis(VendingEreignis ereignis);
+    }
+
+    private final String maschinenId;
+    private final DatabaseManager dbManager;
+    private final Muenzwechsler wechsler;
+    private final Kaffeeautomat automat;
+    private final Zubereitungsplaner planer;
+    // Alte Bestellungen ins Archiv (null, wenn abgeschaltet)
+    private final Archivierung archivierung;
+    // Abgleich mit der Zentrale (null, wenn nicht konfiguriert)
+    private final Abgleichsagent abgleich;
+    // Puffer für abbrechen(), nur auf dem Engine-Thread
+    private final MuenzVektor rueckgabe = new MuenzVektor();
+
+    // Nur gesetzt, wenn die Engine ihren eigenen Thread besitzt (Einzelgerät)
+    private final ExecutorService eigenerThread;
+    private final Executor befehle;
+    private final List<Listener> listener = new CopyOnWriteArrayList<>();
+    private volatile VendingEreignis zustand;
+    private volatile boolean geschlossen = false;
+
+    public VendingEngine(DatabaseManager db) {
+        this("automat", db, null);
+    }
+
+    // pool == null: eigener Engine-Thread, sonst geteilter Pool (Flotte)
+    public VendingEngine(String maschinenId, DatabaseManager db, Executor pool) {
+        this(maschinenId, db, pool, STANDARD_BRUEHEINHEITEN, 1.0);
+    }
+
+    // zeitfaktor: 1.0 = echte Zubereitungsdauer, 0 = sofort (Tests, Simulation)
+    public VendingEngine(String maschinenId, DatabaseManager db, Executor pool, int brueheinheiten, double zeitfaktor) {
+        this.maschinenId = maschinenId;
+        this.dbManager = db;
+        this.wechsler = new Muenzwechsler(db);
+        this.automat = new Kaffeeautomat(db, wechsler);
+        this.planer = new Zubereitungsplaner(brueheinheiten, zeitfaktor, new Zubereitungsplaner.Beobachter() {
+            @Override
+            public void stufeBegonnen(Auftrag auftrag) {
+                // Stufe jetzt festhalten, bis der Befehl läuft kann der Auftrag schon weiter sein
+                Zubereitungsstufe stufe = auftrag.getStufe();
+                int einheit = auftrag.getEinheit();
+                ausfuehren(() -> erzeugeEreignis(neu(VendingEreignis.Typ.ZUBEREITUNG).auftrag(auftrag).stufe(stufe, einheit)));
+            }
+
+            @Override
+            public void fertig(Auftrag auftrag) {
+                ausfuehren(() -> {
+                    automat.auftragFertigstellen(auftrag);
+                    return erzeugeEreignis(neu(VendingEreignis.Typ.BESTELLUNG).auftrag(auftrag));
+                });
+            }
+        });
+        this.archivierung = Archivierung.ausSystemProperty(db);
+        this.abgleich = Abgleichsagent.ausSystemProperty(maschinenId, db);
+        metrikenAnmelden();
+        this.eigenerThread = pool == null
+                ? Executors.newSingleThreadExecutor(r -> new Thread(r, "vending-engine"))
+                : null;
+        this.befehle = new SeriellerExecutor(pool == null ? eigenerThread : pool);
+        this.zustand = erzeugeEreignis(neu(VendingEreignis.Typ.ZUSTAND));
+    }
+
+    public String getMaschinenId() {
+        return maschinenId;
+    }
+
+    // --- BEFEHLE ---
+
+    public CompletableFuture<VendingEreignis> muenzeEinwerfen(int wertInCent) {
+        return ausfuehren(() -> {
+            wechsler.muenzeAnnehmen(wertInCent);
+            return erzeugeEreignis(neu(VendingEreignis.Typ.MUENZE).muenzwert(wertInCent));
+        });
+    }
+
+    public CompletableFuture<VendingEreignis> bestellen(String typ, boolean mitMilch, int preis) {
+        return ausfuehren(() -> {
+            Auftrag auftrag = automat.verkaufen(typ, mitMilch, preis);
+            return erzeugeEreignis(neu(VendingEreignis.Typ.BESTELLUNG).auftrag(auftrag));
+        });
+    }
+
+    // Nimmt die Bestellung sofort an (Bezahlung + Zutaten reservieren) und reiht sie ein.
+    // Das Ergebnis kommt später als BESTELLUNG-Ereignis mit demselben Auftrag an die Listener.
+    public CompletableFuture<VendingEreignis> auftragAufgeben(String typ, boolean mitMilch, int preis) {
+        return ausfuehren(() -> {
+            Auftrag auftrag = planer.getAnzahlOffen() >= MAX_AUFTRAEGE
+                    ? Auftrag.abgelehnt(typ, mitMilch, preis, Verkaufsergebnis.WARTESCHLANGE_VOLL)
+                    : automat.auftragAnnehmen(typ, mitMilch, preis);
+            if (auftrag.isAngenommen()) planer.einreihen(auftrag);
+            return erzeugeEreignis(neu(VendingEreignis.Typ.AUFTRAG).auftrag(auftrag));
+        });
+    }
+
+    public CompletableFuture<VendingEreignis> auffuellen() {
+        return ausfuehren(() -> {
+            automat.auffuellen();
+            return erzeugeEreignis(neu(VendingEreignis.Typ.WARTUNG));
+        });
+    }
+
+    public CompletableFuture<VendingEreignis> abbrechen() {
+        return ausfuehren(() -> {
+            wechsler.einwurfZurueckgeben(rueckgabe);
+            return erzeugeEreignis(neu(VendingEreignis.Typ.ABBRUCH).rueckgabe(rueckgabe));
+        });
+    }
+
+    // Zugriff auf archivierte Bestellungen (null, wenn die Archivierung abgeschaltet ist)
+    public Archivierung getArchivierung() {
+        return archivierung;
+    }
+
+    // Verkaufszähler aus der DB (liest auf dem Thread des Aufrufers, nicht auf dem Engine-Thread)
+    public Verkaufsstatistik getVerkaufsstatistik() {
+        return dbManager.ladeVerkaufsstatistik();
+    }
+
+    // Füllstand und Reichweite der Zutaten, von jedem Thread lesbar
+    public Fuellstandsprognose getFuellstandsprognose(Instant jetzt) {
+        return automat.getFuellstandsprognose(maschinenId, jetzt);
+    }
+
+    // Empfohlener Wechselgeldvorrat bis zum nächsten Service (null ohne genug Verkäufe mit Zahlungen).
+    // Liest und rechnet auf dem Thread des Aufrufers bzw. im Fork-Join-Pool, nicht auf dem Engine-Thread.
+    public Wechselgeldplaner.Empfehlung getWechselgeldempfehlung(Duration bisZumService, double ziel) {
+        Wechselgeldplaner planer = Wechselgeldplaner.ausHistorie(dbManager, wechsler.getStrategie(), Instant.now());
+        return planer == null ? null : planer.planen(bisZumService, ziel, zustand.getZustand().getMuenzBestand());
+    }
+
+    // Letzter bekannter Zustand, von jedem Thread lesbar
+    public VendingEreignis getZustand() {
+        return zustand;
+    }
+
+    public void addListener(Listener l) {
+        listener.add(l);
+    }
+
+    public void removeListener(Listener l) {
+        listener.remove(l);
+    }
+
+    // --- INTERN ---
+
+    // Füllstände und Warteschlange dieses Automaten als Messwerte (beim Schließen wieder entfernt)
+    private void metrikenAnmelden() {
+        for (Zutat z : Zutat.values()) {
+            Metriken.messwert(messwertName("zutat_gramm", z), () -> automat.getBestand(z));
+        }
+        Metriken.messwert(messwertName("auftraege_offen", null), planer::getAnzahlOffen);
+    }
+
+    private void metrikenAbmelden() {
+        for (Zutat z : Zutat.values()) {
+            Metriken.messwertEntfernen(messwertName("zutat_gramm", z));
+        }
+        Metriken.messwertEntfernen(messwertName("auftraege_offen", null));
+    }
+
+    private String messwertName(String name, Zutat zutat) {
+        return name + "{automat=\"" + maschinenId + "\"" + (zutat == null ? "" : ",zutat=\"" + zutat + "\"") + "}";
+    }
+
+    private CompletableFuture<VendingEreignis> ausfuehren(Supplier<VendingEreignis> befehl) {
+        CompletableFuture<VendingEreignis> ergebnis = new CompletableFuture<>();
+        if (geschlossen) {
+            ergebnis.completeExceptionally(new IllegalStateException("Automat " + maschinenId + " ist heruntergefahren."));
+            return ergebnis;
+        }
+        befehle.execute(() -> {
+            try {
+                VendingEreignis e;
+                try {
+                    e = befehl.get();
+                } catch (RuntimeException ex) {
+                    e = erzeugeEreignis(neu(VendingEreignis.Typ.FEHLER).fehlertext(ex.getMessage()));
+                }
+                veroeffentlichen(e);
+                ergebnis.complete(e);
+            } catch (Throwable t) {
+                // Auch bei einem Error oder einem Fehler beim Veröffentlichen darf der Aufrufer nicht ewig warten
+                ergebnis.completeExceptionally(t);
+                throw t;
+            }
+        });
+        return ergebnis;
+    }
+
+    private static VendingEreignis.Builder neu(VendingEreignis.Typ typ) {
+        return new VendingEreignis.Builder(typ);
+    }
+
+    // Ergänzt den Zustand nach dem Befehl (Einwurf, Schnappschuss des Automaten, Warteschlange)
+    private VendingEreignis erzeugeEreignis(VendingEreignis.Builder ereignis) {
+        return ereignis.zustand(wechsler.getAktuellerEinwurf(), automat.getZustand(), planer.getAnzahlOffen()).build();
+    }
+
+    private void veroeffentlichen(VendingEreignis e) {
+        zustand = e;
+        for (Listener l : listener) {
+            try {
+                l.ereignis(e);
+            } catch (RuntimeException ex) {
+                System.err.println("Listener Fehler: " + ex.getMessage());
+            }
+        }
+    }
+
+    // Ausstehende Befehle abarbeiten, dann Journal und Datenbank schließen
+    @Override
+    public void close() {
+        if (geschlossen) return;
+        // Bezahlte Aufträge in der Zubereitung noch buchen lassen
+        planer.close();
+        geschlossen = true;
+        // Marker hinter die bereits eingereihten Befehle stellen und darauf warten
+        CompletableFuture<Void> abgearbeitet = new CompletableFuture<>();
+        befehle.execute(() -> abgearbeitet.complete(null));
+        try {
+            abgearbeitet.get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Automat " + maschinenId + ": Befehle nicht vollständig abgearbeitet.");
+        }
+        metrikenAbmelden();
+        if (eigenerThread != null) eigenerThread.shutdown();
+        if (abgleich != null) abgleich.close();
+        if (archivierung != null) archivierung.close();
+        wechsler.close();
+        automat.zustandSichernBeimBeenden();
+        dbManager.close();
+    }
+}
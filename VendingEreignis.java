@@ -0,0 +1,158 @@
+package de.gfn.coffee;
+
+// Unveränderlicher Zustand nach einem Befehl der VendingEngine.
+// Wird auf dem Engine-Thread erzeugt und kann gefahrlos an die GUI weitergereicht werden.
+// Enthält nur Daten; den Anzeigetext baut Meldungen erst, wenn getNachricht() gefragt wird.
+public final class VendingEreignis {
+
+    public enum Typ {
+        ZUSTAND,     // Startzustand / reine Aktualisierung
+        MUENZE,      // Münze angenommen
+        BESTELLUNG,  // Bestellung verarbeitet (erfolgreich oder nicht)
+        AUFTRAG,     // Auftrag in die Warteschlange aufgenommen oder abgelehnt
+        ZUBEREITUNG, // Auftrag hat eine neue Zubereitungsstufe erreicht
+        WARTUNG,     // Automat aufgefüllt
+        ABBRUCH,     // Einwurf zurückgegeben
+        FEHLER       // Befehl konnte nicht ausgeführt werden
+    }
+
+    private final Typ typ;
+    private final int einwurf;
+    private final Automatenzustand zustand;
+    // Nur bei AUFTRAG, ZUBEREITUNG und BESTELLUNG gesetzt
+    private final Auftrag auftrag;
+    private final Verkaufsergebnis ergebnis;
+    private final int auftraegeOffen;
+    // Stufe und Brüheinheit zum Zeitpunkt des ZUBEREITUNG-Ereignisses
+    private final Zubereitungsstufe stufe;
+    private final int einheit;
+    private final int muenzwert;
+    private final MuenzVektor rueckgabe;
+    private final String fehlertext;
+
+    private VendingEreignis(Builder b) {
+        this.typ = b.typ;
+        this.einwurf = b.einwurf;
+        this.zustand = b.zustand;
+        this.auftrag = b.auftrag;
+        this.ergebnis = b.auftrag == null ? null : b.auftrag.getErgebnis();
+        this.auftraegeOffen = b.auftraegeOffen;
+        this.stufe = b.stufe;
+        this.einheit = b.einheit;
+        this.muenzwert = b.muenzwert;
+        this.rueckgabe = b.rueckgabe;
+        this.fehlertext = b.fehlertext;
+    }
+
+    public Typ getTyp() {
+        return typ;
+    }
+
+    // Ergebnis des Auftrags beim Erzeugen des Ereignisses (null ohne Auftrag).
+    // Bei AUFTRAG heißt ERFOLG: angenommen und eingereiht.
+    public Verkaufsergebnis getErgebnis() {
+        return ergebnis;
+    }
+
+    public String getNachricht() {
+        return Meldungen.ereignis(this);
+    }
+
+    public int getEinwurf() {
+        return einwurf;
+    }
+
+    public Automatenzustand getZustand() {
+        return zustand;
+    }
+
+    public boolean isDefekt() {
+        return zustand.isDefekt();
+    }
+
+    // null, wenn das Ereignis keinen Auftrag betrifft
+    public Auftrag getAuftrag() {
+        return auftrag;
+    }
+
+    // Wartende und in Zubereitung befindliche Aufträge zum Zeitpunkt des Ereignisses
+    public int getAuftraegeOffen() {
+        return auftraegeOffen;
+    }
+
+    public Zubereitungsstufe getStufe() {
+        return stufe;
+    }
+
+    public int getEinheit() {
+        return einheit;
+    }
+
+    // Wert der eingeworfenen Münze (MUENZE)
+    public int getMuenzwert() {
+        return muenzwert;
+    }
+
+    // Zurückgegebene Münzen (ABBRUCH), nur lesen
+    public MuenzVektor getRueckgabe() {
+        return rueckgabe;
+    }
+
+    public String getFehlertext() {
+        return fehlertext;
+    }
+
+    static final class Builder {
+        private final Typ typ;
+        private int einwurf;
+        private Automatenzustand zustand;
+        private Auftrag auftrag;
+        private int auftraegeOffen;
+        private Zubereitungsstufe stufe;
+        private int einheit = -1;
+        private int muenzwert;
+        private MuenzVektor rueckgabe;
+        private String fehlertext;
+
+        Builder(Typ typ) {
+            this.typ = typ;
+        }
+
+        Builder zustand(int einwurf, Automatenzustand zustand, int auftraegeOffen) {
+            this.einwurf = einwurf;
+            this.zustand = zustand;
+            this.auftraegeOffen = auftraegeOffen;
+            return this;
+        }
+
+        Builder auftrag(Auftrag auftrag) {
+            this.auftrag = auftrag;
+            return this;
+        }
+
+        Builder stufe(Zubereitungsstufe stufe, int einheit) {
+            this.stufe = stufe;
+            this.einheit = einheit;
+            return this;
+        }
+
+        Builder muenzwert(int muenzwert) {
+            this.muenzwert = muenzwert;
+            return this;
+        }
+
+        Builder rueckgabe(MuenzVektor rueckgabe) {
+            this.rueckgabe = new MuenzVektor(rueckgabe);
+            return this;
+        }
+
+        Builder fehlertext(String fehlertext) {
+            this.fehlertext = fehlertext;
+            return this;
+        }
+
+        VendingEreignis build() {
+            return new VendingEreignis(this);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package de.gfn.coffee;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Hält eine kleine Menge dauerhaft offener SQLite-Verbindungen.
+// Jede Verbindung cached ihre PreparedStatements, damit SQL nur einmal vorbereitet wird.
+public class VerbindungsPool implements AutoCloseable {
+    private static final long WARTEZEIT_MS = 5000;
+    // Ausleihen, die länger dauern, werden mit Operation und Dauer auf stderr gemeldet
+    private static final long LANGSAM_NS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final Latenzhistogramm POOL_WARTEZEIT = Metriken.histogramm("db_pool_warten");
+    // Histogramm pro Operation, ohne String-Verkettung bei jedem Aufruf
+    private static final Map<String, Latenzhistogramm> MESSUNGEN = new ConcurrentHashMap<>();
+
+    // Pragmas für SD-Karten: WAL statt Rollback-Journal, fsync nur an Checkpoints
+    private static final String[] PRAGMAS = {
+            "PRAGMA journal_mode=WAL",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA busy_timeout=5000",
+            "PRAGMA temp_store=MEMORY",
+            "PRAGMA cache_size=-2000",
+            "PRAGMA foreign_keys=ON"
+    };
+
+    private final String url;
+    private final BlockingQueue<Verbindung> frei;
+    private volatile boolean geschlossen = false;
+
+    public VerbindungsPool(String url, int groesse) throws SQLException {
+        this.url = url;
+        this.frei = new ArrayBlockingQueue<>(groesse);
+        try {
+            // Verbindungen sofort "warm" öffnen, nicht erst beim ersten Verkauf
+            for (int i = 0; i < groesse; i++) {
+                frei.add(new Verbindung(oeffnen()));
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private Connection oeffnen() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : PRAGMAS) {
+                stmt.execute(pragma);
+            }
+        }
+        return conn;
+    }
+
+    // Leiht eine Verbindung aus; Rückgabe erfolgt über close() (try-with-resources).
+    // Die Zeit bis zur Rückgabe landet im Histogramm db_<operation>.
+    public Verbindung ausleihen(String operation) throws SQLException {
+        if (geschlossen) throw new SQLException("Verbindungspool ist geschlossen.");
+        long beginn = System.nanoTime();
+        try {
+            Verbindung v = frei.poll(WARTEZEIT_MS, TimeUnit.MILLISECONDS);
+            POOL_WARTEZEIT.erfassenSeit(beginn);
+            if (v == null) throw new SQLException("Keine freie DB-Verbindung nach " + WARTEZEIT_MS + " ms.");
+            v.operation = operation;
+            v.messung = MESSUNGEN.computeIfAbsent(operation, op -> Metriken.histogramm("db_" + op));
+            v.beginn = beginn;
+            return v;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Warten auf DB-Verbindung unterbrochen.", e);
+        }
+    }
+
+    private void zurueckgeben(Verbindung v) {
+        long dauer = System.nanoTime() - v.beginn;
+        v.messung.erfassen(dauer);
+        if (dauer > LANGSAM_NS) {
+            System.err.println("DB langsam: " + v.operation + " " + TimeUnit.NANOSECONDS.toMillis(dauer) + " ms");
+        }
+        try {
+            // Eine abgebrochene Transaktion darf nicht beim nächsten Nutzer weiterleben
+            if (!v.conn.getAutoCommit()) {
+                v.conn.rollback();
+                v.conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("DB Pool Fehler beim Zurückgeben: " + e.getMessage());
+        }
+        if (geschlossen) {
+            v.schliessen();
+        } else {
+            frei.offer(v);
+        }
+    }
+
+    @Override
+    public void close() {
+        geschlossen = true;
+        // Ausgeliehene Verbindungen werden bei ihrer Rückgabe geschlossen
+        Verbindung v;
+        while ((v = frei.poll()) != null) {
+            v.schliessen();
+        }
+    }
+
+    // Eine ausgeliehene Verbindung mit eigenem Statement-Cache
+    public class Verbindung implements AutoCloseable {
+        private final Connection conn;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final Map<String, PreparedStatement> statementsMitSchluessel = new HashMap<>();
+        // Nur während der Ausleihe gültig
+        private String operation;
+        private Latenzhistogramm messung;
+        private long beginn;
+
+        private Verbindung(Connection conn) {
+            this.conn = conn;
+        }
+
+        public Connection getConnection() {
+            return conn;
+        }
+
+        public PreparedStatement vorbereiten(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = conn.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        public PreparedStatement vorbereitenMitSchluessel(String sql) throws SQLException {
+            PreparedStatement ps = statementsMitSchluessel.get(sql);
+            if (ps == null) {
+                ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                statementsMitSchluessel.put(sql, ps);
+            }
+            return ps;
+        }
+
+        @Override
+        public void close() {
+            zurueckgeben(this);
+        }
+
+        private void schliessen() {
+            schliessen(statements);
+            schliessen(statementsMitSchluessel);
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("DB Pool Fehler beim Schließen: " + e.getMessage());
+            }
+        }
+
+        private void schliessen(Map<String, PreparedStatement> cache) {
+            for (PreparedStatement ps : cache.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            cache.clear();
+        }
+    }
+}
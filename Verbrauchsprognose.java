@@ -0,0 +1,56 @@
+package de.gfn.coffee;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Verbrauchsrate pro Zutat über ein gleitendes Fenster der letzten Stunden.
+// Ein Ring aus Minuten-Buckets; ein Bucket gilt nur, solange seine Minute im Fenster liegt,
+// alte Buckets werden beim nächsten Schreiben überschrieben. Beim Start wird das Fenster
+// aus den Minuten-Rollups der Bestellhistorie gefüllt.
+// Nicht threadsicher: gehört zum Zutatenlager und wird nur unter dessen Sperre benutzt.
+final class Verbrauchsprognose {
+    static final int FENSTER_MINUTEN = 240;
+    private static final long MINUTE_MS = 60_000;
+
+    // minute[b]: Epoch-Minute des Buckets b, verbrauch[z][b]: Gramm der Zutat z in dieser Minute
+    private final long[] minute = new long[FENSTER_MINUTEN];
+    private final long[][] verbrauch = new long[Zutat.values().length][FENSTER_MINUTEN];
+
+    Verbrauchsprognose() {
+        Arrays.fill(minute, Long.MIN_VALUE);
+    }
+
+    void erfassen(Rezept rezept, long anzahl, long zeitMs) {
+        long m = Math.floorDiv(zeitMs, MINUTE_MS);
+        int b = Math.floorMod(m, FENSTER_MINUTEN);
+        if (minute[b] != m) {
+            if (minute[b] > m) return; // älter als das Fenster
+            minute[b] = m;
+            for (long[] z : verbrauch) z[b] = 0;
+        }
+        for (Zutat z : Zutat.values()) {
+            verbrauch[z.ordinal()][b] += rezept.getMenge(z) * anzahl;
+        }
+    }
+
+    // Minuten-Rollups aus der DB (Kaffeeart, Tassen, davon mit Milch)
+    void nachtragen(List<Verkaufsintervall> verlauf) {
+        for (Verkaufsintervall i : verlauf) {
+            long zeitMs = i.getBeginn().toEpochMilli();
+            long mitMilch = i.getMitMilch();
+            if (mitMilch > 0) erfassen(Rezept.fuer(i.getKaffeeArt(), true), mitMilch, zeitMs);
+            if (i.getTassen() > mitMilch) erfassen(Rezept.fuer(i.getKaffeeArt(), false), i.getTassen() - mitMilch, zeitMs);
+        }
+    }
+
+    // Gramm pro Stunde im Fenster, das mit der Minute von jetztMs endet
+    double rateProStunde(Zutat zutat, long jetztMs) {
+        long bis = Math.floorDiv(jetztMs, MINUTE_MS);
+        long summe = 0;
+        long[] z = verbrauch[zutat.ordinal()];
+        for (int b = 0; b < FENSTER_MINUTEN; b++) {
+            if (minute[b] > bis - FENSTER_MINUTEN && minute[b] <= bis) summe += z[b];
+        }
+        return summe * 60.0 / FENSTER_MINUTEN;
+    }
+}
@@ -0,0 +1,128 @@
+package de.gfn.coffee;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Sammelt alles, was zu einem Verkauf gehört (Bestellung, Zahlungen, Münzbestand-Änderungen),
+// und schreibt es beim Abschließen in genau einer Transaktion in die Datenbank.
+public class Verkaufsbuchung {
+    private final DatabaseManager dbManager;
+
+    private boolean mitBestellung = false;
+    private String kaffeeArt;
+    private boolean mitMilch;
+    private int preis;
+
+    private final MuenzVektor zahlungen = new MuenzVektor();
+    private final MuenzVektor muenzAenderungen = new MuenzVektor();
+
+    // Sequenz des Münzjournal-Abschnitts, der mit dieser Buchung festgeschrieben wird
+    private long journalSequenz = -1;
+    // Bis zu dieser Position ist das Ereignislog nach dieser Buchung verdichtet
+    private long ereignisPosition = -1;
+    // Verkaufszeitpunkt (Epoch-Millisekunden), -1 = Zeitpunkt des Commits
+    private long zeitstempel = -1;
+    // Zusätzliche Zählerstände (z.B. Wartungen, Defekte)
+    private final Map<String, Long> zaehler = new HashMap<>();
+
+    private int bestellungId = -1;
+    private boolean abgeschlossen = false;
+
+    Verkaufsbuchung(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    public Verkaufsbuchung bestellung(String kaffeeArt, boolean mitMilch, int preis) {
+        this.mitBestellung = true;
+        this.kaffeeArt = kaffeeArt;
+        this.mitMilch = mitMilch;
+        this.preis = preis;
+        return this;
+    }
+
+    public Verkaufsbuchung zahlung(MuenzVektor eingeworfen) {
+        zahlungen.addieren(eingeworfen);
+        return this;
+    }
+
+    // Relative Änderung des Münzbestands (+ eingeworfen, - als Wechselgeld ausgegeben)
+    public Verkaufsbuchung muenzAenderungen(MuenzVektor deltas) {
+        muenzAenderungen.addieren(deltas);
+        return this;
+    }
+
+    public Verkaufsbuchung journalSequenz(long sequenz) {
+        this.journalSequenz = sequenz;
+        return this;
+    }
+
+    public Verkaufsbuchung ereignisPosition(long position) {
+        this.ereignisPosition = position;
+        return this;
+    }
+
+    // Tatsächlicher Verkaufszeitpunkt, wenn die Buchung erst später geschrieben wird
+    public Verkaufsbuchung zeitstempel(long epochMillis) {
+        this.zeitstempel = epochMillis;
+        return this;
+    }
+
+    public Verkaufsbuchung zaehler(String schluessel, long delta) {
+        if (delta != 0) zaehler.merge(schluessel, delta, Long::sum);
+        return this;
+    }
+
+    // Schreibt die Buchung atomar. Liefert false, wenn die Transaktion zurückgerollt wurde.
+    public boolean abschliessen() {
+        if (abgeschlossen) throw new IllegalStateException("Verkaufsbuchung wurde bereits abgeschlossen.");
+        abgeschlossen = true;
+        if (!mitBestellung && muenzAenderungen.istLeer() && journalSequenz < 0
+                && ereignisPosition < 0 && zaehler.isEmpty()) return true;
+        bestellungId = dbManager.verkaufBuchen(this);
+        return bestellungId >= 0;
+    }
+
+    public int getBestellungId() {
+        return bestellungId;
+    }
+
+    boolean hatBestellung() {
+        return mitBestellung;
+    }
+
+    String getKaffeeArt() {
+        return kaffeeArt;
+    }
+
+    boolean isMitMilch() {
+        return mitMilch;
+    }
+
+    int getPreis() {
+        return preis;
+    }
+
+    MuenzVektor getZahlungen() {
+        return zahlungen;
+    }
+
+    MuenzVektor getMuenzAenderungen() {
+        return muenzAenderungen;
+    }
+
+    long getJournalSequenz() {
+        return journalSequenz;
+    }
+
+    long getEreignisPosition() {
+        return ereignisPosition;
+    }
+
+    long getZeitstempel() {
+        return zeitstempel;
+    }
+
+    Map<String, Long> getZaehler() {
+        return zaehler;
+    }
+}
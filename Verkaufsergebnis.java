@@ -0,0 +1,16 @@
+package de.gfn.coffee;
+
+// Ergebnis einer Zahlung bzw. eines Verkaufs. Texte dazu gibt es nur in Meldungen (Anzeige).
+public enum Verkaufsergebnis {
+    ERFOLG,
+    ZU_WENIG_GELD,
+    WECHSELGELD_NICHT_MOEGLICH,
+    ZUTATEN_FEHLEN,
+    AUSSER_BETRIEB,  // Automat war schon vor der Bestellung defekt
+    DEFEKT,          // Mahlwerk während der Zubereitung ausgefallen
+    WARTESCHLANGE_VOLL;
+
+    public boolean isErfolg() {
+        return this == ERFOLG;
+    }
+}
@@ -0,0 +1,651 @@
+package de.gfn.coffee;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+// Export der Bestellungen mit Zahlungen für die Buchhaltung, als CSV oder kompaktes Spaltenformat.
+// Die live DB wird seitenweise über einen Vorwärts-Cursor gelesen, Archivdateien satzweise; beide
+// Quellen werden nach ID zusammengeführt. Der Speicherbedarf hängt nicht von der Anzahl der
+// Bestellungen ab. Ein abgebrochener Export wird mit fortsetzen() an derselben Datei weitergeführt.
+public class Verkaufsexport {
+
+    public enum Format {
+        // Semikolon-getrennt, eine Zeile pro Bestellung, Münzen als Spalten
+        CSV(".csv"),
+        // Blöcke zu je 4096 Bestellungen, Spalten delta- und varint-kodiert
+        SPALTEN(".scx");
+
+        private final String endung;
+
+        Format(String endung) {
+            this.endung = endung;
+        }
+
+        public String getEndung() {
+            return endung;
+        }
+    }
+
+    private static final int SEITE = 2000;      // Bestellungen pro DB-Abruf, dazwischen ist die Verbindung frei
+    private static final int PUFFER = 1 << 18;  // Schreibpuffer 256 KB
+    private static final int BLOCK = 4096;      // Bestellungen pro Spaltenblock
+
+    // Spaltenformat: Dateikopf, dann Blöcke mit Kopf {Kennung, Anzahl, Länge, letzte ID}
+    private static final int DATEI_KENNUNG = 0x53435831; // "SCX1"
+    private static final int BLOCK_KENNUNG = 0x424C4B31; // "BLK1"
+    private static final int BLOCK_KOPF = 20;
+
+    private static final byte[] CSV_KOPF;
+
+    static {
+        StringBuilder sb = new StringBuilder("ID;Zeitstempel_UTC;Kaffeeart;Mit_Milch;Preis_Cent");
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            sb.append(";Muenzen_").append(MuenzVektor.wert(i));
+        }
+        CSV_KOPF = sb.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private final DatabaseManager dbManager;
+    private final Archivierung archiv;
+
+    // archiv == null: nur die Bestellungen in der live DB
+    public Verkaufsexport(DatabaseManager db, Archivierung archiv) {
+        this.dbManager = db;
+        this.archiv = archiv;
+    }
+
+    // Schreibt alle Bestellungen aus [von, bis) mit ID > nachId in eine neue Datei.
+    // Liefert die letzte exportierte ID (nachId, wenn nichts exportiert wurde).
+    public long exportieren(Path datei, Format format, Instant von, Instant bis, long nachId) throws IOException {
+        try (FileChannel kanal = FileChannel.open(datei, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return schreiben(kanal, format, true, von, bis, nachId);
+        }
+    }
+
+    // Setzt einen Export fort: ein halb geschriebener Satz am Ende wird abgeschnitten,
+    // danach wird ab der letzten vollständigen ID angehängt. Ohne Datei wie exportieren().
+    public long fortsetzen(Path datei, Format format, Instant von, Instant bis) throws IOException {
+        if (!Files.exists(datei) || Files.size(datei) == 0) {
+            return exportieren(datei, format, von, bis, 0);
+        }
+        long letzteId;
+        try (FileChannel kanal = FileChannel.open(datei, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            letzteId = format == Format.CSV ? csvReparieren(kanal) : spaltenReparieren(kanal);
+            if (letzteId >= 0) {
+                kanal.position(kanal.size());
+                return schreiben(kanal, format, false, von, bis, letzteId);
+            }
+        }
+        // Nicht einmal der Dateikopf ist vollständig: neu beginnen
+        return exportieren(datei, format, von, bis, 0);
+    }
+
+    private long schreiben(FileChannel kanal, Format format, boolean neu, Instant von, Instant bis, long nachId) throws IOException {
+        Ausgabe aus = new Ausgabe(kanal);
+        Kodierer kodierer = format == Format.CSV ? new CsvKodierer(aus) : new SpaltenKodierer(aus);
+        if (neu) kodierer.kopf();
+
+        long letzteId = nachId;
+        long anzahl = 0;
+        // Keine Archivierung während des Exports, sonst könnten Zeilen zwischen DB und Archiv verschwinden
+        Object sperre = archiv != null ? archiv : this;
+        synchronized (sperre) {
+            try (Zusammenfuehrung quellen = new Zusammenfuehrung(quellenOeffnen(von, bis, nachId))) {
+                Bestellsatz satz;
+                while ((satz = quellen.naechster()) != null) {
+                    kodierer.satz(satz);
+                    letzteId = satz.getId();
+                    anzahl++;
+                }
+            }
+            kodierer.ende();
+            aus.leeren();
+        }
+        Metriken.zaehler("export_bestellungen").add(anzahl);
+        return letzteId;
+    }
+
+    private List<Quelle> quellenOeffnen(Instant von, Instant bis, long nachId) throws IOException {
+        List<Quelle> quellen = new ArrayList<>();
+        try {
+            if (archiv != null) {
+                for (Archivdatei a : archiv.dateien(von, bis, nachId)) {
+                    Archivierung.Archivleser leser = archiv.oeffnen(a, von, bis, nachId);
+                    quellen.add(new Quelle() {
+                        @Override
+                        public Bestellsatz naechster() throws IOException {
+                            return leser.naechster();
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            leser.close();
+                        }
+                    });
+                }
+            }
+            quellen.add(new DbQuelle(von, bis, nachId, dbManager.ladeHoechsteBestellungId()));
+            return quellen;
+        } catch (IOException e) {
+            for (Quelle q : quellen) q.close();
+            throw e;
+        }
+    }
+
+    // --- QUELLEN ---
+
+    // Liefert Bestellungen aufsteigend nach ID, null am Ende
+    private interface Quelle extends Closeable {
+        Bestellsatz naechster() throws IOException;
+    }
+
+    // Live DB in Seiten zu SEITE Bestellungen; bisId legt das Ende beim Start fest
+    private final class DbQuelle implements Quelle {
+        private final ArrayDeque<Bestellsatz> seite = new ArrayDeque<>(SEITE);
+        private final Instant von;
+        private final Instant bis;
+        private final long bisId;
+        private long letzteId;
+        private boolean fertig = false;
+
+        DbQuelle(Instant von, Instant bis, long nachId, long bisId) {
+            this.von = von;
+            this.bis = bis;
+            this.letzteId = nachId;
+            this.bisId = bisId;
+        }
+
+        @Override
+        public Bestellsatz naechster() throws IOException {
+            if (seite.isEmpty() && !fertig) {
+                long vorher = letzteId;
+                letzteId = dbManager.bestellungenLesen(von, bis, letzteId, bisId, SEITE, seite::add);
+                // Kein stilles Ende bei einem DB-Fehler, sonst fehlen Bestellungen im Export
+                if (letzteId < 0) throw new IOException("DB-Fehler beim Export nach ID " + vorher);
+                fertig = letzteId == vorher;
+            }
+            return seite.poll();
+        }
+
+        @Override
+        public void close() {
+            seite.clear();
+        }
+    }
+
+    // Mischt mehrere aufsteigend sortierte Quellen (Archivteile können sich mit der DB überschneiden)
+    private static final class Zusammenfuehrung implements Closeable {
+        private final List<Quelle> quellen;
+        private final PriorityQueue<Kopf> koepfe = new PriorityQueue<>((a, b) -> Long.compare(a.satz.getId(), b.satz.getId()));
+
+        Zusammenfuehrung(List<Quelle> quellen) throws IOException {
+            this.quellen = quellen;
+            for (Quelle q : quellen) {
+                Bestellsatz erster = q.naechster();
+                if (erster != null) koepfe.add(new Kopf(q, erster));
+            }
+        }
+
+        Bestellsatz naechster() throws IOException {
+            Kopf kopf = koepfe.poll();
+            if (kopf == null) return null;
+            Bestellsatz satz = kopf.satz;
+            kopf.satz = kopf.quelle.naechster();
+            if (kopf.satz != null) koepfe.add(kopf);
+            return satz;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Quelle q : quellen) q.close();
+        }
+
+        private static final class Kopf {
+            final Quelle quelle;
+            Bestellsatz satz;
+
+            Kopf(Quelle quelle, Bestellsatz satz) {
+                this.quelle = quelle;
+                this.satz = satz;
+            }
+        }
+    }
+
+    // --- AUSGABE ---
+
+    // Gepufferter Schreibzugriff auf den Kanal (ein direkter Puffer, wird immer wiederverwendet)
+    private static final class Ausgabe {
+        private final FileChannel kanal;
+        private final ByteBuffer puffer = ByteBuffer.allocateDirect(PUFFER);
+
+        Ausgabe(FileChannel kanal) {
+            this.kanal = kanal;
+        }
+
+        void platz(int bytes) throws IOException {
+            if (puffer.remaining() < bytes) leeren();
+        }
+
+        void put(byte b) throws IOException {
+            if (!puffer.hasRemaining()) leeren();
+            puffer.put(b);
+        }
+
+        void put(byte[] daten, int von, int laenge) throws IOException {
+            while (laenge > 0) {
+                if (!puffer.hasRemaining()) leeren();
+                int n = Math.min(laenge, puffer.remaining());
+                puffer.put(daten, von, n);
+                von += n;
+                laenge -= n;
+            }
+        }
+
+        void putInt(int wert) throws IOException {
+            platz(4);
+            puffer.putInt(wert);
+        }
+
+        void putLong(long wert) throws IOException {
+            platz(8);
+            puffer.putLong(wert);
+        }
+
+        void leeren() throws IOException {
+            puffer.flip();
+            while (puffer.hasRemaining()) {
+                kanal.write(puffer);
+            }
+            puffer.clear();
+        }
+    }
+
+    private interface Kodierer {
+        void kopf() throws IOException;
+
+        void satz(Bestellsatz b) throws IOException;
+
+        void ende() throws IOException;
+    }
+
+    // --- CSV ---
+
+    private static final class CsvKodierer implements Kodierer {
+        private final Ausgabe aus;
+        private final byte[] zahl = new byte[20];
+        // Datumsteil wird nur bei Tageswechsel neu formatiert
+        private long tag = Long.MIN_VALUE;
+        private byte[] datum;
+
+        CsvKodierer(Ausgabe aus) {
+            this.aus = aus;
+        }
+
+        @Override
+        public void kopf() throws IOException {
+            aus.put(CSV_KOPF, 0, CSV_KOPF.length);
+        }
+
+        @Override
+        public void satz(Bestellsatz b) throws IOException {
+            zahl(b.getId());
+            aus.put((byte) ';');
+            zeitstempel(b.getZeitstempel());
+            aus.put((byte) ';');
+            if (b.getKaffeeArt() != null) text(b.getKaffeeArt());
+            aus.put((byte) ';');
+            aus.put((byte) (b.isMitMilch() ? '1' : '0'));
+            aus.put((byte) ';');
+            zahl(b.getPreis());
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                aus.put((byte) ';');
+                zahl(b.getZahlungen().get(i));
+            }
+            aus.put((byte) '\n');
+        }
+
+        @Override
+        public void ende() {
+        }
+
+        private void zahl(long wert) throws IOException {
+            if (wert < 0) {
+                aus.put((byte) '-');
+                wert = -wert;
+            }
+            int pos = zahl.length;
+            do {
+                zahl[--pos] = (byte) ('0' + wert % 10);
+                wert /= 10;
+            } while (wert > 0);
+            aus.put(zahl, pos, zahl.length - pos);
+        }
+
+        // yyyy-MM-dd HH:mm:ss (UTC)
+        private void zeitstempel(long epochSekunde) throws IOException {
+            long t = Math.floorDiv(epochSekunde, 86400L);
+            if (t != tag) {
+                tag = t;
+                datum = (LocalDate.ofEpochDay(t) + " ").getBytes(StandardCharsets.US_ASCII);
+            }
+            aus.put(datum, 0, datum.length);
+            int s = (int) Math.floorMod(epochSekunde, 86400L);
+            zweistellig(s / 3600);
+            aus.put((byte) ':');
+            zweistellig(s / 60 % 60);
+            aus.put((byte) ':');
+            zweistellig(s % 60);
+        }
+
+        private void zweistellig(int wert) throws IOException {
+            aus.put((byte) ('0' + wert / 10));
+            aus.put((byte) ('0' + wert % 10));
+        }
+
+        // In Anführungszeichen nur, wenn nötig
+        private void text(String s) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < s.length() && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ';' || c == '"' || c == '\n' || c == '\r';
+            }
+            byte[] daten = (quote ? '"' + s.replace("\"", "\"\"") + '"' : s).getBytes(StandardCharsets.UTF_8);
+            aus.put(daten, 0, daten.length);
+        }
+    }
+
+    // Schneidet einen unvollständigen letzten Satz ab und liefert die ID des letzten Satzes (0 ohne Sätze,
+    // -1 ohne vollständige Kopfzeile). Ein Zeilenumbruch in Anführungszeichen gehört zum Feld; ob er
+    // das tut, steht erst fest, wenn die Anführungszeichen ab Dateianfang mitgezählt sind.
+    private static long csvReparieren(FileChannel kanal) throws IOException {
+        ByteBuffer puffer = ByteBuffer.allocate(1 << 16);
+        byte[] b = puffer.array();
+        boolean inQuote = false;
+        long satzAnfang = 0;  // Anfang des letzten vollständigen Satzes
+        long ende = -1;       // hinter dem letzten Zeilenende außerhalb von Anführungszeichen
+        long pos = 0;
+        int n;
+        while ((n = kanal.read(puffer.clear(), pos)) > 0) {
+            for (int i = 0; i < n; i++) {
+                if (b[i] == '"') {
+                    inQuote = !inQuote;
+                } else if (b[i] == '\n' && !inQuote) {
+                    satzAnfang = Math.max(ende, 0);
+                    ende = pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        if (ende < 0) return -1;
+        kanal.truncate(ende);
+        if (satzAnfang == 0) return 0; // nur die Kopfzeile
+        int gelesen = kanal.read(puffer.clear().limit(20), satzAnfang);
+        long id = 0;
+        int i = 0;
+        while (i < gelesen && b[i] >= '0' && b[i] <= '9') {
+            id = id * 10 + (b[i] - '0');
+            i++;
+        }
+        if (i == 0) throw new IOException("Exportdatei: Satz ohne ID bei Byte " + satzAnfang);
+        return id;
+    }
+
+    // --- SPALTENFORMAT ---
+
+    // Pro Block: IDs und Zeitstempel als Delta, Kaffeeart als Wörterbuch-Index, Milch als Bits,
+    // Preis und Münzanzahlen als varint. Ein Block wird erst komplett gepuffert, dann geschrieben.
+    private static final class SpaltenKodierer implements Kodierer {
+        private final Ausgabe aus;
+        private final long[] ids = new long[BLOCK];
+        private final long[] zeiten = new long[BLOCK];
+        private final int[] arten = new int[BLOCK];
+        private final boolean[] milch = new boolean[BLOCK];
+        private final int[] preise = new int[BLOCK];
+        private final int[][] muenzen = new int[MuenzVektor.SCHAECHTE][BLOCK];
+        private final Map<String, Integer> woerterbuch = new HashMap<>();
+        private final List<String> woerter = new ArrayList<>();
+        private final Bytes block = new Bytes(BLOCK * 48);
+        private int anzahl = 0;
+
+        SpaltenKodierer(Ausgabe aus) {
+            this.aus = aus;
+        }
+
+        @Override
+        public void kopf() throws IOException {
+            aus.putInt(DATEI_KENNUNG);
+        }
+
+        @Override
+        public void satz(Bestellsatz b) throws IOException {
+            ids[anzahl] = b.getId();
+            zeiten[anzahl] = b.getZeitstempel();
+            // 0 = keine Kaffeeart, sonst Index + 1
+            arten[anzahl] = b.getKaffeeArt() == null ? 0 : woerterbuch.computeIfAbsent(b.getKaffeeArt(), w -> {
+                woerter.add(w);
+                return woerter.size();
+            });
+            milch[anzahl] = b.isMitMilch();
+            preise[anzahl] = b.getPreis();
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                muenzen[i][anzahl] = b.getZahlungen().get(i);
+            }
+            if (++anzahl == BLOCK) ende();
+        }
+
+        @Override
+        public void ende() throws IOException {
+            if (anzahl == 0) return;
+            block.laenge = 0;
+            long vorher = 0;
+            for (int i = 0; i < anzahl; i++) {
+                block.varLong(ids[i] - vorher);
+                vorher = ids[i];
+            }
+            vorher = 0;
+            for (int i = 0; i < anzahl; i++) {
+                block.varLong(zickzack(zeiten[i] - vorher));
+                vorher = zeiten[i];
+            }
+            block.varLong(woerter.size());
+            for (String w : woerter) {
+                byte[] daten = w.getBytes(StandardCharsets.UTF_8);
+                block.varLong(daten.length);
+                block.bytes(daten);
+            }
+            for (int i = 0; i < anzahl; i++) {
+                block.varLong(arten[i]);
+            }
+            for (int i = 0; i < anzahl; i += 8) {
+                int bits = 0;
+                for (int j = i; j < Math.min(i + 8, anzahl); j++) {
+                    if (milch[j]) bits |= 1 << (j - i);
+                }
+                block.byteWert(bits);
+            }
+            for (int i = 0; i < anzahl; i++) {
+                block.varLong(zickzack(preise[i]));
+            }
+            for (int[] schacht : muenzen) {
+                for (int i = 0; i < anzahl; i++) {
+                    block.varLong(zickzack(schacht[i]));
+                }
+            }
+
+            aus.putInt(BLOCK_KENNUNG);
+            aus.putInt(anzahl);
+            aus.putInt(block.laenge);
+            aus.putLong(ids[anzahl - 1]);
+            aus.put(block.daten, 0, block.laenge);
+            anzahl = 0;
+            woerterbuch.clear();
+            woerter.clear();
+        }
+    }
+
+    private static long zickzack(long wert) {
+        return (wert << 1) ^ (wert >> 63);
+    }
+
+    private static long zurueckZickzack(long wert) {
+        return (wert >>> 1) ^ -(wert & 1);
+    }
+
+    // Geht die Blockköpfe durch, schneidet einen unvollständigen letzten Block ab und
+    // liefert die letzte ID des letzten vollständigen Blocks (0 ohne Blöcke, -1 ohne vollständige Kennung)
+    private static long spaltenReparieren(FileChannel kanal) throws IOException {
+        ByteBuffer kopf = ByteBuffer.allocate(BLOCK_KOPF);
+        long groesse = kanal.size();
+        if (groesse < 4) return -1;
+        kopf.limit(4);
+        kanal.position(0);
+        lesenVoll(kanal, kopf);
+        if (kopf.flip().getInt() != DATEI_KENNUNG) throw new IOException("Keine Exportdatei im Spaltenformat");
+        long pos = 4;
+        long letzteId = 0;
+        while (pos + BLOCK_KOPF <= groesse) {
+            kopf.clear();
+            kanal.position(pos);
+            lesenVoll(kanal, kopf);
+            kopf.flip();
+            if (kopf.getInt() != BLOCK_KENNUNG) break;
+            kopf.getInt();
+            int laenge = kopf.getInt();
+            long id = kopf.getLong();
+            if (pos + BLOCK_KOPF + laenge > groesse) break;
+            pos += BLOCK_KOPF + laenge;
+            letzteId = id;
+        }
+        kanal.truncate(pos);
+        return letzteId;
+    }
+
+    // Liest eine Datei im Spaltenformat satzweise (für Prüfungen und Auswertungsprogramme)
+    public static void spaltenLesen(Path datei, Consumer<Bestellsatz> ziel) throws IOException {
+        try (FileChannel kanal = FileChannel.open(datei, StandardOpenOption.READ)) {
+            ByteBuffer kopf = ByteBuffer.allocate(BLOCK_KOPF);
+            kopf.limit(4);
+            lesenVoll(kanal, kopf);
+            if (kopf.flip().getInt() != DATEI_KENNUNG) throw new IOException("Keine Exportdatei: " + datei);
+            ByteBuffer block = ByteBuffer.allocate(BLOCK * 48);
+            while (true) {
+                kopf.clear();
+                if (kanal.read(kopf) <= 0) return;
+                lesenVoll(kanal, kopf);
+                kopf.flip();
+                if (kopf.getInt() != BLOCK_KENNUNG) throw new IOException("Beschädigter Block in " + datei);
+                int anzahl = kopf.getInt();
+                int laenge = kopf.getInt();
+                if (block.capacity() < laenge) block = ByteBuffer.allocate(laenge);
+                block.clear().limit(laenge);
+                lesenVoll(kanal, block);
+                block.flip();
+                blockLesen(block, anzahl, ziel);
+            }
+        }
+    }
+
+    private static void blockLesen(ByteBuffer b, int anzahl, Consumer<Bestellsatz> ziel) {
+        long[] ids = new long[anzahl];
+        long[] zeiten = new long[anzahl];
+        long vorher = 0;
+        for (int i = 0; i < anzahl; i++) vorher = ids[i] = vorher + varLong(b);
+        vorher = 0;
+        for (int i = 0; i < anzahl; i++) vorher = zeiten[i] = vorher + zurueckZickzack(varLong(b));
+        String[] woerter = new String[(int) varLong(b) + 1];
+        for (int i = 1; i < woerter.length; i++) {
+            byte[] daten = new byte[(int) varLong(b)];
+            b.get(daten);
+            woerter[i] = new String(daten, StandardCharsets.UTF_8);
+        }
+        int[] arten = new int[anzahl];
+        for (int i = 0; i < anzahl; i++) arten[i] = (int) varLong(b);
+        boolean[] milch = new boolean[anzahl];
+        for (int i = 0; i < anzahl; i += 8) {
+            int bits = b.get() & 0xFF;
+            for (int j = i; j < Math.min(i + 8, anzahl); j++) milch[j] = (bits & (1 << (j - i))) != 0;
+        }
+        int[] preise = new int[anzahl];
+        for (int i = 0; i < anzahl; i++) preise[i] = (int) zurueckZickzack(varLong(b));
+        MuenzVektor[] zahlungen = new MuenzVektor[anzahl];
+        for (int i = 0; i < anzahl; i++) zahlungen[i] = new MuenzVektor();
+        for (int s = 0; s < MuenzVektor.SCHAECHTE; s++) {
+            for (int i = 0; i < anzahl; i++) zahlungen[i].set(s, (int) zurueckZickzack(varLong(b)));
+        }
+        for (int i = 0; i < anzahl; i++) {
+            ziel.accept(new Bestellsatz(ids[i], zeiten[i], woerter[arten[i]], milch[i], preise[i], zahlungen[i]));
+        }
+    }
+
+    private static long varLong(ByteBuffer b) {
+        long wert = 0;
+        int shift = 0;
+        byte x;
+        do {
+            x = b.get();
+            wert |= (long) (x & 0x7F) << shift;
+            shift += 7;
+        } while (x < 0);
+        return wert;
+    }
+
+    private static void lesenVoll(FileChannel kanal, ByteBuffer puffer) throws IOException {
+        while (puffer.hasRemaining()) {
+            if (kanal.read(puffer) < 0) throw new EOFException();
+        }
+    }
+
+    // Wachsender Byte-Puffer für einen Block
+    private static final class Bytes {
+        byte[] daten;
+        int laenge;
+
+        Bytes(int kapazitaet) {
+            daten = new byte[kapazitaet];
+        }
+
+        void varLong(long wert) {
+            platz(10);
+            while ((wert & ~0x7FL) != 0) {
+                daten[laenge++] = (byte) ((wert & 0x7F) | 0x80);
+                wert >>>= 7;
+            }
+            daten[laenge++] = (byte) wert;
+        }
+
+        void byteWert(int wert) {
+            platz(1);
+            daten[laenge++] = (byte) wert;
+        }
+
+        void bytes(byte[] b) {
+            platz(b.length);
+            System.arraycopy(b, 0, daten, laenge, b.length);
+            laenge += b.length;
+        }
+
+        private void platz(int bytes) {
+            if (laenge + bytes > daten.length) {
+                daten = Arrays.copyOf(daten, Math.max(daten.length * 2, laenge + bytes));
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.gfn.coffee;
+
+import java.time.Instant;
+
+// Ein Rollup-Bucket: Verkäufe einer Kaffeeart in einer Minute, Stunde oder einem Tag (UTC)
+public final class Verkaufsintervall {
+
+    public enum Aufloesung {
+        MINUTE(60),
+        STUNDE(3600),
+        TAG(86400);
+
+        private final long sekunden;
+
+        Aufloesung(long sekunden) {
+            this.sekunden = sekunden;
+        }
+
+        public long getSekunden() {
+            return sekunden;
+        }
+
+        long abrunden(long epochSekunde) {
+            return Math.floorDiv(epochSekunde, sekunden) * sekunden;
+        }
+
+        long aufrunden(long epochSekunde) {
+            return -Math.floorDiv(-epochSekunde, sekunden) * sekunden;
+        }
+    }
+
+    private final Aufloesung aufloesung;
+    private final Instant beginn;
+    private final String kaffeeArt;
+    private final long tassen;
+    private final long mitMilch;
+    private final long umsatzInCent;
+
+    Verkaufsintervall(Aufloesung aufloesung, Instant beginn, String kaffeeArt, long tassen, long mitMilch, long umsatzInCent) {
+        this.aufloesung = aufloesung;
+        this.beginn = beginn;
+        this.kaffeeArt = kaffeeArt;
+        this.tassen = tassen;
+        this.mitMilch = mitMilch;
+        this.umsatzInCent = umsatzInCent;
+    }
+
+    // Zerlegt [von, bis) in genau fünf Abschnitte {Aufloesung, von, bis} (leere Abschnitte haben von == bis):
+    // Minuten bis zur vollen Stunde, Stunden bis zum vollen Tag, ganze Tage, dann wieder Stunden und Minuten.
+    static long[][] zerlegen(long von, long bis) {
+        long m = Aufloesung.MINUTE.getSekunden();
+        long h = Aufloesung.STUNDE.getSekunden();
+        long d = Aufloesung.TAG.getSekunden();
+        long anfang = Aufloesung.MINUTE.abrunden(von);
+        long ende = Math.max(anfang, Aufloesung.MINUTE.abrunden(bis));
+
+        long stundeAb = Math.min(Aufloesung.STUNDE.aufrunden(anfang), ende);
+        long stundeBis = Math.max(Aufloesung.STUNDE.abrunden(ende), stundeAb);
+        long tagAb = Math.min(Aufloesung.TAG.aufrunden(stundeAb), stundeBis);
+        long tagBis = Math.max(Aufloesung.TAG.abrunden(stundeBis), tagAb);
+
+        return new long[][]{
+                {m, anfang, stundeAb},
+                {h, stundeAb, tagAb},
+                {d, tagAb, tagBis},
+                {h, tagBis, stundeBis},
+                {m, stundeBis, ende},
+        };
+    }
+
+    public Aufloesung getAufloesung() {
+        return aufloesung;
+    }
+
+    public Instant getBeginn() {
+        return beginn;
+    }
+
+    public String getKaffeeArt() {
+        return kaffeeArt;
+    }
+
+    public long getTassen() {
+        return tassen;
+    }
+
+    public long getMitMilch() {
+        return mitMilch;
+    }
+
+    public long getUmsatzInCent() {
+        return umsatzInCent;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %d Tassen, %.2f EUR", beginn, kaffeeArt, tassen, umsatzInCent / 100.0);
+    }
+}
@@ -0,0 +1,21 @@
+package de.gfn.coffee;
+
+// Wie Bestandsänderungen und Verkäufe eines Automaten dauerhaft werden.
+// MuenzJournal: Verkauf direkt als SQLite-Transaktion, Münzen per Write-Behind.
+// Ereignisjournal: alles als Satz in ein Append-Only-Log, SQLite wird im Hintergrund nachgezogen.
+public interface Verkaufsjournal extends AutoCloseable {
+
+    // Münzbewegung (+ eingeworfen, - ausgegeben/zurückgegeben)
+    void aufzeichnen(int schacht, int delta);
+
+    // Verkauf festhalten; false, wenn er nicht gespeichert werden konnte
+    boolean mitBuchungAbschliessen(Verkaufsbuchung buchung);
+
+    // Betriebsereignisse ohne eigene Tabelle, als Zähler WARTUNGEN bzw. DEFEKTE
+    void wartungAufzeichnen();
+
+    void defektAufzeichnen();
+
+    @Override
+    void close();
+}
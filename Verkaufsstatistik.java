@@ -0,0 +1,120 @@
+package de.gfn.coffee;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Laufende Verkaufssummen aus der Tabelle Verkaufszaehler (unveränderlich)
+public final class Verkaufsstatistik {
+    // Schlüssel in der Tabelle Verkaufszaehler
+    static final String TASSEN = "TASSEN";
+    static final String UMSATZ = "UMSATZ";
+    static final String MIT_MILCH = "MIT_MILCH";
+    static final String OHNE_MILCH = "OHNE_MILCH";
+    static final String ART_PRAEFIX = "ART:";
+    static final String WARTUNGEN = "WARTUNGEN";
+    static final String DEFEKTE = "DEFEKTE";
+
+    private final long tassen;
+    private final long umsatzInCent;
+    private final long mitMilch;
+    private final long ohneMilch;
+    private final Map<String, Long> tassenProArt;
+    private final long wartungen;
+    private final long defekte;
+
+    private Verkaufsstatistik(Builder b) {
+        this.tassen = b.tassen;
+        this.umsatzInCent = b.umsatzInCent;
+        this.mitMilch = b.mitMilch;
+        this.ohneMilch = b.ohneMilch;
+        this.tassenProArt = Collections.unmodifiableMap(new TreeMap<>(b.tassenProArt));
+        this.wartungen = b.wartungen;
+        this.defekte = b.defekte;
+    }
+
+    public long getTassen() {
+        return tassen;
+    }
+
+    public long getUmsatzInCent() {
+        return umsatzInCent;
+    }
+
+    public long getMitMilch() {
+        return mitMilch;
+    }
+
+    public long getOhneMilch() {
+        return ohneMilch;
+    }
+
+    public Map<String, Long> getTassenProArt() {
+        return tassenProArt;
+    }
+
+    public long getWartungen() {
+        return wartungen;
+    }
+
+    public long getDefekte() {
+        return defekte;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Tassen: %d | Umsatz: %.2f EUR | Mit Milch: %d | Ohne Milch: %d | %s",
+                tassen, umsatzInCent / 100.0, mitMilch, ohneMilch, tassenProArt);
+    }
+
+    static final class Builder {
+        private long tassen;
+        private long umsatzInCent;
+        private long mitMilch;
+        private long ohneMilch;
+        private final Map<String, Long> tassenProArt = new TreeMap<>();
+        private long wartungen;
+        private long defekte;
+
+        Builder wert(String schluessel, long wert) {
+            switch (schluessel) {
+                case TASSEN: tassen = wert; break;
+                case UMSATZ: umsatzInCent = wert; break;
+                case MIT_MILCH: mitMilch = wert; break;
+                case OHNE_MILCH: ohneMilch = wert; break;
+                case WARTUNGEN: wartungen = wert; break;
+                case DEFEKTE: defekte = wert; break;
+                default:
+                    if (schluessel.startsWith(ART_PRAEFIX)) {
+                        tassenProArt.put(schluessel.substring(ART_PRAEFIX.length()), wert);
+                    }
+            }
+            return this;
+        }
+
+        // Addiert die Verkäufe einer Kaffeeart (z.B. aus mehreren Rollup-Buckets oder Automaten)
+        Builder verkauf(String kaffeeArt, long tassen, long mitMilch, long umsatzInCent) {
+            this.tassen += tassen;
+            this.umsatzInCent += umsatzInCent;
+            this.mitMilch += mitMilch;
+            this.ohneMilch += tassen - mitMilch;
+            tassenProArt.merge(kaffeeArt, tassen, Long::sum);
+            return this;
+        }
+
+        Builder hinzufuegen(Verkaufsstatistik andere) {
+            tassen += andere.tassen;
+            umsatzInCent += andere.umsatzInCent;
+            mitMilch += andere.mitMilch;
+            ohneMilch += andere.ohneMilch;
+            wartungen += andere.wartungen;
+            defekte += andere.defekte;
+            andere.tassenProArt.forEach((art, anzahl) -> tassenProArt.merge(art, anzahl, Long::sum));
+            return this;
+        }
+
+        Verkaufsstatistik build() {
+            return new Verkaufsstatistik(this);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package de.gfn.coffee;
+
+// Austauschbarer Algorithmus für die Wechselgeld-Berechnung.
+// Arbeitet nur auf primitiven Münzvektoren, damit pro Zahlung kein Müll entsteht.
+public interface WechselgeldStrategie {
+
+    // Trägt in ergebnis die Anzahl der Münzen pro Schacht ein.
+    // Liefert false, wenn der Betrag mit dem Bestand nicht zusammengestellt werden kann.
+    // Die bestandsVersion ändert sich bei jeder Bestandsänderung und erlaubt Caching.
+    boolean berechnen(int betrag, MuenzVektor bestand, long bestandsVersion, MuenzVektor ergebnis);
+
+    // Schnelle Prüfung ohne Ergebnis (z.B. vor dem Verkauf)
+    boolean istMoeglich(int betrag, MuenzVektor bestand, long bestandsVersion);
+
+    // Instanz für eine weitere Zahlsitzung; zustandslose Strategien können sich selbst liefern
+    default WechselgeldStrategie neueInstanz() {
+        return this;
+    }
+}
@@ -0,0 +1,349 @@
+package de.gfn.coffee;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Empfiehlt den Wechselgeldvorrat (Münzen pro Schacht), mit dem ein Automat bis zum nächsten
+// Service auskommt. Grundlage sind die Verkäufe der letzten Wochen: Preis und eingeworfene Münzen
+// (Tabelle Zahlungen). Daraus werden viele zufällige Verkaufsfolgen bis zum Service nachgespielt
+// (Monte Carlo, parallel im Fork-Join-Pool), jede mit derselben Wechselgeld-Strategie wie am
+// Automaten. Gesucht ist der Vorrat mit dem kleinsten Geldwert, bei dem höchstens der Anteil
+// "ziel" der Folgen einen Verkauf mangels Wechselgeld ablehnen muss.
+//
+// Alle Vorräte werden mit denselben Folgen bewertet (gleiche Seeds), dadurch sind Vergleiche
+// zwischen zwei Vorräten nicht vom Zufall verrauscht. Die Empfehlung wird am Ende mit neuen
+// Folgen nachgeprüft.
+//
+// Aufruf: java de.gfn.coffee.Wechselgeldplaner --verzeichnis=. --stunden=168 --ziel=0.05
+public final class Wechselgeldplaner {
+    public static final Duration HISTORIE = Duration.ofDays(28);
+    public static final Duration STANDARD_SERVICE = Duration.ofDays(7);
+    public static final double STANDARD_ZIEL = 0.05;
+    // Darunter ist die Verteilung der Einwürfe nicht aussagekräftig
+    private static final int MIN_VERKAEUFE = 50;
+    private static final int LAEUFE_SUCHE = 400;
+    private static final int LAEUFE_PRUEFUNG = 1000;
+    // Kleinste Arbeitseinheit im Fork-Join-Pool
+    private static final int LAEUFE_PRO_TASK = 16;
+    // Obergrenze pro Schacht bei der Suche; mehr passt in keine Münzröhre
+    private static final int MAX_MUENZEN = 1000;
+    private static final int MAX_NACHBESSERUNGEN = 10;
+    private static final long SEED_SUCHE = 0x5EED_C0FFEEL;
+    private static final long SEED_PRUEFUNG = 0xC0FFEE_5EEDL;
+
+    private static final Latenzhistogramm PLANEN_DAUER = Metriken.histogramm("wechselgeld_planen");
+
+    public static final class Empfehlung {
+        private final MuenzVektor vorrat;
+        private final double ausfallquote;
+        private final double ausfallquoteBestand;
+        private final double ziel;
+        private final boolean erreicht;
+        private final Duration zeitraum;
+        private final double erwarteteVerkaeufe;
+        private final int stichprobe;
+
+        Empfehlung(MuenzVektor vorrat, double ausfallquote, double ausfallquoteBestand, double ziel, boolean erreicht,
+                   Duration zeitraum, double erwarteteVerkaeufe, int stichprobe) {
+            this.vorrat = vorrat;
+            this.ausfallquote = ausfallquote;
+            this.ausfallquoteBestand = ausfallquoteBestand;
+            this.ziel = ziel;
+            this.erreicht = erreicht;
+            this.zeitraum = zeitraum;
+            this.erwarteteVerkaeufe = erwarteteVerkaeufe;
+            this.stichprobe = stichprobe;
+        }
+
+        // Kopie: Münzen pro Schacht, die beim Service eingelegt werden sollen
+        public MuenzVektor getVorrat() {
+            return new MuenzVektor(vorrat);
+        }
+
+        public int getGeldwertInCent() {
+            return vorrat.summeInCent();
+        }
+
+        // Anteil der nachgespielten Folgen, in denen mit dem Vorrat mindestens ein Verkauf abgelehnt wurde
+        public double getAusfallquote() {
+            return ausfallquote;
+        }
+
+        // Dasselbe für den aktuellen Bestand des Automaten (zum Vergleich)
+        public double getAusfallquoteBestand() {
+            return ausfallquoteBestand;
+        }
+
+        public double getZiel() {
+            return ziel;
+        }
+
+        // false: auch mit dem größten geprüften Vorrat wird das Ziel verfehlt
+        public boolean isErreicht() {
+            return erreicht;
+        }
+
+        public Duration getZeitraum() {
+            return zeitraum;
+        }
+
+        public double getErwarteteVerkaeufe() {
+            return erwarteteVerkaeufe;
+        }
+
+        // Anzahl der Verkäufe, aus denen die Verteilung stammt
+        public int getStichprobe() {
+            return stichprobe;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Wechselgeld für %d h (ca. %.0f Verkäufe, %d Verkäufe als Grundlage): %s = %.2f €%n" +
+                            "Ablehnung bis zum Service: %.1f%% (Ziel %.1f%%%s), mit aktuellem Bestand %.1f%%",
+                    zeitraum.toHours(), erwarteteVerkaeufe, stichprobe, vorrat,
+                    vorrat.summeInCent() / 100.0, 100 * ausfallquote, 100 * ziel, erreicht ? "" : ", NICHT erreicht",
+                    100 * ausfallquoteBestand);
+        }
+    }
+
+    // Verkäufe aus der Historie, nur mit vollständig erfasster Zahlung
+    private final int anzahl;
+    private final int[] preise;
+    // Eingeworfene Münzen: Verkauf k, Schacht i an Stelle k * SCHAECHTE + i
+    private final int[] einwuerfe;
+    private final double verkaeufeProStunde;
+    private final WechselgeldStrategie strategie;
+
+    private Wechselgeldplaner(int anzahl, int[] preise, int[] einwuerfe, double verkaeufeProStunde,
+                              WechselgeldStrategie strategie) {
+        this.anzahl = anzahl;
+        this.preise = preise;
+        this.einwuerfe = einwuerfe;
+        this.verkaeufeProStunde = verkaeufeProStunde;
+        this.strategie = strategie;
+    }
+
+    // Liest die Verkäufe seit (jetzt - HISTORIE). null, wenn es zu wenige mit Zahlungen gibt.
+    public static Wechselgeldplaner ausHistorie(DatabaseManager db, WechselgeldStrategie strategie, Instant jetzt) {
+        int[][] puffer = {new int[1024], new int[1024 * MuenzVektor.SCHAECHTE]};
+        int[] anzahl = {0};
+        long[] zeitraum = {Long.MAX_VALUE, Long.MIN_VALUE};
+        long letzteId = db.bestellungenLesen(jetzt.minus(HISTORIE), jetzt, 0, Long.MAX_VALUE, -1, b -> {
+            // Ohne Zahlungen (z.B. Altdaten) ist der Einwurf unbekannt
+            if (b.getZahlungen().summeInCent() < b.getPreis()) return;
+            int k = anzahl[0]++;
+            if (k == puffer[0].length) {
+                puffer[0] = Arrays.copyOf(puffer[0], 2 * k);
+                puffer[1] = Arrays.copyOf(puffer[1], 2 * k * MuenzVektor.SCHAECHTE);
+            }
+            puffer[0][k] = b.getPreis();
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                puffer[1][k * MuenzVektor.SCHAECHTE + i] = b.getZahlungen().get(i);
+            }
+            zeitraum[0] = Math.min(zeitraum[0], b.getZeitstempel());
+            zeitraum[1] = Math.max(zeitraum[1], b.getZeitstempel());
+        });
+        if (letzteId < 0 || anzahl[0] < MIN_VERKAEUFE) return null;
+        // Mindestens eine Stunde, sonst ergibt ein kurzer Ansturm eine absurde Rate
+        double stunden = Math.max(1.0, (zeitraum[1] - zeitraum[0]) / 3600.0);
+        return new Wechselgeldplaner(anzahl[0], puffer[0], puffer[1], anzahl[0] / stunden, strategie);
+    }
+
+    public double getVerkaeufeProStunde() {
+        return verkaeufeProStunde;
+    }
+
+    // Sucht den kleinsten Vorrat für den Zeitraum bis zum Service; bestand dient nur dem Vergleich
+    public Empfehlung planen(Duration bisZumService, double ziel, MuenzVektor bestand) {
+        long t0 = System.nanoTime();
+        double erwartet = verkaeufeProStunde * bisZumService.toMillis() / 3_600_000.0;
+
+        // 1. Obergrenze: alle Schächte verdoppeln, bis das Ziel erreicht ist
+        MuenzVektor vorrat = new MuenzVektor();
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) vorrat.set(i, Math.max(1, bestand.get(i)));
+        while (!haelt(vorrat, erwartet, ziel) && !istVoll(vorrat)) {
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) vorrat.set(i, Math.min(MAX_MUENZEN, 2 * vorrat.get(i)));
+        }
+
+        // 2. Teuerste Münze zuerst: pro Schacht die kleinste Anzahl, die das Ziel noch hält
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            int oben = vorrat.get(i);
+            // Oft wird eine Münzart gar nicht gebraucht (z.B. 2 € bei Wechselgeld unter 2 €)
+            vorrat.set(i, 0);
+            if (oben == 0 || haelt(vorrat, erwartet, ziel)) continue;
+            int unten = 1;
+            while (unten < oben) {
+                int mitte = (unten + oben) >>> 1;
+                vorrat.set(i, mitte);
+                if (haelt(vorrat, erwartet, ziel)) {
+                    oben = mitte;
+                } else {
+                    unten = mitte + 1;
+                }
+            }
+            vorrat.set(i, oben);
+        }
+
+        // 3. Mit neuen Folgen nachprüfen; knapp verfehlt wird etwas aufgestockt
+        double quote = ausfallquote(vorrat, erwartet, SEED_PRUEFUNG, LAEUFE_PRUEFUNG);
+        for (int n = 0; n < MAX_NACHBESSERUNGEN && quote > ziel && !istVoll(vorrat); n++) {
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                if (vorrat.get(i) > 0) vorrat.set(i, Math.min(MAX_MUENZEN, vorrat.get(i) + (vorrat.get(i) + 9) / 10));
+            }
+            quote = ausfallquote(vorrat, erwartet, SEED_PRUEFUNG, LAEUFE_PRUEFUNG);
+        }
+        double quoteBestand = ausfallquote(bestand, erwartet, SEED_PRUEFUNG, LAEUFE_PRUEFUNG);
+        PLANEN_DAUER.erfassenSeit(t0);
+        return new Empfehlung(vorrat, quote, quoteBestand, ziel, quote <= ziel, bisZumService, erwartet, anzahl);
+    }
+
+    private static boolean istVoll(MuenzVektor vorrat) {
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            if (vorrat.get(i) < MAX_MUENZEN) return false;
+        }
+        return true;
+    }
+
+    // --- SIMULATION ---
+
+    // Anteil der Läufe mit mindestens einer Ablehnung
+    double ausfallquote(MuenzVektor vorrat, double erwarteteVerkaeufe, long seed, int laeufe) {
+        return (double) ablehnungen(vorrat, erwarteteVerkaeufe, seed, laeufe, Integer.MAX_VALUE) / laeufe;
+    }
+
+    // Für die Suche genügt ja/nein: sobald mehr Läufe abgelehnt haben als erlaubt, hören alle auf
+    private boolean haelt(MuenzVektor vorrat, double erwarteteVerkaeufe, double ziel) {
+        int erlaubt = (int) Math.floor(ziel * LAEUFE_SUCHE);
+        return ablehnungen(vorrat, erwarteteVerkaeufe, SEED_SUCHE, LAEUFE_SUCHE, erlaubt) <= erlaubt;
+    }
+
+    // Exakt bis "grenze", darüber nur "mehr als grenze"
+    private int ablehnungen(MuenzVektor vorrat, double erwartet, long seed, int laeufe, int grenze) {
+        AtomicInteger abgelehnt = new AtomicInteger();
+        ForkJoinPool.commonPool().invoke(new Laeufe(new MuenzVektor(vorrat), erwartet, seed, 0, laeufe, grenze, abgelehnt));
+        return abgelehnt.get();
+    }
+
+    // Läufe [von, bis); teilt sich, bis die Stücke klein genug sind
+    private final class Laeufe extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MuenzVektor vorrat;
+        private final double erwartet;
+        private final long seed;
+        private final int von;
+        private final int bis;
+        private final int grenze;
+        private final AtomicInteger abgelehnt;
+
+        Laeufe(MuenzVektor vorrat, double erwartet, long seed, int von, int bis, int grenze, AtomicInteger abgelehnt) {
+            this.vorrat = vorrat;
+            this.erwartet = erwartet;
+            this.seed = seed;
+            this.von = von;
+            this.bis = bis;
+            this.grenze = grenze;
+            this.abgelehnt = abgelehnt;
+        }
+
+        @Override
+        protected void compute() {
+            if (bis - von > LAEUFE_PRO_TASK) {
+                int mitte = (von + bis) >>> 1;
+                invokeAll(new Laeufe(vorrat, erwartet, seed, von, mitte, grenze, abgelehnt),
+                        new Laeufe(vorrat, erwartet, seed, mitte, bis, grenze, abgelehnt));
+                return;
+            }
+            // Eigene Strategie-Instanz und Puffer pro Arbeitspaket (OptimalesWechselgeld ist nicht threadsicher)
+            Automat automat = new Automat(strategie.neueInstanz());
+            for (int lauf = von; lauf < bis && abgelehnt.get() <= grenze; lauf++) {
+                // Jeder Lauf hat seinen eigenen Seed: gleiche Folge für jeden Vorrat, egal welcher Thread rechnet
+                if (!automat.durchhalten(vorrat, erwartet, new SplittableRandom(seed + lauf))) abgelehnt.incrementAndGet();
+            }
+        }
+    }
+
+    // Bezahlen wie in Zahlsitzung, ohne Treuhand und Journal: das Wechselgeld wird aus Bestand
+    // plus Einwurf berechnet, danach liegt der Einwurf im Bestand und das Wechselgeld ist draußen.
+    private final class Automat {
+        private final WechselgeldStrategie strategie;
+        private final MuenzVektor verfuegbar = new MuenzVektor();
+        private final MuenzVektor wechselgeld = new MuenzVektor();
+        private long version = 0;
+
+        Automat(WechselgeldStrategie strategie) {
+            this.strategie = strategie;
+        }
+
+        // true, wenn bis zum Service jeder Verkauf Wechselgeld bekam
+        boolean durchhalten(MuenzVektor vorrat, double erwartet, SplittableRandom zufall) {
+            verfuegbar.kopiereVon(vorrat);
+            version++;
+            int verkaeufe = poisson(erwartet, zufall);
+            for (int n = 0; n < verkaeufe; n++) {
+                int k = zufall.nextInt(anzahl);
+                int basis = k * MuenzVektor.SCHAECHTE;
+                int betrag = 0;
+                for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                    verfuegbar.add(i, einwuerfe[basis + i]);
+                    betrag += einwuerfe[basis + i] * MuenzVektor.wert(i);
+                }
+                version++;
+                int rueckgabe = betrag - preise[k];
+                if (rueckgabe == 0) continue;
+                if (!strategie.berechnen(rueckgabe, verfuegbar, version, wechselgeld)) return false;
+                verfuegbar.abziehen(wechselgeld);
+                version++;
+            }
+            return true;
+        }
+    }
+
+    // Anzahl Verkäufe im Zeitraum; ab 50 erwarteten genügt die Normalnäherung
+    private static int poisson(double erwartet, SplittableRandom zufall) {
+        if (erwartet >= 50) {
+            return (int) Math.max(0, Math.round(erwartet + Math.sqrt(erwartet) * zufall.nextGaussian()));
+        }
+        double grenze = Math.exp(-erwartet);
+        double produkt = zufall.nextDouble();
+        int n = 0;
+        while (produkt > grenze) {
+            produkt *= zufall.nextDouble();
+            n++;
+        }
+        return n;
+    }
+
+    public static void main(String[] args) {
+        Path verzeichnis = Paths.get(".");
+        Duration service = STANDARD_SERVICE;
+        double ziel = STANDARD_ZIEL;
+        for (String arg : args) {
+            String[] teile = arg.replaceFirst("^--", "").split("=", 2);
+            if (teile.length != 2) throw new IllegalArgumentException("Ungültiges Argument: " + arg);
+            switch (teile[0]) {
+                case "verzeichnis": verzeichnis = Paths.get(teile[1]); break;
+                case "stunden": service = Duration.ofHours(Long.parseLong(teile[1])); break;
+                case "ziel": ziel = Double.parseDouble(teile[1]); break;
+                default: throw new IllegalArgumentException("Unbekannte Option: " + teile[0]);
+            }
+        }
+        try (DatabaseManager db = new DatabaseManager(verzeichnis, 2)) {
+            Wechselgeldplaner planer = ausHistorie(db, new OptimalesWechselgeld(), Instant.now());
+            if (planer == null) {
+                System.out.println("Zu wenige Verkäufe mit Zahlungen in den letzten " + HISTORIE.toDays() + " Tagen.");
+                return;
+            }
+            MuenzVektor bestand = new MuenzVektor();
+            db.ladeMuenzBestand(bestand);
+            System.out.println(planer.planen(service, ziel, bestand));
+        }
+    }
+}
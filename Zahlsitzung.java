@@ -0,0 +1,143 @@
+package de.gfn.coffee;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Ein Bezahlvorgang an einem Terminal bzw. Ausgabekopf.
+// Eingeworfene Münzen liegen im Treuhandfach der Sitzung und kommen erst beim Bezahlen in den
+// gemeinsamen Bestand; beim Abbruch werden sie unverändert zurückgegeben.
+// Verschiedene Sitzungen dürfen parallel laufen, eine einzelne Sitzung gehört einem Thread.
+public class Zahlsitzung {
+    // Wiederholungen, wenn eine andere Sitzung die berechneten Münzen gerade weggenommen hat
+    private static final int MAX_VERSUCHE = 8;
+
+    private static final Latenzhistogramm MUENZE_DAUER = Metriken.histogramm("zahlung_muenzeAnnehmen");
+    private static final Latenzhistogramm BEZAHLEN_DAUER = Metriken.histogramm("zahlung_wechselgeldBerechnen");
+    private static final LongAdder WIEDERHOLUNGEN = Metriken.zaehler("zahlung_wiederholungen");
+
+    private final Muenzwechsler wechsler;
+    private final Muenzbestand bestand;
+    // Eigene Instanz: OptimalesWechselgeld hat Puffer und ist nicht threadsicher
+    private final WechselgeldStrategie strategie;
+
+    private int aktuellerEinwurf = 0;
+    private final MuenzVektor treuhand = new MuenzVektor();
+
+    // Wiederverwendete Puffer
+    private final MuenzVektor wechselgeld = new MuenzVektor();
+    private final MuenzVektor ausBestand = new MuenzVektor();
+    private final MuenzVektor einlage = new MuenzVektor();
+    private final MuenzVektor gelesen = new MuenzVektor();
+    // Für diese Sitzung verfügbare Münzen (Bestand + Treuhand), Version nur lokal gültig
+    private final MuenzVektor verfuegbar = new MuenzVektor();
+    private long verfuegbarVersion = 0;
+
+    Zahlsitzung(Muenzwechsler wechsler, Muenzbestand bestand, WechselgeldStrategie strategie) {
+        this.wechsler = wechsler;
+        this.bestand = bestand;
+        this.strategie = strategie;
+    }
+
+    public void muenzeAnnehmen(int wertInCent) {
+        long t0 = System.nanoTime();
+        int schacht = MuenzVektor.schacht(wertInCent);
+        if (schacht < 0) throw new IllegalArgumentException("Unbekannte Münze: " + wertInCent + " Cent");
+        aktuellerEinwurf += wertInCent;
+        treuhand.add(schacht, 1);
+        MUENZE_DAUER.erfassenSeit(t0);
+    }
+
+    // Bei ERFOLG steht das ausgegebene Wechselgeld bis zum nächsten Aufruf in getWechselgeld()
+    public Verkaufsergebnis zahlen(int preis) {
+        long t0 = System.nanoTime();
+        try {
+            return zahlenIntern(preis);
+        } finally {
+            BEZAHLEN_DAUER.erfassenSeit(t0);
+        }
+    }
+
+    // Gleiche Meldungen wie Muenzwechsler.wechselgeldBerechnen
+    public String bezahlen(int preis) {
+        return Meldungen.zahlung(zahlen(preis), wechselgeld);
+    }
+
+    private Verkaufsergebnis zahlenIntern(int preis) {
+        int rueckgabeBetrag = aktuellerEinwurf - preis;
+        wechselgeld.leeren();
+        if (rueckgabeBetrag < 0) return Verkaufsergebnis.ZU_WENIG_GELD;
+
+        for (int versuch = 0; versuch < MAX_VERSUCHE; versuch++) {
+            verfuegbarAktualisieren();
+            if (rueckgabeBetrag > 0 && !strategie.berechnen(rueckgabeBetrag, verfuegbar, verfuegbarVersion, wechselgeld)) {
+                break;
+            }
+            // Wechselgeld zuerst aus dem eigenen Einwurf, nur der Rest kommt aus dem Bestand
+            for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                int ausTreuhand = Math.min(wechselgeld.get(i), treuhand.get(i));
+                ausBestand.set(i, wechselgeld.get(i) - ausTreuhand);
+                einlage.set(i, treuhand.get(i) - ausTreuhand);
+            }
+            if (versuch > 0) WIEDERHOLUNGEN.increment();
+            if (bestand.entnehmen(ausBestand)) {
+                bestand.einlegen(einlage);
+                for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+                    wechsler.bestandGeaendert(i, treuhand.get(i) - wechselgeld.get(i));
+                }
+                zuruecksetzen();
+                return Verkaufsergebnis.ERFOLG;
+            }
+        }
+        // Einwurf bleibt unangetastet in der Treuhand und geht zurück
+        zuruecksetzen();
+        wechselgeld.leeren();
+        return Verkaufsergebnis.WECHSELGELD_NICHT_MOEGLICH;
+    }
+
+    // Prüft ohne Buchung, ob ein Betrag aktuell herausgegeben werden könnte
+    public boolean istWechselgeldMoeglich(int betrag) {
+        if (betrag == 0) return true;
+        verfuegbarAktualisieren();
+        return strategie.istMoeglich(betrag, verfuegbar, verfuegbarVersion);
+    }
+
+    // Abbruch: Treuhand unverändert zurückgeben, die Münzen landen in rueckgabe
+    public void einwurfZurueckgeben(MuenzVektor rueckgabe) {
+        rueckgabe.kopiereVon(treuhand);
+        zuruecksetzen();
+    }
+
+    public String einwurfZurueckgeben() {
+        String rueckgabe = treuhand.toString();
+        zuruecksetzen();
+        return rueckgabe;
+    }
+
+    // Nur lesen: Wechselgeld der letzten erfolgreichen Zahlung (Anzahl pro Schacht)
+    public MuenzVektor getWechselgeld() {
+        return wechselgeld;
+    }
+
+    public int getAktuellerEinwurf() {
+        return aktuellerEinwurf;
+    }
+
+    // Nur lesen: der Vektor wird beim nächsten Bezahlvorgang zurückgesetzt
+    public MuenzVektor getEingeworfeneMuenzen() {
+        return treuhand;
+    }
+
+    // Neue Version nur, wenn sich die Münzen geändert haben, sonst bleibt die Tabelle der Strategie gültig
+    private void verfuegbarAktualisieren() {
+        bestand.lesen(gelesen);
+        gelesen.addieren(treuhand);
+        if (!gelesen.equals(verfuegbar)) {
+            verfuegbar.kopiereVon(gelesen);
+            verfuegbarVersion++;
+        }
+    }
+
+    private void zuruecksetzen() {
+        aktuellerEinwurf = 0;
+        treuhand.leeren();
+    }
+}
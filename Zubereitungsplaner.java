@@ -0,0 +1,156 @@
+package de.gfn.coffee;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Verteilt angenommene Aufträge als Pipeline auf die Baugruppen des Automaten:
+// ein Mahlwerk -> N Brüheinheiten (Erhitzen + Brühen) -> ein Milchaufschäumer.
+// Während Einheit 1 brüht, mahlt das Mahlwerk schon für den nächsten Auftrag.
+// Der gesamte Zustand wird nur auf dem gemeinsamen Takt-Thread verändert (keine Sperren).
+public class Zubereitungsplaner implements AutoCloseable {
+
+    public interface Beobachter {
+        // Aufrufe kommen vom Takt-Thread
+        void stufeBegonnen(Auftrag auftrag);
+
+        void fertig(Auftrag auftrag);
+    }
+
+    // Ein Takt-Thread für alle Automaten im Prozess, er plant nur und wartet nie
+    private static final ScheduledExecutorService TAKT = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "zubereitung-takt");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int anzahlEinheiten;
+    // 1.0 = Echtzeit, 0 = ohne Wartezeit (Simulation)
+    private final double zeitfaktor;
+    private final Beobachter beobachter;
+
+    private final Queue<Auftrag> mahlSchlange = new ArrayDeque<>();
+    private final Queue<Auftrag> bruehSchlange = new ArrayDeque<>();
+    private final Queue<Auftrag> milchSchlange = new ArrayDeque<>();
+    private boolean mahlwerkBelegt = false;
+    private final boolean[] einheitBelegt;
+    private boolean schaeumerBelegt = false;
+
+    private final Set<Auftrag> inArbeit = new LinkedHashSet<>();
+    private final AtomicInteger offen = new AtomicInteger();
+    private boolean geschlossen = false;
+
+    public Zubereitungsplaner(int anzahlEinheiten, double zeitfaktor, Beobachter beobachter) {
+        if (anzahlEinheiten < 1) throw new IllegalArgumentException("Mindestens eine Brüheinheit erforderlich.");
+        this.anzahlEinheiten = anzahlEinheiten;
+        this.zeitfaktor = zeitfaktor;
+        this.beobachter = beobachter;
+        this.einheitBelegt = new boolean[anzahlEinheiten];
+    }
+
+    public void einreihen(Auftrag auftrag) {
+        offen.incrementAndGet();
+        TAKT.execute(() -> {
+            if (geschlossen) {
+                abschliessen(auftrag);
+                return;
+            }
+            inArbeit.add(auftrag);
+            mahlSchlange.add(auftrag);
+            planen();
+        });
+    }
+
+    // Aufträge, die noch nicht fertig sind (wartend + in Zubereitung)
+    public int getAnzahlOffen() {
+        return offen.get();
+    }
+
+    public int getAnzahlEinheiten() {
+        return anzahlEinheiten;
+    }
+
+    // --- PLANUNG (nur Takt-Thread) ---
+
+    private void planen() {
+        // Nicht weiter vormahlen als Brüheinheiten warten können
+        if (!mahlwerkBelegt && !mahlSchlange.isEmpty() && bruehSchlange.size() < anzahlEinheiten) {
+            Auftrag a = mahlSchlange.poll();
+            mahlwerkBelegt = true;
+            stufe(a, Zubereitungsstufe.MAHLEN, -1, () -> {
+                mahlwerkBelegt = false;
+                bruehSchlange.add(a);
+            });
+        }
+
+        for (int e = 0; e < anzahlEinheiten && !bruehSchlange.isEmpty(); e++) {
+            if (einheitBelegt[e]) continue;
+            Auftrag a = bruehSchlange.poll();
+            int einheit = e;
+            einheitBelegt[einheit] = true;
+            stufe(a, Zubereitungsstufe.ERHITZEN, einheit + 1, () ->
+                    stufe(a, Zubereitungsstufe.BRUEHEN, einheit + 1, () -> {
+                        einheitBelegt[einheit] = false;
+                        if (a.isMitMilch()) {
+                            milchSchlange.add(a);
+                        } else {
+                            abschliessen(a);
+                        }
+                    }));
+        }
+
+        if (!schaeumerBelegt && !milchSchlange.isEmpty()) {
+            Auftrag a = milchSchlange.poll();
+            schaeumerBelegt = true;
+            stufe(a, Zubereitungsstufe.MILCH, -1, () -> {
+                schaeumerBelegt = false;
+                abschliessen(a);
+            });
+        }
+    }
+
+    // Stufe beginnen, nach ihrer Dauer "danach" ausführen und neu planen
+    private void stufe(Auftrag a, Zubereitungsstufe s, int einheit, Runnable danach) {
+        a.setStufe(s, einheit);
+        beobachter.stufeBegonnen(a);
+        TAKT.schedule(() -> {
+            if (geschlossen) return;
+            danach.run();
+            planen();
+        }, (long) (s.getDauerMs() * zeitfaktor), TimeUnit.MILLISECONDS);
+    }
+
+    private void abschliessen(Auftrag a) {
+        inArbeit.remove(a);
+        offen.decrementAndGet();
+        beobachter.fertig(a);
+    }
+
+    // Beim Herunterfahren: bezahlte Aufträge nicht verlieren, sondern sofort fertig melden
+    @Override
+    public void close() {
+        try {
+            TAKT.submit(() -> {
+                geschlossen = true;
+                for (Auftrag a : new ArrayList<>(inArbeit)) {
+                    abschliessen(a);
+                }
+                mahlSchlange.clear();
+                bruehSchlange.clear();
+                milchSchlange.clear();
+            }).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Zubereitungsplaner: offene Aufträge nicht abgeschlossen.");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package de.gfn.coffee;
+
+// Stufen der Zubereitung mit ihrer Standarddauer (wie bisher in der GUI-Animation angezeigt)
+public enum Zubereitungsstufe {
+    MAHLEN("Mahlwerk mahlt Bohnen...", 600),
+    ERHITZEN("Wasser wird erhitzt...", 500),
+    BRUEHEN("Kaffee läuft...", 900),
+    MILCH("Frischer Milchschaum...", 500);
+
+    private final String text;
+    private final long dauerMs;
+
+    Zubereitungsstufe(String text, long dauerMs) {
+        this.text = text;
+        this.dauerMs = dauerMs;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getDauerMs() {
+        return dauerMs;
+    }
+}
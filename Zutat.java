@@ -0,0 +1,23 @@
+package de.gfn.coffee;
+
+// Zutaten eines Automaten mit Behältergröße (Füllmenge nach dem Auffüllen)
+public enum Zutat {
+    BOHNEN("Kaffeebohnen", 2000),
+    MILCH("Milchpulver", 200);
+
+    private final String name;
+    private final int kapazitaet; // Gramm
+
+    Zutat(String name, int kapazitaet) {
+        this.name = name;
+        this.kapazitaet = kapazitaet;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getKapazitaet() {
+        return kapazitaet;
+    }
+}
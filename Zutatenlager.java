@@ -0,0 +1,81 @@
+package de.gfn.coffee;
+
+import java.util.List;
+
+// Zutatenbestand eines Automaten: Bestand, Reservierungen offener Aufträge und Verbrauchsprognose.
+// Geschrieben wird nur vom Engine-Thread; die Flotte liest Prognosen von anderen Threads,
+// deshalb sind alle Methoden synchronisiert (praktisch immer unbestritten).
+final class Zutatenlager {
+    private final int[] bestand = new int[Zutat.values().length];
+    private final int[] reserviert = new int[Zutat.values().length];
+    private final Verbrauchsprognose prognose = new Verbrauchsprognose();
+
+    Zutatenlager(int bohnen, int milch) {
+        bestand[Zutat.BOHNEN.ordinal()] = bohnen;
+        bestand[Zutat.MILCH.ordinal()] = milch;
+    }
+
+    // Erste Zutat, die für das Rezept nicht mehr frei ist, sonst null
+    synchronized Zutat fehlt(Rezept rezept) {
+        for (Zutat z : Zutat.values()) {
+            if (frei(z) < rezept.getMenge(z)) return z;
+        }
+        return null;
+    }
+
+    synchronized void reservieren(Rezept rezept) {
+        for (Zutat z : Zutat.values()) {
+            reserviert[z.ordinal()] += rezept.getMenge(z);
+        }
+    }
+
+    // Reservierung einlösen, der Verbrauch geht in die Prognose
+    synchronized void verbrauchen(Rezept rezept, long zeitMs) {
+        for (Zutat z : Zutat.values()) {
+            reserviert[z.ordinal()] -= rezept.getMenge(z);
+            bestand[z.ordinal()] -= rezept.getMenge(z);
+        }
+        prognose.erfassen(rezept, 1, zeitMs);
+    }
+
+    // Reservierungen offener Aufträge bleiben bestehen
+    synchronized void auffuellen() {
+        for (Zutat z : Zutat.values()) {
+            bestand[z.ordinal()] = z.getKapazitaet();
+        }
+    }
+
+    synchronized int getBestand(Zutat zutat) {
+        return bestand[zutat.ordinal()];
+    }
+
+    synchronized void verlaufNachtragen(List<Verkaufsintervall> verlauf) {
+        prognose.nachtragen(verlauf);
+    }
+
+    // Leer heißt: es kann nicht mehr jedes Getränk der Karte verkauft werden
+    synchronized Fuellstandsprognose prognose(String maschinenId, long jetztMs) {
+        Zutat[] zutaten = Zutat.values();
+        int[] frei = new int[zutaten.length];
+        double[] rate = new double[zutaten.length];
+        long[] leerAbMs = new long[zutaten.length];
+        for (Zutat z : zutaten) {
+            int i = z.ordinal();
+            frei[i] = frei(z);
+            rate[i] = prognose.rateProStunde(z, jetztMs);
+            int rest = frei[i] - Rezept.groessteMenge(z);
+            if (rest < 0) {
+                leerAbMs[i] = jetztMs;
+            } else if (rate[i] > 0) {
+                leerAbMs[i] = jetztMs + (long) (rest / rate[i] * 3_600_000);
+            } else {
+                leerAbMs[i] = Fuellstandsprognose.NIE;
+            }
+        }
+        return new Fuellstandsprognose(maschinenId, jetztMs, frei, rate, leerAbMs);
+    }
+
+    private int frei(Zutat zutat) {
+        return bestand[zutat.ordinal()] - reserviert[zutat.ordinal()];
+    }
+}
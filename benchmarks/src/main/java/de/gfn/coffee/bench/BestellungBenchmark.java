@@ -0,0 +1,63 @@
+package de.gfn.coffee.bench;
+
+import de.gfn.coffee.DatabaseManager;
+import de.gfn.coffee.Kaffeeautomat;
+import de.gfn.coffee.Muenzwechsler;
+import de.gfn.coffee.Verkaufsergebnis;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Kompletter Verkauf: Münzen einwerfen, Wechselgeld, Zubereitung, Buchung.
+// Bei fehlenden Zutaten oder Defekt wird aufgefüllt, wie es der Service tun würde.
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BestellungBenchmark {
+
+    // PASSEND: 50+20+10 für 80 ct, MIT_WECHSELGELD: 1 Euro für 80 ct
+    @Param({"PASSEND", "MIT_WECHSELGELD"})
+    public String bezahlung;
+
+    private Path verzeichnis;
+    private DatabaseManager db;
+    private Muenzwechsler wechsler;
+    private Kaffeeautomat automat;
+
+    @Setup(Level.Trial)
+    public void vorbereiten() {
+        verzeichnis = Umgebung.neuesVerzeichnis("bestellung");
+        db = new DatabaseManager(verzeichnis, 2);
+        wechsler = new Muenzwechsler(db);
+        automat = new Kaffeeautomat(db, wechsler);
+    }
+
+    @TearDown(Level.Trial)
+    public void aufraeumen() {
+        wechsler.close();
+        db.close();
+        Umgebung.loeschen(verzeichnis);
+    }
+
+    @Benchmark
+    public Verkaufsergebnis verkaufen() {
+        if ("PASSEND".equals(bezahlung)) {
+            wechsler.muenzeAnnehmen(50);
+            wechsler.muenzeAnnehmen(20);
+            wechsler.muenzeAnnehmen(10);
+        } else {
+            wechsler.muenzeAnnehmen(100);
+        }
+        Verkaufsergebnis ergebnis = automat.verkaufen("Espresso", false, 80).getErgebnis();
+        if (ergebnis == Verkaufsergebnis.ZUTATEN_FEHLEN || ergebnis == Verkaufsergebnis.AUSSER_BETRIEB
+                || ergebnis == Verkaufsergebnis.DEFEKT) {
+            wechsler.einwurfZurueckgeben();
+            automat.auffuellen();
+        }
+        return ergebnis;
+    }
+}
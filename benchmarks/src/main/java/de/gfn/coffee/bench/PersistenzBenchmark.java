@@ -0,0 +1,63 @@
+package de.gfn.coffee.bench;
+
+import de.gfn.coffee.DatabaseManager;
+import de.gfn.coffee.MuenzVektor;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Schreibpfade eines Verkaufs (Bestellung + 2 Zahlungszeilen + 3 Münzbestand-Änderungen):
+// EINZELN      - jede Anweisung im Autocommit (früherer Weg, ein fsync pro Zeile)
+// TRANSAKTION  - eine Verkaufsbuchung, Zahlungen und Bestand als Batch in einem Commit
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistenzBenchmark {
+
+    @Param({"EINZELN", "TRANSAKTION"})
+    public String modus;
+
+    private Path verzeichnis;
+    private DatabaseManager db;
+    private final MuenzVektor zahlung = new MuenzVektor();
+    private final MuenzVektor bestandsAenderung = new MuenzVektor();
+
+    @Setup(Level.Trial)
+    public void vorbereiten() {
+        verzeichnis = Umgebung.neuesVerzeichnis("persistenz");
+        db = new DatabaseManager(verzeichnis, 2);
+        // 1 Euro + 20 ct eingeworfen, 20 ct zurück
+        zahlung.set(MuenzVektor.schacht(100), 1);
+        zahlung.set(MuenzVektor.schacht(20), 1);
+        bestandsAenderung.set(MuenzVektor.schacht(100), 1);
+        bestandsAenderung.set(MuenzVektor.schacht(20), 0);
+        bestandsAenderung.set(MuenzVektor.schacht(10), -2);
+    }
+
+    @TearDown(Level.Trial)
+    public void aufraeumen() {
+        db.close();
+        Umgebung.loeschen(verzeichnis);
+    }
+
+    @Benchmark
+    public int verkaufSpeichern() {
+        if ("EINZELN".equals(modus)) {
+            int id = db.bestellungSpeichern("Espresso", false, 100);
+            db.zahlungSpeichern(id, zahlung);
+            db.updateMuenzBestand(100, 11);
+            db.updateMuenzBestand(20, 10);
+            db.updateMuenzBestand(10, 8);
+            return id;
+        }
+        return db.neueVerkaufsbuchung()
+                .bestellung("Espresso", false, 100)
+                .zahlung(zahlung)
+                .muenzAenderungen(bestandsAenderung)
+                .abschliessen() ? 1 : 0;
+    }
+}
@@ -0,0 +1,43 @@
+package de.gfn.coffee.bench;
+
+import de.gfn.coffee.DatabaseManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Startabfrage des Kaffeeautomaten (Gesamtzahl der Tassen) bei wachsender Historie
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TassenAnzahlBenchmark {
+
+    @Param({"1000", "100000"})
+    public int bestellungen;
+
+    private Path verzeichnis;
+    private DatabaseManager db;
+
+    @Setup(Level.Trial)
+    public void vorbereiten() {
+        verzeichnis = Umgebung.neuesVerzeichnis("tassen");
+        db = new DatabaseManager(verzeichnis, 2);
+        for (int i = 0; i < bestellungen; i++) {
+            db.neueVerkaufsbuchung().bestellung("Espresso", false, 80).abschliessen();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void aufraeumen() {
+        db.close();
+        Umgebung.loeschen(verzeichnis);
+    }
+
+    @Benchmark
+    public int gesamtTassenAnzahl() {
+        return db.getGesamtTassenAnzahl();
+    }
+}
@@ -0,0 +1,32 @@
+package de.gfn.coffee.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Eigenes Wegwerf-Verzeichnis pro Benchmark-Lauf, damit nie die echte smartcoffee.db benutzt wird
+final class Umgebung {
+
+    private Umgebung() {
+    }
+
+    static Path neuesVerzeichnis(String name) {
+        try {
+            return Files.createTempDirectory("smartcoffee-bench-" + name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void loeschen(Path verzeichnis) {
+        if (verzeichnis == null) return;
+        try (Stream<Path> dateien = Files.walk(verzeichnis)) {
+            dateien.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
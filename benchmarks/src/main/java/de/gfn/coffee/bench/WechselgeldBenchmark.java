@@ -0,0 +1,64 @@
+package de.gfn.coffee.bench;
+
+import de.gfn.coffee.GreedyWechselgeld;
+import de.gfn.coffee.MuenzVektor;
+import de.gfn.coffee.OptimalesWechselgeld;
+import de.gfn.coffee.WechselgeldStrategie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Wechselgeld-Berechnung über verschiedene Beträge und Bestandsformen.
+// "KALT" erzwingt bei jedem Aufruf eine neue Tabelle (Bestand hat sich geändert),
+// "WARM" misst den Tabellenzugriff bei unverändertem Bestand.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WechselgeldBenchmark {
+
+    @Param({"20", "70", "120", "380"})
+    public int betrag;
+
+    // VOLL: 10 je Schacht (Startbestand), KNAPP: 1-2 je Schacht, OHNE_50ER: kein 50 ct, viele 20 ct
+    @Param({"VOLL", "KNAPP", "OHNE_50ER"})
+    public String bestandsForm;
+
+    @Param({"OPTIMAL", "GREEDY"})
+    public String strategieName;
+
+    @Param({"WARM", "KALT"})
+    public String cache;
+
+    private WechselgeldStrategie strategie;
+    private final MuenzVektor bestand = new MuenzVektor();
+    private final MuenzVektor ergebnis = new MuenzVektor();
+    private long version = 1;
+
+    @Setup
+    public void vorbereiten() {
+        strategie = "OPTIMAL".equals(strategieName) ? new OptimalesWechselgeld() : new GreedyWechselgeld();
+        int[] anzahl;
+        switch (bestandsForm) {
+            case "KNAPP":
+                anzahl = new int[]{1, 1, 1, 2, 1, 2, 1, 2};
+                break;
+            case "OHNE_50ER":
+                anzahl = new int[]{2, 2, 0, 9, 1, 3, 3, 3};
+                break;
+            default:
+                anzahl = new int[]{10, 10, 10, 10, 10, 10, 10, 10};
+        }
+        for (int i = 0; i < MuenzVektor.SCHAECHTE; i++) {
+            bestand.set(i, anzahl[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean berechnen() {
+        if ("KALT".equals(cache)) version++;
+        return strategie.berechnen(betrag, bestand, version, ergebnis);
+    }
+}
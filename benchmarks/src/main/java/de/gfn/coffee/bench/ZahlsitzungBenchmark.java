@@ -0,0 +1,65 @@
+package de.gfn.coffee.bench;
+
+import de.gfn.coffee.DatabaseManager;
+import de.gfn.coffee.Muenzwechsler;
+import de.gfn.coffee.Verkaufsergebnis;
+import de.gfn.coffee.Zahlsitzung;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Mehrere Terminals bezahlen gleichzeitig gegen einen gemeinsamen Münzbestand.
+// Abwechselnd passend (50+20+10) und mit 1 Euro, damit der Bestand nicht leerläuft.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ZahlsitzungBenchmark {
+
+    private Path verzeichnis;
+    private DatabaseManager db;
+    private Muenzwechsler wechsler;
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        Zahlsitzung sitzung;
+        boolean passend;
+
+        @Setup(Level.Trial)
+        public void oeffnen(ZahlsitzungBenchmark benchmark) {
+            sitzung = benchmark.wechsler.neueSitzung();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void vorbereiten() {
+        verzeichnis = Umgebung.neuesVerzeichnis("zahlsitzung");
+        db = new DatabaseManager(verzeichnis, 2);
+        wechsler = new Muenzwechsler(db);
+    }
+
+    @TearDown(Level.Trial)
+    public void aufraeumen() {
+        wechsler.close();
+        db.close();
+        Umgebung.loeschen(verzeichnis);
+    }
+
+    @Benchmark
+    public Verkaufsergebnis zahlen(Terminal terminal) {
+        Zahlsitzung s = terminal.sitzung;
+        terminal.passend = !terminal.passend;
+        if (terminal.passend) {
+            s.muenzeAnnehmen(50);
+            s.muenzeAnnehmen(20);
+            s.muenzeAnnehmen(10);
+        } else {
+            s.muenzeAnnehmen(100);
+        }
+        return s.zahlen(80);
+    }
+}